@@ -0,0 +1,93 @@
+package com.example.dispatcherservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead {@link DispatcherService#dispatch} adds on the request thread: channel lookup and the
+ * hand-off to the channel queue. The channel dispatchers do nothing, so this excludes provider time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"4", "16"})
+    private int workers;
+
+    private DispatcherService dispatcherService;
+    private NotificationRequest request;
+    private Path dataDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        DispatchProperties properties = new DispatchProperties();
+        // Kept out of the working directory, whose data/ holds a running service's dead letters and parked retries
+        dataDir = Files.createTempDirectory("dispatch-benchmark-");
+        properties.setDeadLetterDir(dataDir.resolve("dead-letters"));
+        properties.getRetry().setParkDir(dataDir.resolve("retries"));
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        properties.getDefaults().setWorkers(workers);
+        properties.getDefaults().setQueueCapacity(100_000);
+        dispatcherService = new DispatcherService(List.of(
+                new NoOpDispatcher(ChannelType.EMAIL),
+                new NoOpDispatcher(ChannelType.SMS),
+                new NoOpDispatcher(ChannelType.PUSH)), properties,
+                new DeadLetterStore(objectMapper, properties, meterRegistry),
+                new ParkedRetryStore(objectMapper, properties), meterRegistry, Tracer.NOOP, Propagator.NOOP);
+
+        MessageContent message = new MessageContent();
+        message.setSubject("Your order has shipped");
+        message.setBody("Hello Jane, your order 12345 has shipped and will arrive on Tuesday.");
+        request = new NotificationRequest();
+        request.setUserId("user00042");
+        request.setChannel(ChannelType.EMAIL);
+        request.setMessage(message);
+        request.setMetadata(Map.of("eventType", "ORDER_SHIPPED"));
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        dispatcherService.shutdown();
+        FileSystemUtils.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public void dispatch(Blackhole blackhole) {
+        try {
+            dispatcherService.dispatch(request);
+        } catch (ChannelQueueFullException e) {
+            // Producers outran the workers; rejection is part of the measured path
+            blackhole.consume(e);
+        }
+    }
+
+    private record NoOpDispatcher(ChannelType channel) implements ChannelDispatcher {
+
+        @Override
+        public void dispatch(NotificationRequest request) {
+        }
+
+        @Override
+        public ChannelType getChannel() {
+            return channel;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.dispatcherservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares opening an SMTP connection per message with sending over {@link SmtpConnectionPool},
+ * against an in-process stub server that charges {@code handshakeDelayMillis} per connection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Threads(16)
+@Fork(1)
+public class EmailSendingBenchmark {
+
+    @Param({"0", "5"})
+    private long handshakeDelayMillis;
+
+    @Param({"8"})
+    private int connections;
+
+    private SmtpStubServer server;
+    private SmtpConnectionPool pool;
+    private Session directSession;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new SmtpStubServer(handshakeDelayMillis);
+
+        MailProperties mailProperties = new MailProperties();
+        mailProperties.setHost("localhost");
+        mailProperties.setPort(server.port());
+        EmailProperties emailProperties = new EmailProperties();
+        emailProperties.setConnections(connections);
+        pool = new SmtpConnectionPool(mailProperties, emailProperties, new SimpleMeterRegistry());
+
+        Properties properties = new Properties();
+        properties.put("mail.smtp.host", "localhost");
+        properties.put("mail.smtp.port", String.valueOf(server.port()));
+        directSession = Session.getInstance(properties);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void connectionPerMessage() throws MessagingException {
+        Transport.send(fill(new MimeMessage(directSession)));
+    }
+
+    @Benchmark
+    public void pooledConnections() throws MessagingException {
+        pool.send(fill(pool.createMessage()));
+    }
+
+    private static MimeMessage fill(MimeMessage message) throws MessagingException {
+        message.setFrom(new InternetAddress("no-reply@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user@example.com"));
+        message.setSubject("Your order has shipped", "UTF-8");
+        message.setText("Hello, your order 12345 is on its way and should arrive within three days.", "UTF-8");
+        return message;
+    }
+}
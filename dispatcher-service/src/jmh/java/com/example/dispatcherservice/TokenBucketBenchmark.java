@@ -0,0 +1,37 @@
+package com.example.dispatcherservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reserving a send token while every channel worker contends for the same bucket. The rate is
+ * high enough that no reservation has to wait, so this is the compare-and-set loop alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenBucketBenchmark {
+
+    private TokenBucket bucket;
+
+    @Setup
+    public void setUp() {
+        bucket = new TokenBucket(1e9, 1_000_000);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long uncontended() {
+        return bucket.reserve();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long eightWorkers() {
+        return bucket.reserve();
+    }
+}
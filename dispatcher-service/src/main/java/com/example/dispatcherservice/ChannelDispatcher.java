@@ -3,4 +3,11 @@ package com.example.dispatcherservice;
 public interface ChannelDispatcher {
     void dispatch(NotificationRequest request);
     ChannelType getChannel();
+
+    /**
+     * Name of the provider this dispatcher sends through, used to look up its rate limit.
+     */
+    default String getProvider() {
+        return getChannel().name().toLowerCase();
+    }
 }
@@ -0,0 +1,226 @@
+package com.example.dispatcherservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded queue and worker pool for a single channel, so a slow provider only backs up its own channel.
+ * <p>
+ * Requests wait in one lane per {@link DispatchPriority}. A worker first waits for a send token from
+ * the channel's and the provider's rate limits, and only then takes a request, the transactional lane
+ * first, so under throttling transactional requests overtake any bulk backlog.
+ * <p>
+ * A failed send is handed to the channel's {@link RetryStages} instead of being retried on the worker,
+ * so a flaky provider never holds up the next request. Due retries come back through the retry lane.
+ */
+@Slf4j
+class ChannelQueue {
+
+    private final ChannelDispatcher dispatcher;
+    private final Map<DispatchPriority, Lane> lanes = new EnumMap<>(DispatchPriority.class);
+    // One permit per queued request across all lanes
+    private final Semaphore queued = new Semaphore(0);
+    private final TokenBucket channelLimit;
+    private final TokenBucket providerLimit;
+    private final RetryStages retries;
+    private final StageLatency stageLatency;
+    private final DeliveryTracing tracing;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean accepting = true;
+
+    private final Timer throttleTimer;
+    private final Timer successTimer;
+    private final Timer failureTimer;
+
+    ChannelQueue(ChannelDispatcher dispatcher, DispatchProperties.ChannelQueueProperties properties,
+                 TokenBucket providerLimit, RetryStages retries, StageLatency stageLatency,
+                 DeliveryTracing tracing, ThreadFactory threadFactory, MeterRegistry meterRegistry) {
+        this.dispatcher = dispatcher;
+        this.channelLimit = TokenBucket.of(properties.getRateLimit());
+        this.providerLimit = providerLimit;
+        this.retries = retries;
+        this.stageLatency = stageLatency;
+        this.tracing = tracing;
+
+        String channel = dispatcher.getChannel().name();
+        for (DispatchPriority priority : DispatchPriority.values()) {
+            lanes.put(priority, new Lane(properties.getQueueCapacity(), channel, priority, meterRegistry));
+        }
+        this.throttleTimer = Timer.builder("dispatcher.throttle.wait")
+                .description("Time a worker waited for a send token from the channel or provider rate limit")
+                .tag("channel", channel)
+                .tag("provider", dispatcher.getProvider())
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.successTimer = serviceTimer(meterRegistry, channel, "success");
+        this.failureTimer = serviceTimer(meterRegistry, channel, "failure");
+
+        for (int i = 0; i < properties.getWorkers(); i++) {
+            Thread worker = threadFactory.newThread(this::work);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    private static Timer serviceTimer(MeterRegistry meterRegistry, String channel, String outcome) {
+        return Timer.builder("dispatcher.dispatch.service")
+                .description("Time the channel dispatcher took to send a request")
+                .tag("channel", channel)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    void enqueue(NotificationRequest request, DispatchPriority priority) {
+        Lane lane = lanes.get(priority);
+        Span span = tracing.queued(request);
+        if (!accepting || !lane.queue.offer(new QueuedRequest(request, System.nanoTime(), 0, span))) {
+            lane.rejected.increment();
+            ChannelQueueFullException rejected = new ChannelQueueFullException(dispatcher.getChannel());
+            tracing.finish(span, null, rejected);
+            throw rejected;
+        }
+        queued.release();
+    }
+
+    /**
+     * Moves due retries into the retry lane, as far as it has room.
+     */
+    void releaseRetries() {
+        retries.releaseDue(retry -> {
+            if (!accepting || !lanes.get(DispatchPriority.RETRY).queue.offer(
+                    new QueuedRequest(retry.request(), System.nanoTime(), retry.retries(), null))) {
+                return false;
+            }
+            queued.release();
+            return true;
+        });
+    }
+
+    private void work() {
+        while (accepting || queued.availablePermits() > 0) {
+            try {
+                if (!queued.tryAcquire(100, TimeUnit.MILLISECONDS)) {
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            throttle();
+            Lane lane = null;
+            QueuedRequest request = null;
+            for (Lane candidate : lanes.values()) {
+                request = candidate.queue.poll();
+                if (request != null) {
+                    lane = candidate;
+                    break;
+                }
+            }
+            if (request != null) {
+                send(lane, request);
+            }
+        }
+    }
+
+    private void throttle() {
+        if (channelLimit == null && providerLimit == null) {
+            return;
+        }
+        long wait = Math.max(channelLimit != null ? channelLimit.reserve() : 0,
+                providerLimit != null ? providerLimit.reserve() : 0);
+        throttleTimer.record(wait, TimeUnit.NANOSECONDS);
+        long deadline = System.nanoTime() + wait;
+        for (long left = wait; left > 0; left = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(this, left);
+        }
+    }
+
+    private void send(Lane lane, QueuedRequest queued) {
+        long started = System.nanoTime();
+        lane.waitTimer.record(started - queued.enqueuedAt(), TimeUnit.NANOSECONDS);
+        stageLatency.record(StageLatency.Stage.CHANNEL_QUEUE, queued.request(), started - queued.enqueuedAt());
+        Span sendSpan = tracing.sending(queued.span(), dispatcher.getProvider());
+        try (Tracer.SpanInScope ignored = tracing.inScope(sendSpan)) {
+            dispatcher.dispatch(queued.request());
+            long sendNanos = System.nanoTime() - started;
+            successTimer.record(sendNanos, TimeUnit.NANOSECONDS);
+            stageLatency.record(StageLatency.Stage.PROVIDER_SEND, queued.request(), sendNanos);
+            stageLatency.delivered(queued.request());
+            retries.succeeded(queued.retries());
+            tracing.finish(queued.span(), sendSpan, null);
+        } catch (RuntimeException e) {
+            failureTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            log.warn("Failed to dispatch {} notification to user {} on attempt {}: {}", dispatcher.getChannel(),
+                    queued.request().getUserId(), queued.retries() + 1, e.toString());
+            retries.failed(queued.request(), queued.retries(), e);
+            tracing.finish(queued.span(), sendSpan, e);
+        }
+    }
+
+    void shutdown(Duration drainTimeout) throws InterruptedException {
+        accepting = false;
+        long deadline = System.nanoTime() + drainTimeout.toNanos();
+        for (Thread worker : workers) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        }
+        // Workers that did not finish in time may still be sending; only what is left in the lanes is parked
+        List<RetryStages.PendingRetry> stillQueued = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Lane lane : lanes.values()) {
+            for (QueuedRequest request; (request = lane.queue.poll()) != null; ) {
+                stillQueued.add(new RetryStages.PendingRetry(request.request(), request.retries(), now));
+            }
+        }
+        if (!stillQueued.isEmpty()) {
+            log.warn("{} {} notifications were still queued at shutdown", stillQueued.size(), dispatcher.getChannel());
+        }
+        retries.park(stillQueued);
+    }
+
+    private static class Lane {
+        private final BlockingQueue<QueuedRequest> queue;
+        private final Counter rejected;
+        private final Timer waitTimer;
+
+        Lane(int capacity, String channel, DispatchPriority priority, MeterRegistry meterRegistry) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            String lane = priority.name().toLowerCase();
+            Gauge.builder("dispatcher.queue.depth", queue, BlockingQueue::size)
+                    .tag("channel", channel)
+                    .tag("priority", lane)
+                    .register(meterRegistry);
+            this.rejected = Counter.builder("dispatcher.queue.rejected")
+                    .description("Requests refused because the channel's lane for their priority was full")
+                    .tag("channel", channel)
+                    .tag("priority", lane)
+                    .register(meterRegistry);
+            this.waitTimer = Timer.builder("dispatcher.queue.wait")
+                    .description("Time a request spent queued before a worker picked it up")
+                    .tag("channel", channel)
+                    .tag("priority", lane)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+        }
+    }
+
+    // The delivery span, for requests queued by a traced request
+    private record QueuedRequest(NotificationRequest request, long enqueuedAt, int retries, Span span) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.dispatcherservice;
+
+public class ChannelQueueFullException extends RuntimeException {
+
+    public ChannelQueueFullException(ChannelType channel) {
+        super("Dispatch queue for channel " + channel + " is full");
+    }
+}
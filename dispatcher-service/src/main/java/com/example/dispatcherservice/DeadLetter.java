@@ -0,0 +1,18 @@
+package com.example.dispatcherservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetter {
+    private NotificationRequest request;
+    // Sends tried, the first one included
+    private int attempts;
+    private String error;
+    private Instant failedAt;
+}
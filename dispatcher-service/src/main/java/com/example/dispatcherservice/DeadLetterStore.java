@@ -0,0 +1,95 @@
+package com.example.dispatcherservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Dead-letter queue for requests that could not be sent: one append-only JSON-lines file per channel
+ * in the dead-letter directory, for inspection and replay by hand.
+ */
+@Component
+@Slf4j
+public class DeadLetterStore {
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+    private final Map<ChannelType, BufferedWriter> writers = new EnumMap<>(ChannelType.class);
+    private final Map<ChannelType, AtomicLong> sizes = new EnumMap<>(ChannelType.class);
+
+    public DeadLetterStore(ObjectMapper objectMapper, DispatchProperties properties, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.directory = properties.getDeadLetterDir();
+        for (ChannelType channel : ChannelType.values()) {
+            AtomicLong size = new AtomicLong(countLines(file(channel)));
+            sizes.put(channel, size);
+            Gauge.builder("dispatcher.dead-letters.size", size, AtomicLong::get)
+                    .description("Requests in the channel's dead-letter file")
+                    .tag("channel", channel.name())
+                    .register(meterRegistry);
+        }
+    }
+
+    public synchronized void add(DeadLetter deadLetter) {
+        ChannelType channel = deadLetter.getRequest().getChannel();
+        try {
+            BufferedWriter writer = writers.get(channel);
+            if (writer == null) {
+                Files.createDirectories(directory);
+                writer = Files.newBufferedWriter(file(channel), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                writers.put(channel, writer);
+            }
+            writer.write(objectMapper.writeValueAsString(deadLetter));
+            writer.newLine();
+            writer.flush();
+            sizes.get(channel).incrementAndGet();
+        } catch (IOException e) {
+            // Nowhere left to put it; the log is the last record of the request
+            log.error("Could not dead-letter {} notification for user {}: {}", channel,
+                    deadLetter.getRequest().getUserId(), deadLetter, e);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        writers.forEach((channel, writer) -> {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                log.warn("Could not close the {} dead-letter file", channel, e);
+            }
+        });
+        writers.clear();
+    }
+
+    private Path file(ChannelType channel) {
+        return directory.resolve(channel.name().toLowerCase() + ".jsonl");
+    }
+
+    private static long countLines(Path file) {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return lines.count();
+        } catch (IOException e) {
+            log.warn("Could not count dead letters in {}", file, e);
+            return 0;
+        }
+    }
+}
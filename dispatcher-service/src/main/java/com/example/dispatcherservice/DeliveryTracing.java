@@ -0,0 +1,72 @@
+package com.example.dispatcherservice;
+
+import com.example.shared.TailSamplingSpanHandler;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Traces a notification's delivery, from being queued until the provider accepted or refused it,
+ * with a child span for the send itself. The request that queued it has been answered long before,
+ * so the delivery span starts a new local root in the same trace rather than nesting under it, and
+ * is sampled on its own latency. Requests queued outside a traced request, and retries, are not traced.
+ */
+class DeliveryTracing {
+
+    private final Tracer tracer;
+    private final Propagator propagator;
+
+    DeliveryTracing(Tracer tracer, Propagator propagator) {
+        this.tracer = tracer;
+        this.propagator = propagator;
+    }
+
+    Span queued(NotificationRequest request) {
+        Span current = tracer.currentSpan();
+        if (current == null) {
+            return null;
+        }
+        Map<String, String> context = new HashMap<>(4);
+        propagator.inject(current.context(), context, Map::put);
+        Span.Builder builder = propagator.extract(context, Map::get)
+                .name("deliver")
+                .kind(Span.Kind.CONSUMER)
+                .tag("notification.channel", String.valueOf(request.getChannel()));
+        if (request.getUserId() != null) {
+            builder.tag("notification.user_id", request.getUserId());
+        }
+        if (request.getIngestedAt() != null) {
+            builder.tag(TailSamplingSpanHandler.INGESTED_AT, request.getIngestedAt().toString());
+        }
+        return builder.start();
+    }
+
+    Span sending(Span delivery, String provider) {
+        if (delivery == null) {
+            return null;
+        }
+        return tracer.nextSpan(delivery)
+                .name("send")
+                .remoteServiceName(provider)
+                .start();
+    }
+
+    Tracer.SpanInScope inScope(Span span) {
+        return tracer.withSpan(span);
+    }
+
+    void finish(Span delivery, Span send, Throwable error) {
+        for (Span span : new Span[]{send, delivery}) {
+            if (span == null) {
+                continue;
+            }
+            if (error != null) {
+                span.error(error);
+            }
+            span.end();
+        }
+    }
+}
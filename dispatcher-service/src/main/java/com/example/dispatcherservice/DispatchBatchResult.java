@@ -0,0 +1,16 @@
+package com.example.dispatcherservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchBatchResult {
+    private int accepted;
+    // Positions in the batch that were not queued, because their channel was full or unknown
+    private List<Integer> rejected;
+}
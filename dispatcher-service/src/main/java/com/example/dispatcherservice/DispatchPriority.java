@@ -0,0 +1,11 @@
+package com.example.dispatcherservice;
+
+/**
+ * Lane a request is queued in. Workers take from the lanes in this order, so retries of failed
+ * sends only use capacity that fresh traffic leaves over.
+ */
+public enum DispatchPriority {
+    TRANSACTIONAL,
+    BULK,
+    RETRY
+}
@@ -0,0 +1,116 @@
+package com.example.dispatcherservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+@Data
+@ConfigurationProperties(prefix = "dispatcher")
+public class DispatchProperties {
+
+    /**
+     * Run channel workers on virtual threads when the JVM supports them (Java 21+).
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * Value of the Retry-After header sent when a channel queue is full.
+     */
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    /**
+     * Longest to wait on shutdown for queued notifications to be dispatched.
+     */
+    private Duration drainTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Event types (metadata.eventType) queued in the transactional lane. Everything else, broadcasts
+     * included, goes in the bulk lane.
+     */
+    private Set<String> transactionalEventTypes = Set.of("USER_REGISTERED", "PASSWORD_RESET",
+            "ORDER_PLACED", "ORDER_SHIPPED");
+
+    private RetryProperties retry = new RetryProperties();
+
+    /**
+     * Requests that failed for good are appended here, one JSON-lines file per channel. Mount on a
+     * persistent volume: in Kubernetes each pod keeps its own claim across restarts and scale-downs.
+     */
+    private Path deadLetterDir = Path.of("data", "dead-letters");
+
+    private ChannelQueueProperties defaults = new ChannelQueueProperties();
+
+    private Map<ChannelType, ChannelQueueProperties> channels = new EnumMap<>(ChannelType.class);
+
+    /**
+     * Send limits per provider, keyed by {@link ChannelDispatcher#getProvider()}. A provider limit is
+     * shared by every channel that sends through it, on top of each channel's own limit.
+     */
+    private Map<String, RateLimitProperties> providers = new HashMap<>();
+
+    public ChannelQueueProperties forChannel(ChannelType channel) {
+        return channels.getOrDefault(channel, defaults);
+    }
+
+    public DispatchPriority priorityOf(NotificationRequest request) {
+        Object eventType = request.getMetadata() != null ? request.getMetadata().get("eventType") : null;
+        return eventType != null && transactionalEventTypes.contains(eventType.toString())
+                ? DispatchPriority.TRANSACTIONAL : DispatchPriority.BULK;
+    }
+
+    @Data
+    public static class ChannelQueueProperties {
+        /**
+         * Capacity of each priority lane.
+         */
+        private int queueCapacity = 10_000;
+        private int workers = 16;
+        private RateLimitProperties rateLimit = new RateLimitProperties();
+    }
+
+    @Data
+    public static class RetryProperties {
+        /**
+         * Retries after the first failed send; the request is dead-lettered after the last one fails.
+         */
+        private int maxRetries = 5;
+        private Duration initialInterval = Duration.ofSeconds(1);
+        private double multiplier = 4;
+        /**
+         * Each delay is randomised by up to this fraction either way, so retries of a burst spread out.
+         */
+        private double jitter = 0.2;
+        /**
+         * Retries one channel holds at most; further failures are dead-lettered straight away.
+         */
+        private int maxPending = 50_000;
+        private Duration pollInterval = Duration.ofMillis(100);
+        /**
+         * Retries and queued requests still waiting at shutdown are parked here and taken back on the
+         * next start. On the same persistent volume as the dead letters.
+         */
+        private Path parkDir = Path.of("data", "retries");
+
+        public Duration delay(int attempt) {
+            return Duration.ofMillis((long) (initialInterval.toMillis() * Math.pow(multiplier, attempt)));
+        }
+    }
+
+    @Data
+    public static class RateLimitProperties {
+        /**
+         * Sustained sends per second; 0 means unlimited.
+         */
+        private double permitsPerSecond;
+        /**
+         * Sends allowed back to back after an idle spell.
+         */
+        private int burst = 1;
+    }
+}
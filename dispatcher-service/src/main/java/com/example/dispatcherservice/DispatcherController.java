@@ -1,7 +1,9 @@
 package com.example.dispatcherservice;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -10,10 +12,24 @@ import org.springframework.web.bind.annotation.*;
 public class DispatcherController {
 
     private final DispatcherService dispatcherService;
+    private final DispatchProperties dispatchProperties;
 
     @PostMapping
     @ResponseStatus(HttpStatus.ACCEPTED)
     public void dispatch(@RequestBody NotificationRequest request) {
         dispatcherService.dispatch(request);
     }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public DispatchBatchResult dispatchBatch(@RequestBody NotificationBatch batch) {
+        return dispatcherService.dispatchAll(batch.resolveNotifications());
+    }
+
+    @ExceptionHandler(ChannelQueueFullException.class)
+    public ResponseEntity<String> handleQueueFull(ChannelQueueFullException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, dispatchProperties.getRetryAfter().toSeconds())))
+                .body(e.getMessage());
+    }
 }
@@ -1,28 +1,90 @@
 package com.example.dispatcherservice;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.tracing.Tracer;
+import io.micrometer.tracing.propagation.Propagator;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 @Service
+@Slf4j
 public class DispatcherService {
 
-    private final Map<ChannelType, ChannelDispatcher> dispatchers;
+    private final Map<ChannelType, ChannelQueue> queues = new EnumMap<>(ChannelType.class);
+    private final DispatchProperties properties;
+    private final ScheduledExecutorService retryReleaser;
 
-    public DispatcherService(List<ChannelDispatcher> dispatcherList) {
-        this.dispatchers = dispatcherList.stream()
-                .collect(Collectors.toMap(ChannelDispatcher::getChannel, Function.identity()));
+    public DispatcherService(List<ChannelDispatcher> dispatcherList, DispatchProperties properties,
+                             DeadLetterStore deadLetters, ParkedRetryStore parkedRetries,
+                             MeterRegistry meterRegistry, Tracer tracer, Propagator propagator) {
+        this.properties = properties;
+        // Channels sending through the same provider share its limit
+        Map<String, TokenBucket> providerLimits = new HashMap<>();
+        StageLatency stageLatency = new StageLatency(meterRegistry);
+        DeliveryTracing tracing = new DeliveryTracing(tracer, propagator);
+        for (ChannelDispatcher dispatcher : dispatcherList) {
+            ChannelType channel = dispatcher.getChannel();
+            String threadPrefix = "dispatch-" + channel.name().toLowerCase() + "-";
+            TokenBucket providerLimit = providerLimits.computeIfAbsent(dispatcher.getProvider(),
+                    provider -> TokenBucket.of(properties.getProviders().get(provider)));
+            RetryStages retries = new RetryStages(channel, properties.getRetry(), deadLetters, parkedRetries,
+                    meterRegistry);
+            queues.put(channel, new ChannelQueue(dispatcher, properties.forChannel(channel), providerLimit, retries,
+                    stageLatency, tracing, WorkerThreads.factory(threadPrefix, properties.isVirtualThreads()), meterRegistry));
+        }
+        long pollMillis = properties.getRetry().getPollInterval().toMillis();
+        this.retryReleaser = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("dispatch-retry-"));
+        retryReleaser.scheduleWithFixedDelay(this::releaseRetries, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void releaseRetries() {
+        for (ChannelQueue queue : queues.values()) {
+            try {
+                queue.releaseRetries();
+            } catch (RuntimeException e) {
+                // An exception would cancel the schedule and strand every pending retry
+                log.error("Releasing retries failed", e);
+            }
+        }
     }
 
     public void dispatch(NotificationRequest request) {
-        ChannelDispatcher dispatcher = dispatchers.get(request.getChannel());
-        if (dispatcher != null) {
-            dispatcher.dispatch(request);
+        ChannelQueue queue = queues.get(request.getChannel());
+        if (queue != null) {
+            queue.enqueue(request, properties.priorityOf(request));
         } else {
             throw new IllegalArgumentException("No dispatcher found for channel: " + request.getChannel());
         }
     }
+
+    public DispatchBatchResult dispatchAll(List<NotificationRequest> requests) {
+        List<Integer> rejected = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                dispatch(requests.get(i));
+            } catch (ChannelQueueFullException | IllegalArgumentException e) {
+                rejected.add(i);
+            }
+        }
+        return new DispatchBatchResult(requests.size() - rejected.size(), rejected);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        retryReleaser.shutdownNow();
+        for (ChannelQueue queue : queues.values()) {
+            queue.shutdown(properties.getDrainTimeout());
+        }
+    }
 }
@@ -1,9 +1,17 @@
 package com.example.dispatcherservice;
 
+import com.example.shared.TailSamplingProperties;
+import com.example.shared.TailSamplingSpanHandler;
+import com.example.shared.TraceFileWriter;
+import com.example.shared.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import({TailSamplingSpanHandler.class, TraceFileWriter.class, VirtualThreadConfig.class})
+@EnableConfigurationProperties({DispatchProperties.class, EmailProperties.class, TailSamplingProperties.class})
 public class DispatcherServiceApplication {
 
     public static void main(String[] args) {
@@ -1,21 +1,69 @@
 package com.example.dispatcherservice;
 
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
 @Component
 @Slf4j
+@RequiredArgsConstructor
 public class EmailDispatcher implements ChannelDispatcher {
 
+    private final ObjectProvider<SmtpConnectionPool> connectionPool;
+    private final EmailProperties emailProperties;
+
     @Override
     public void dispatch(NotificationRequest request) {
-        log.info("Sending email to {}: Subject: {}, Body: {}",
-                request.getUserId(), request.getMessage().getSubject(), request.getMessage().getBody());
-        // In a real implementation, this would use a mail sender to send the email
+        SmtpConnectionPool pool = connectionPool.getIfAvailable();
+        if (pool == null) {
+            // No spring.mail.host configured
+            log.info("Sending email to {}: Subject: {}, Body: {}",
+                    request.getUserId(), request.getMessage().getSubject(), request.getMessage().getBody());
+            return;
+        }
+        try {
+            MimeMessage message = pool.createMessage();
+            message.setFrom(new InternetAddress(emailProperties.getFrom()));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress(recipient(request)));
+            message.setSubject(request.getMessage().getSubject(), "UTF-8");
+            message.setText(request.getMessage().getBody(), "UTF-8");
+            pool.send(message);
+        } catch (SendFailedException e) {
+            if (e.getInvalidAddresses() != null && e.getInvalidAddresses().length > 0) {
+                // The server refused the recipient; sending again would get the same answer
+                throw new IllegalArgumentException("Recipient rejected for user " + request.getUserId(), e);
+            }
+            throw new IllegalStateException("Failed to send email to user " + request.getUserId(), e);
+        } catch (MessagingException e) {
+            // Retried after the retry stage's backoff, or dead-lettered, rather than resent on the spot
+            throw new IllegalStateException("Failed to send email to user " + request.getUserId(), e);
+        }
+    }
+
+    private String recipient(NotificationRequest request) {
+        Object email = request.getMetadata() != null ? request.getMetadata().get("email") : null;
+        if (email != null) {
+            return email.toString();
+        }
+        if (request.getUserId() != null && request.getUserId().contains("@")) {
+            return request.getUserId();
+        }
+        throw new IllegalArgumentException("No email address for user " + request.getUserId());
     }
 
     @Override
     public ChannelType getChannel() {
         return ChannelType.EMAIL;
     }
+
+    @Override
+    public String getProvider() {
+        return "smtp";
+    }
 }
@@ -0,0 +1,37 @@
+package com.example.dispatcherservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "dispatcher.email")
+public class EmailProperties {
+
+    private String from = "no-reply@example.com";
+
+    /**
+     * SMTP connections kept open, which is also the number of messages sent in parallel.
+     */
+    private int connections = 8;
+
+    /**
+     * Messages sent over one connection before it is closed and reopened; many servers cap this.
+     */
+    private int maxMessagesPerConnection = 100;
+
+    /**
+     * A connection idle for longer than this is reopened before use rather than trusted.
+     */
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Longest a sender waits for a free connection.
+     */
+    private Duration borrowTimeout = Duration.ofSeconds(10);
+
+    private Duration connectTimeout = Duration.ofSeconds(5);
+
+    private Duration readTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,34 @@
+package com.example.dispatcherservice;
+
+import lombok.Data;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+/**
+ * Envelope for POST /dispatch/batch. A notification either carries its own message or points at
+ * one of the shared {@code messages} by position through {@code messageRef}.
+ */
+@Data
+public class NotificationBatch {
+
+    private List<MessageContent> messages;
+    private List<NotificationRequest> notifications;
+
+    public List<NotificationRequest> resolveNotifications() {
+        if (notifications == null) {
+            return List.of();
+        }
+        for (NotificationRequest notification : notifications) {
+            Integer ref = notification.getMessageRef();
+            if (notification.getMessage() == null && ref != null) {
+                if (messages == null || ref < 0 || ref >= messages.size()) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown messageRef " + ref);
+                }
+                notification.setMessage(messages.get(ref));
+            }
+        }
+        return notifications;
+    }
+}
@@ -10,4 +10,8 @@ public class NotificationRequest {
     private ChannelType channel;
     private MessageContent message;
     private Map<String, Object> metadata;
+    // Position in the enclosing batch's shared messages, when the message is not inline
+    private Integer messageRef;
+    // Epoch millis the triggering event was ingested, when known
+    private Long ingestedAt;
 }
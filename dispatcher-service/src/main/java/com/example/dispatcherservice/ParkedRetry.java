@@ -0,0 +1,17 @@
+package com.example.dispatcherservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ParkedRetry {
+    private NotificationRequest request;
+    // Sends already tried
+    private int retries;
+    private Instant dueAt;
+}
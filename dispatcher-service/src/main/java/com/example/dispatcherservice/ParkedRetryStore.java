@@ -0,0 +1,90 @@
+package com.example.dispatcherservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Retries, and requests still queued, that were waiting when the instance shut down: one JSON-lines
+ * file per channel, written on shutdown and taken back on the next start, so a restart or rolling
+ * deploy does not turn them into dead letters.
+ */
+@Component
+@Slf4j
+public class ParkedRetryStore {
+
+    private final ObjectMapper objectMapper;
+    private final Path directory;
+
+    public ParkedRetryStore(ObjectMapper objectMapper, DispatchProperties properties) {
+        this.objectMapper = objectMapper;
+        this.directory = properties.getRetry().getParkDir();
+    }
+
+    /**
+     * Writes the channel's parked retries, replacing any left from before. The file only appears once
+     * complete, so a shutdown cut short leaves the previous one or none.
+     */
+    public void park(ChannelType channel, List<ParkedRetry> retries) throws IOException {
+        Files.createDirectories(directory);
+        Path partial = directory.resolve(file(channel).getFileName() + ".partial");
+        try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            for (ParkedRetry retry : retries) {
+                writer.write(objectMapper.writeValueAsString(retry));
+                writer.newLine();
+            }
+        }
+        Files.move(partial, file(channel), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads and removes the channel's parked retries, in the order they were parked.
+     */
+    public List<ParkedRetry> unpark(ChannelType channel) {
+        Path file = file(channel);
+        List<ParkedRetry> retries = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return retries;
+        }
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.isBlank()) {
+                    read(line, channel, retries);
+                }
+            }
+            Files.delete(file);
+        } catch (IOException e) {
+            // Kept aside to be replayed by hand, where the next shutdown does not overwrite it
+            Path aside = directory.resolve(file.getFileName() + "." + System.currentTimeMillis() + ".unread");
+            log.error("Could not take back parked {} retries, moving them to {}", channel, aside, e);
+            try {
+                Files.move(file, aside);
+            } catch (IOException moveFailed) {
+                log.error("Could not move {} aside", file, moveFailed);
+            }
+            return List.of();
+        }
+        return retries;
+    }
+
+    private void read(String line, ChannelType channel, List<ParkedRetry> retries) {
+        try {
+            retries.add(objectMapper.readValue(line, ParkedRetry.class));
+        } catch (IOException e) {
+            log.error("Skipping unreadable parked {} retry {}", channel, line, e);
+        }
+    }
+
+    private Path file(ChannelType channel) {
+        return directory.resolve(channel.name().toLowerCase() + ".jsonl");
+    }
+}
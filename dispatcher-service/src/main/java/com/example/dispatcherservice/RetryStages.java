@@ -0,0 +1,172 @@
+package com.example.dispatcherservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Failed sends of one channel waiting to be retried. There is one FIFO stage per attempt, and every
+ * request in a stage waits the same backoff, so each stage is already in due order and releasing
+ * due retries only ever looks at stage heads. Requests out of attempts go to the dead-letter store.
+ * <p>
+ * Retries still waiting at shutdown are parked in the {@link ParkedRetryStore} and picked up again,
+ * with their remaining wait, by the next instance to start on the same volume.
+ */
+@Slf4j
+class RetryStages {
+
+    private final ChannelType channel;
+    private final DispatchProperties.RetryProperties properties;
+    private final DeadLetterStore deadLetters;
+    private final ParkedRetryStore parked;
+    private final List<Queue<PendingRetry>> stages = new ArrayList<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final List<Counter> scheduled = new ArrayList<>();
+    private final Counter recovered;
+    private final Counter deadLettered;
+
+    RetryStages(ChannelType channel, DispatchProperties.RetryProperties properties, DeadLetterStore deadLetters,
+                ParkedRetryStore parked, MeterRegistry meterRegistry) {
+        this.channel = channel;
+        this.properties = properties;
+        this.deadLetters = deadLetters;
+        this.parked = parked;
+        for (int attempt = 1; attempt <= properties.getMaxRetries(); attempt++) {
+            stages.add(new ConcurrentLinkedQueue<>());
+            scheduled.add(Counter.builder("dispatcher.retry.scheduled")
+                    .description("Failed sends scheduled for another attempt")
+                    .tag("channel", channel.name())
+                    .tag("attempt", String.valueOf(attempt))
+                    .register(meterRegistry));
+        }
+        Gauge.builder("dispatcher.retry.pending", pending, AtomicInteger::get)
+                .description("Failed sends waiting for their next attempt")
+                .tag("channel", channel.name())
+                .register(meterRegistry);
+        this.recovered = Counter.builder("dispatcher.retry.recovered")
+                .description("Sends that succeeded on a retry")
+                .tag("channel", channel.name())
+                .register(meterRegistry);
+        this.deadLettered = Counter.builder("dispatcher.dead-letters")
+                .description("Requests given up on and written to the dead-letter store")
+                .tag("channel", channel.name())
+                .register(meterRegistry);
+        takeBackParked();
+    }
+
+    private void takeBackParked() {
+        List<ParkedRetry> retries = parked.unpark(channel);
+        if (retries.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Instant wallNow = Instant.now();
+        for (ParkedRetry retry : retries) {
+            if (stages.isEmpty()) {
+                deadLetter(retry.getRequest(), retry.getRetries() + 1, "Retries are turned off");
+                continue;
+            }
+            long wait = Math.max(0, Duration.between(wallNow, retry.getDueAt()).toNanos());
+            // Parked in due order per stage, and, jitter aside, due before anything failing from now on
+            int stage = Math.min(Math.max(retry.getRetries(), 1), stages.size()) - 1;
+            stages.get(stage).add(new PendingRetry(retry.getRequest(), retry.getRetries(), now + wait));
+            pending.incrementAndGet();
+        }
+        log.info("Took back {} parked {} retries", retries.size(), channel);
+    }
+
+    /**
+     * Handles a failed send: schedules the next attempt, or dead-letters the request when the failure
+     * is permanent, attempts are used up or too many retries are already waiting.
+     */
+    void failed(NotificationRequest request, int retries, RuntimeException error) {
+        boolean permanent = error instanceof IllegalArgumentException;
+        if (permanent || retries >= stages.size() || pending.get() >= properties.getMaxPending()) {
+            deadLetter(request, retries + 1, error.toString());
+            return;
+        }
+        long delay = properties.delay(retries).toNanos();
+        double jitter = properties.getJitter() * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        pending.incrementAndGet();
+        stages.get(retries).add(new PendingRetry(request, retries + 1, System.nanoTime() + (long) (delay * (1 + jitter))));
+        scheduled.get(retries).increment();
+    }
+
+    void succeeded(int retries) {
+        if (retries > 0) {
+            recovered.increment();
+        }
+    }
+
+    /**
+     * Hands every due retry to {@code requeue}, stopping at the first one it refuses. Called from a
+     * single thread.
+     */
+    void releaseDue(Predicate<PendingRetry> requeue) {
+        long now = System.nanoTime();
+        for (Queue<PendingRetry> stage : stages) {
+            PendingRetry next;
+            // With jitter a due request can sit behind a head due a little later, and waits for it
+            while ((next = stage.peek()) != null && next.dueAt() - now <= 0) {
+                if (!requeue.test(next)) {
+                    return;
+                }
+                stage.poll();
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Parks everything still waiting, for shutdown, together with {@code stillQueued}: requests that
+     * were never sent, due at once. What cannot be parked is dead-lettered instead.
+     */
+    void park(List<PendingRetry> stillQueued) {
+        long now = System.nanoTime();
+        Instant wallNow = Instant.now();
+        List<PendingRetry> waiting = new ArrayList<>(stillQueued);
+        for (Queue<PendingRetry> stage : stages) {
+            for (PendingRetry retry; (retry = stage.poll()) != null; ) {
+                pending.decrementAndGet();
+                waiting.add(retry);
+            }
+        }
+        if (waiting.isEmpty()) {
+            return;
+        }
+        try {
+            parked.park(channel, waiting.stream()
+                    .map(retry -> new ParkedRetry(retry.request(), retry.retries(),
+                            wallNow.plusNanos(Math.max(0, retry.dueAt() - now))))
+                    .toList());
+            log.info("Parked {} {} requests waiting to be sent", waiting.size(), channel);
+        } catch (IOException e) {
+            log.error("Could not park {} {} requests, dead-lettering them", waiting.size(), channel, e);
+            for (PendingRetry retry : waiting) {
+                deadLetter(retry.request(), retry.retries(), "Shut down before retrying");
+            }
+        }
+    }
+
+    private void deadLetter(NotificationRequest request, int attempts, String error) {
+        deadLettered.increment();
+        deadLetters.add(new DeadLetter(request, attempts, error, Instant.now()));
+    }
+
+    record PendingRetry(NotificationRequest request, int retries, long dueAt) {
+    }
+}
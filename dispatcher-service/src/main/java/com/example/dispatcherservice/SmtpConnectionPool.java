@@ -0,0 +1,236 @@
+package com.example.dispatcherservice;
+
+import com.sun.mail.smtp.SMTPSendFailedException;
+import com.sun.mail.smtp.SMTPTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends mail over a fixed pool of long-lived SMTP connections instead of connecting, greeting and
+ * authenticating once per message. Each connection is reused for up to {@code maxMessagesPerConnection}
+ * messages. One that fails before the message content was sent, typically a connection the server
+ * dropped while idle, is reopened and the message sent once more on the fresh connection. A failure
+ * once the server took DATA is thrown, since the server may already have accepted the message.
+ * <p>
+ * Closing the pool closes the idle connections and waits up to the read timeout for those in use; any
+ * still in use after that are closed by their sender on return.
+ */
+@Component
+@ConditionalOnProperty(prefix = "spring.mail", name = "host")
+@Slf4j
+public class SmtpConnectionPool {
+
+    private final Session session;
+    private final MailProperties mailProperties;
+    private final EmailProperties emailProperties;
+    private final BlockingQueue<PooledTransport> idle;
+    private final CountDownLatch unclosed;
+    private volatile boolean closed;
+
+    private final Timer sendTimer;
+    private final Counter connectionsOpened;
+    private final Counter reconnects;
+
+    public SmtpConnectionPool(MailProperties mailProperties, EmailProperties emailProperties,
+                              MeterRegistry meterRegistry) {
+        this.mailProperties = mailProperties;
+        this.emailProperties = emailProperties;
+        this.session = Session.getInstance(sessionProperties(mailProperties, emailProperties));
+        this.idle = new ArrayBlockingQueue<>(emailProperties.getConnections());
+        this.unclosed = new CountDownLatch(emailProperties.getConnections());
+        for (int i = 0; i < emailProperties.getConnections(); i++) {
+            idle.add(new PooledTransport());
+        }
+        this.sendTimer = Timer.builder("dispatcher.email.send")
+                .description("Time to send one message over a pooled connection, including waiting for it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.connectionsOpened = Counter.builder("dispatcher.email.connections.opened")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("dispatcher.email.reconnects")
+                .description("Connections reopened after failing before the message content was sent")
+                .register(meterRegistry);
+    }
+
+    private static Properties sessionProperties(MailProperties mail, EmailProperties email) {
+        Properties properties = new Properties();
+        String protocol = mail.getProtocol() != null ? mail.getProtocol() : "smtp";
+        properties.put("mail.transport.protocol", protocol);
+        properties.put("mail." + protocol + ".host", mail.getHost());
+        if (mail.getPort() != null) {
+            properties.put("mail." + protocol + ".port", String.valueOf(mail.getPort()));
+        }
+        properties.put("mail." + protocol + ".auth", String.valueOf(mail.getUsername() != null));
+        properties.put("mail." + protocol + ".connectiontimeout", String.valueOf(email.getConnectTimeout().toMillis()));
+        properties.put("mail." + protocol + ".timeout", String.valueOf(email.getReadTimeout().toMillis()));
+        properties.putAll(mail.getProperties());
+        return properties;
+    }
+
+    public MimeMessage createMessage() {
+        return new MimeMessage(session);
+    }
+
+    public void send(MimeMessage message) throws MessagingException {
+        long started = System.nanoTime();
+        // Headers are finalised before taking a connection so it is only held for the SMTP exchange
+        message.saveChanges();
+        PooledTransport transport = borrow();
+        try {
+            transport.send(message);
+        } finally {
+            release(transport);
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void release(PooledTransport transport) {
+        idle.add(transport);
+        // Checked after adding, so a connection returned while close() runs is closed by one side or the other
+        if (closed && idle.remove(transport)) {
+            retire(transport);
+        }
+    }
+
+    private void retire(PooledTransport transport) {
+        transport.close();
+        unclosed.countDown();
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        if (closed) {
+            throw new MessagingException("SMTP connection pool is closed");
+        }
+        try {
+            PooledTransport transport = idle.poll(emailProperties.getBorrowTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            if (transport == null) {
+                throw new MessagingException("No SMTP connection became free within " + emailProperties.getBorrowTimeout());
+            }
+            if (closed) {
+                release(transport);
+                throw new MessagingException("SMTP connection pool is closed");
+            }
+            return transport;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for an SMTP connection", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.poll()) != null) {
+            retire(transport);
+        }
+        try {
+            if (!unclosed.await(emailProperties.getReadTimeout().toNanos(), TimeUnit.NANOSECONDS)) {
+                log.warn("{} SMTP connections still in use at shutdown; each is closed when its send returns",
+                        unclosed.getCount());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class PooledTransport {
+
+        private Transport transport;
+        private int sent;
+        private long lastUsed;
+
+        void send(MimeMessage message) throws MessagingException {
+            boolean reopened = ensureOpen();
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+            } catch (MessagingException e) {
+                if (e instanceof SendFailedException && !connectionLost(e)) {
+                    // The server refused the addresses, not the connection
+                    throw e;
+                }
+                boolean contentStarted = contentStarted(e);
+                close();
+                if (reopened || contentStarted) {
+                    throw e;
+                }
+                log.warn("SMTP connection failed mid-send, reconnecting: {}", e.getMessage());
+                reconnects.increment();
+                ensureOpen();
+                transport.sendMessage(message, message.getAllRecipients());
+            }
+            lastUsed = System.nanoTime();
+            if (++sent >= emailProperties.getMaxMessagesPerConnection()) {
+                close();
+            }
+        }
+
+        /**
+         * Whether the connection ended mid-command; the server then answers with end of stream, reported
+         * as a send failure with no reply code, rather than with a reply refusing the addresses.
+         */
+        private static boolean connectionLost(MessagingException e) {
+            return e instanceof SMTPSendFailedException failed && failed.getReturnCode() == -1;
+        }
+
+        /**
+         * Whether the server had answered DATA with 354, so the message content was being sent or awaiting
+         * the server's verdict when the connection failed.
+         */
+        private boolean contentStarted(MessagingException e) {
+            if (e instanceof SMTPSendFailedException failed && ".".equals(failed.getCommand())) {
+                return true;
+            }
+            return !(transport instanceof SMTPTransport smtp) || smtp.getLastReturnCode() == 354;
+        }
+
+        private boolean ensureOpen() throws MessagingException {
+            if (transport != null && System.nanoTime() - lastUsed > emailProperties.getIdleTimeout().toNanos()) {
+                close();
+            }
+            if (transport != null) {
+                return false;
+            }
+            Transport opened = session.getTransport();
+            opened.connect(mailProperties.getHost(), mailProperties.getPort() != null ? mailProperties.getPort() : -1,
+                    mailProperties.getUsername(), mailProperties.getPassword());
+            connectionsOpened.increment();
+            transport = opened;
+            sent = 0;
+            lastUsed = System.nanoTime();
+            return true;
+        }
+
+        void close() {
+            if (transport == null) {
+                return;
+            }
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                log.debug("Error closing SMTP connection: {}", e.getMessage());
+            }
+            transport = null;
+        }
+    }
+}
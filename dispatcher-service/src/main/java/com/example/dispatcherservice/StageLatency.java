@@ -0,0 +1,86 @@
+package com.example.dispatcherservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the dispatcher's stages of a notification as notification.stage.latency, under the same
+ * name and tags the orchestrator uses for the stages before it, and the whole trip from ingestion
+ * to the provider accepting the message as notification.end_to_end.latency. Histogram buckets are
+ * the SLO thresholds configured under management.metrics.distribution.slo.notification.
+ * <p>
+ * The event type comes from the request's metadata; past {@link #MAX_EVENT_TYPES} distinct ones the
+ * rest are recorded as "other".
+ */
+class StageLatency {
+
+    static final int MAX_EVENT_TYPES = 100;
+
+    enum Stage {
+        CHANNEL_QUEUE,
+        PROVIDER_SEND
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<Key, Timer> endToEnd = new ConcurrentHashMap<>();
+    private final Set<String> eventTypes = ConcurrentHashMap.newKeySet();
+
+    StageLatency(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    void record(Stage stage, NotificationRequest request, long nanos) {
+        timers.computeIfAbsent(new Key(stage, request.getChannel(), eventType(request)), this::stageTimer)
+                .record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time since the request's ingestion, if it carries one.
+     */
+    void delivered(NotificationRequest request) {
+        if (request.getIngestedAt() == null) {
+            return;
+        }
+        long millis = System.currentTimeMillis() - request.getIngestedAt();
+        endToEnd.computeIfAbsent(new Key(null, request.getChannel(), eventType(request)), this::endToEndTimer)
+                .record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    private String eventType(NotificationRequest request) {
+        Object eventType = request.getMetadata() != null ? request.getMetadata().get("eventType") : null;
+        if (eventType == null) {
+            return "unknown";
+        }
+        String name = eventType.toString();
+        if (eventTypes.contains(name) || (eventTypes.size() < MAX_EVENT_TYPES && eventTypes.add(name))) {
+            return name;
+        }
+        return "other";
+    }
+
+    private Timer stageTimer(Key key) {
+        return Timer.builder("notification.stage.latency")
+                .description("Time an event-triggered notification spent in each stage")
+                .tag("stage", key.stage().name().toLowerCase())
+                .tag("channel", key.channel().name())
+                .tag("event_type", key.eventType())
+                .register(meterRegistry);
+    }
+
+    private Timer endToEndTimer(Key key) {
+        return Timer.builder("notification.end_to_end.latency")
+                .description("Time from the event's ingestion until the provider accepted the notification")
+                .tag("channel", key.channel().name())
+                .tag("event_type", key.eventType())
+                .register(meterRegistry);
+    }
+
+    private record Key(Stage stage, ChannelType channel, String eventType) {
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.dispatcherservice;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Rather than a token count it keeps the time the next token becomes free,
+ * moved forward with a compare-and-set, so a caller reserves a token and is told how long to wait
+ * for it. Up to {@code burst} tokens can be taken back to back after an idle spell.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFree;
+
+    TokenBucket(double permitsPerSecond, int burst) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = (Math.max(1, burst) - 1) * intervalNanos;
+        this.nextFree = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * Returns a bucket for the given limit, or null when the limit is unset.
+     */
+    static TokenBucket of(DispatchProperties.RateLimitProperties limit) {
+        return limit != null && limit.getPermitsPerSecond() > 0
+                ? new TokenBucket(limit.getPermitsPerSecond(), limit.getBurst()) : null;
+    }
+
+    /**
+     * Takes the next token and returns how many nanoseconds from now it becomes usable; 0 if it already is.
+     */
+    long reserve() {
+        while (true) {
+            long now = System.nanoTime();
+            long free = nextFree.get();
+            // Tokens do not pile up beyond the burst while the bucket is idle
+            long granted = free - (now - burstNanos) > 0 ? free : now - burstNanos;
+            if (nextFree.compareAndSet(free, granted + intervalNanos)) {
+                return Math.max(0, granted - now);
+            }
+        }
+    }
+}
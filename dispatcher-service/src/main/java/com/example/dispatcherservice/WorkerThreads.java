@@ -0,0 +1,32 @@
+package com.example.dispatcherservice;
+
+import com.example.shared.VirtualThreads;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates worker thread factories, using virtual threads when requested and the running JVM has them.
+ */
+@Slf4j
+final class WorkerThreads {
+
+    private WorkerThreads() {
+    }
+
+    static ThreadFactory factory(String namePrefix, boolean virtual) {
+        if (virtual) {
+            Optional<ThreadFactory> factory = VirtualThreads.factory(namePrefix);
+            if (factory.isPresent()) {
+                return factory.get();
+            }
+            log.info("Virtual threads are not available on Java {}, using platform threads for {}",
+                    Runtime.version().feature(), namePrefix);
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(namePrefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.dispatcherservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SmtpConnectionPoolTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final EmailProperties emailProperties = new EmailProperties();
+    private SmtpStubServer server;
+    private SmtpConnectionPool pool;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (pool != null) {
+            pool.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void reusesThePooledConnectionsForConsecutiveMessages() throws Exception {
+        emailProperties.setConnections(2);
+        start(new SmtpStubServer(0));
+
+        for (int i = 0; i < 6; i++) {
+            pool.send(message());
+        }
+
+        assertThat(server.messages()).isEqualTo(6);
+        assertThat(server.sessions()).isEqualTo(2);
+        assertThat(meterRegistry.counter("dispatcher.email.connections.opened").count()).isEqualTo(2);
+    }
+
+    @Test
+    void neverHasMoreConnectionsOpenThanThePoolHolds() throws Exception {
+        emailProperties.setConnections(2);
+        start(new SmtpStubServer(0, 10));
+        ExecutorService senders = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<?>> sends = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                sends.add(senders.submit(() -> {
+                    pool.send(message());
+                    return null;
+                }));
+            }
+            for (Future<?> send : sends) {
+                send.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            senders.shutdownNow();
+        }
+
+        assertThat(server.messages()).isEqualTo(24);
+        assertThat(server.sessions()).isEqualTo(2);
+    }
+
+    @Test
+    void reopensTheConnectionAfterMaxMessagesPerConnection() throws Exception {
+        emailProperties.setConnections(1);
+        emailProperties.setMaxMessagesPerConnection(3);
+        start(new SmtpStubServer(0));
+
+        for (int i = 0; i < 7; i++) {
+            pool.send(message());
+        }
+
+        assertThat(server.messages()).isEqualTo(7);
+        assertThat(server.sessions()).isEqualTo(3);
+    }
+
+    @Test
+    void reconnectsAndSendsAgainWhenTheServerDroppedTheConnection() throws Exception {
+        emailProperties.setConnections(1);
+        start(new SmtpStubServer(0));
+        pool.send(message());
+        awaitOpenSessions(1);
+
+        server.dropConnections();
+        pool.send(message());
+
+        assertThat(server.messages()).isEqualTo(2);
+        assertThat(server.sessions()).isEqualTo(2);
+        assertThat(meterRegistry.counter("dispatcher.email.reconnects").count()).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpWhenNoConnectionBecomesFree() throws Exception {
+        emailProperties.setConnections(1);
+        emailProperties.setBorrowTimeout(Duration.ofMillis(100));
+        start(new SmtpStubServer(0, 1_000));
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> holding = sender.submit(() -> {
+                pool.send(message());
+                return null;
+            });
+            awaitOpenSessions(1);
+
+            assertThatThrownBy(() -> pool.send(message()))
+                    .isInstanceOf(MessagingException.class)
+                    .hasMessageContaining("No SMTP connection became free");
+            holding.get(10, TimeUnit.SECONDS);
+        } finally {
+            sender.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitsForAConnectionInUseAtShutdownAndClosesItToo() throws Exception {
+        emailProperties.setConnections(2);
+        start(new SmtpStubServer(0, 300));
+        pool.send(message());
+        ExecutorService sender = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> inFlight = sender.submit(() -> {
+                pool.send(message());
+                return null;
+            });
+            awaitOpenSessions(2);
+
+            pool.close();
+
+            // close() only returns once the send has handed its connection back
+            assertThat(server.messages()).isEqualTo(2);
+            inFlight.get(10, TimeUnit.SECONDS);
+            awaitOpenSessions(0);
+            assertThatThrownBy(() -> pool.send(message()))
+                    .isInstanceOf(MessagingException.class)
+                    .hasMessageContaining("closed");
+        } finally {
+            sender.shutdownNow();
+        }
+    }
+
+    private void start(SmtpStubServer server) {
+        this.server = server;
+        MailProperties mailProperties = new MailProperties();
+        mailProperties.setHost("localhost");
+        mailProperties.setPort(server.port());
+        pool = new SmtpConnectionPool(mailProperties, emailProperties, meterRegistry);
+    }
+
+    private void awaitOpenSessions(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.openSessions() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(server.openSessions()).isEqualTo(expected);
+    }
+
+    private MimeMessage message() throws MessagingException {
+        MimeMessage message = pool.createMessage();
+        message.setFrom(new InternetAddress("no-reply@example.com"));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("user@example.com"));
+        message.setSubject("Your order has shipped");
+        message.setText("Your order is on its way.");
+        return message;
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.dispatcherservice;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process SMTP server that accepts and discards every message. {@code handshakeDelayMillis}
+ * is added before the greeting to stand in for TLS setup and authentication on a real server, and
+ * {@code acceptDelayMillis} before accepting each message's content. Shared by the tests and the
+ * benchmarks.
+ */
+class SmtpStubServer implements AutoCloseable {
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "smtp-stub");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long handshakeDelayMillis;
+    private final long acceptDelayMillis;
+    private final AtomicLong messages = new AtomicLong();
+    private final AtomicLong sessions = new AtomicLong();
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+
+    SmtpStubServer(long handshakeDelayMillis) throws IOException {
+        this(handshakeDelayMillis, 0);
+    }
+
+    SmtpStubServer(long handshakeDelayMillis, long acceptDelayMillis) throws IOException {
+        this.handshakeDelayMillis = handshakeDelayMillis;
+        this.acceptDelayMillis = acceptDelayMillis;
+        this.serverSocket = new ServerSocket(0, 256, InetAddress.getLoopbackAddress());
+        connections.execute(this::acceptLoop);
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    long messages() {
+        return messages.get();
+    }
+
+    long sessions() {
+        return sessions.get();
+    }
+
+    /**
+     * Connections the client has not closed yet.
+     */
+    int openSessions() {
+        return open.size();
+    }
+
+    /**
+     * Drops every open connection without a word, as a server timing out idle clients does.
+     */
+    void dropConnections() throws IOException {
+        for (Socket socket : open) {
+            socket.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connections.execute(() -> converse(socket));
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void converse(Socket socket) {
+        sessions.incrementAndGet();
+        open.add(socket);
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+             OutputStream out = socket.getOutputStream()) {
+            if (handshakeDelayMillis > 0) {
+                Thread.sleep(handshakeDelayMillis);
+            }
+            reply(out, "220 localhost stub");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "EHLO", "HELO" -> reply(out, "250 localhost");
+                    case "DATA" -> {
+                        reply(out, "354 end with .");
+                        while ((line = in.readLine()) != null && !line.equals(".")) {
+                            // discard the message body
+                        }
+                        if (acceptDelayMillis > 0) {
+                            Thread.sleep(acceptDelayMillis);
+                        }
+                        messages.incrementAndGet();
+                        reply(out, "250 queued");
+                    }
+                    case "QUIT" -> {
+                        reply(out, "221 bye");
+                        return;
+                    }
+                    default -> reply(out, "250 ok");
+                }
+            }
+        } catch (IOException | InterruptedException e) {
+            // connection dropped
+        } finally {
+            open.remove(socket);
+        }
+    }
+
+    private static void reply(OutputStream out, String line) throws IOException {
+        out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+    }
+}
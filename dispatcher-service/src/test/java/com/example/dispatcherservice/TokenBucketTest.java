@@ -0,0 +1,101 @@
+package com.example.dispatcherservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    // Generous allowance for time passing between reservations on a slow machine
+    private static final long SLACK = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    void grantsTheBurstAtOnceThenSpacesTokensByTheInterval() {
+        TokenBucket bucket = new TokenBucket(1, 3);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isCloseTo(SECOND, within(SLACK));
+        assertThat(bucket.reserve()).isCloseTo(2 * SECOND, within(SLACK));
+    }
+
+    @Test
+    void treatsAMissingBurstAsOne() {
+        TokenBucket bucket = new TokenBucket(1, 0);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isCloseTo(SECOND, within(SLACK));
+    }
+
+    @Test
+    void doesNotSaveUpMoreThanTheBurstWhileIdle() throws InterruptedException {
+        // 20 ms between tokens; idling for ten intervals still only leaves the burst of two
+        TokenBucket bucket = new TokenBucket(50, 2);
+        bucket.reserve();
+        bucket.reserve();
+
+        Thread.sleep(200);
+
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isZero();
+        assertThat(bucket.reserve()).isPositive();
+    }
+
+    @Test
+    void grantsEveryTokenOnceUnderContention() throws Exception {
+        int threads = 8;
+        int perThread = 100;
+        int burst = 10;
+        TokenBucket bucket = new TokenBucket(1, burst);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Long> waits = Collections.synchronizedList(new ArrayList<>());
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        waits.add(bucket.reserve());
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<Long> sorted = new ArrayList<>(waits);
+        Collections.sort(sorted);
+        assertThat(sorted).hasSize(threads * perThread);
+        assertThat(sorted.stream().filter(wait -> wait == 0)).hasSize(burst);
+        // A lost or doubled compare-and-set would leave a gap or a repeat in the schedule
+        for (int i = burst; i < sorted.size(); i++) {
+            assertThat(sorted.get(i) - sorted.get(i - 1)).isCloseTo(SECOND, within(SLACK));
+        }
+    }
+
+    @Test
+    void hasNoBucketForAnUnsetLimit() {
+        DispatchProperties.RateLimitProperties limit = new DispatchProperties.RateLimitProperties();
+
+        assertThat(TokenBucket.of(null)).isNull();
+        assertThat(TokenBucket.of(limit)).isNull();
+
+        limit.setPermitsPerSecond(5);
+        assertThat(TokenBucket.of(limit)).isNotNull();
+    }
+}
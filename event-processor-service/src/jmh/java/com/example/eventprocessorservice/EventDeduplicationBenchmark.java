@@ -0,0 +1,67 @@
+package com.example.eventprocessorservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of passing one polled batch through {@link EventDeduplicator}: filtering it against a full
+ * window of remembered ids, then remembering it. One in ten events repeats an id already handed off.
+ * Run with {@code -prof gc}; per batch, the only allocations should be the result list and the
+ * in-batch id table.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDeduplicationBenchmark {
+
+    private static final int BATCH_SIZE = 500;
+
+    private EventDeduplicator deduplicator;
+    private List<List<EventData>> batches;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        DeduplicationProperties properties = new DeduplicationProperties();
+        deduplicator = new EventDeduplicator(properties, new SimpleMeterRegistry());
+
+        List<EventData> handedOff = new ArrayList<>();
+        for (int i = 0; i < properties.getBucketCapacity() * 5; i += BATCH_SIZE) {
+            List<EventData> batch = randomBatch(BATCH_SIZE);
+            deduplicator.markHandedOff(batch);
+            handedOff.addAll(batch);
+        }
+        batches = new ArrayList<>();
+        for (int b = 0; b < 64; b++) {
+            List<EventData> batch = randomBatch(BATCH_SIZE);
+            for (int i = 0; i < BATCH_SIZE; i += 10) {
+                batch.set(i, handedOff.get((b * BATCH_SIZE + i) % handedOff.size()));
+            }
+            batches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public List<EventData> filterAndRemember() {
+        List<EventData> batch = batches.get(next++ & 63);
+        List<EventData> unseen = deduplicator.filter(batch);
+        deduplicator.markHandedOff(unseen);
+        return unseen;
+    }
+
+    private static List<EventData> randomBatch(int size) {
+        List<EventData> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(new EventData(UUID.randomUUID(), "ORDER_PLACED", "user" + (i % 50), "{}", null, null, null));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.eventprocessorservice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.Data;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of decoding one Kafka record value: the previous String plus full-map data binding against
+ * {@link IncomingEventDecoder}. Run with {@code -prof gc} to compare bytes allocated per record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncomingEventDeserializationBenchmark {
+
+    @Param({"4", "32"})
+    private int payloadEntries;
+
+    private ObjectMapper objectMapper;
+    private IncomingEventDecoder decoder;
+    private byte[] value;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = new AppConfig().objectMapper();
+        decoder = new IncomingEventDecoder(objectMapper, new SimpleMeterRegistry());
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("userId", "user00042");
+        payload.put("orderId", "ORD-12345");
+        for (int i = 2; i < payloadEntries; i++) {
+            payload.put("field" + i, i % 2 == 0 ? "value-" + i : i);
+        }
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("eventId", UUID.randomUUID().toString());
+        event.put("eventType", "ORDER_PLACED");
+        event.put("source", "ORDER_SERVICE");
+        event.put("payload", payload);
+        value = objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public MappedEventMessage stringAndMapBinding() throws JsonProcessingException {
+        String message = new String(value, StandardCharsets.UTF_8);
+        return objectMapper.readValue(message, MappedEventMessage.class);
+    }
+
+    @Benchmark
+    public IncomingEventMessage streamingDecoder() throws IOException {
+        return decoder.decode(value);
+    }
+
+    /**
+     * Shape of the event before the payload was kept as raw JSON.
+     */
+    @Data
+    public static class MappedEventMessage {
+        private UUID eventId;
+        private EventType eventType;
+        private EventSource source;
+        private Map<String, Object> payload;
+    }
+}
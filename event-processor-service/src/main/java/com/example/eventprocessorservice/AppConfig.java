@@ -1,14 +1,56 @@
 package com.example.eventprocessorservice;
 
+import com.example.shared.TailSamplingProperties;
+import com.example.shared.TailSamplingSpanHandler;
+import com.example.shared.TraceFileWriter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.backoff.ExponentialBackOff;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
+@Import({TailSamplingSpanHandler.class, TraceFileWriter.class})
+@EnableConfigurationProperties({EventProcessingProperties.class, DeduplicationProperties.class, TailSamplingProperties.class})
 public class AppConfig {
 
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
     }
+
+    @Bean
+    public RestTemplate orchestratorRestTemplate(RestTemplateBuilder builder,
+                                                 @Value("${orchestrator-service.url}") String orchestratorUrl) {
+        return builder.rootUri(orchestratorUrl)
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Bean
+    public ExecutorService laneExecutor(EventProcessingProperties properties,
+                                        @Value("${spring.kafka.listener.concurrency:1}") int listenerConcurrency) {
+        return Executors.newFixedThreadPool(properties.getLanes() * listenerConcurrency,
+                new CustomizableThreadFactory("event-lane-"));
+    }
+
+    @Bean
+    public DefaultErrorHandler kafkaErrorHandler(EventProcessingProperties properties) {
+        // A batch that could not be handed off is redelivered until the orchestrator takes it; no offsets are skipped.
+        // Unreadable records and events the orchestrator refuses are dropped before this, so only outages wait here
+        ExponentialBackOff backOff = new ExponentialBackOff(properties.getRetryInitialInterval().toMillis(), 2.0);
+        backOff.setMaxInterval(properties.getRetryMaxInterval().toMillis());
+        return new DefaultErrorHandler(backOff);
+    }
 }
@@ -0,0 +1,30 @@
+package com.example.eventprocessorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "event-processor.dedup")
+public class DeduplicationProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * How long an event id is remembered after its event was handed off.
+     */
+    private Duration window = Duration.ofMinutes(10);
+
+    /**
+     * Slices the window is kept in. The oldest slice is dropped as a whole, so ids are remembered for
+     * between window - window/buckets and window.
+     */
+    private int buckets = 10;
+
+    /**
+     * Most ids one slice holds. A slice that fills up before its time is over is rotated early, which
+     * shortens the window instead of growing memory. Each slice takes about 42 bytes per id.
+     */
+    private int bucketCapacity = 100_000;
+}
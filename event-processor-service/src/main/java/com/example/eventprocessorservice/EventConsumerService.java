@@ -1,26 +1,199 @@
 package com.example.eventprocessorservice;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Consumes events a polled batch at a time. Events already handed off within the dedup window are
+ * dropped, the rest are split into lanes by user id, lanes are handed to the orchestrator in
+ * parallel, and the batch's offsets are committed only once every lane has been accepted. Events for one user stay in one lane, so their order is preserved.
+ * <p>
+ * The orchestrator reports the events it could not process. Those that failed for good, and lanes
+ * it refused with a client error other than 429, are logged and dropped; if any may pass later, the batch is redelivered, and the events already handed off
+ * are dropped from it as duplicates so that only the rest are sent again. An event the orchestrator
+ * dispatched to some of its channels is remembered with the channels still to send, and only those
+ * are sent when it comes back.
+ */
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class EventConsumerService {
 
-    private final ObjectMapper objectMapper;
+    private static final int MAX_UNSENT_CHANNELS = 10_000;
+
+    private final IncomingEventDecoder eventDecoder;
+    private final EventDeduplicator deduplicator;
+    private final OrchestratorClient orchestratorClient;
+    private final EventTracing eventTracing;
+    private final ExecutorService laneExecutor;
+    private final EventProcessingProperties properties;
+    // By event id, until the event is redelivered. Bounded, since a partition moving to another consumer
+    // leaves its entries behind; losing one only means that event's sent channels are sent again
+    private final Map<UUID, List<String>> unsentChannels = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, false) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, List<String>> eldest) {
+                    return size() > MAX_UNSENT_CHANNELS;
+                }
+            });
+
+    private final DistributionSummary batchSize;
+    private final Timer batchTimer;
+    private final DistributionSummary batchLag;
+
+    public EventConsumerService(IncomingEventDecoder eventDecoder, EventDeduplicator deduplicator,
+                                OrchestratorClient orchestratorClient, EventTracing eventTracing, ExecutorService laneExecutor,
+                                EventProcessingProperties properties, MeterRegistry meterRegistry) {
+        this.eventDecoder = eventDecoder;
+        this.deduplicator = deduplicator;
+        this.orchestratorClient = orchestratorClient;
+        this.eventTracing = eventTracing;
+        this.laneExecutor = laneExecutor;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("event-processor.batch.size")
+                .description("Records per polled batch")
+                .register(meterRegistry);
+        this.batchTimer = Timer.builder("event-processor.batch.processing")
+                .description("Time from receiving a batch to handing all of it to the orchestrator")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.batchLag = DistributionSummary.builder("event-processor.batch.lag")
+                .description("Records still behind the log end on the batch's partitions after it was polled")
+                .register(meterRegistry);
+    }
 
     @KafkaListener(topics = {"user-events", "order-events"}, groupId = "notification-event-processor")
-    public void consumeEvent(String message) {
+    public void consumeEvents(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment,
+                              Consumer<?, ?> consumer) {
+        batchSize.record(records.size());
+        recordLag(records, consumer);
+
+        Timer.Sample sample = Timer.start();
+        List<EventData> events = deduplicator.filter(eventDecoder.decodeBatch(records));
+        for (EventData event : events) {
+            if (event.getEventId() != null) {
+                event.setChannels(unsentChannels.get(event.getEventId()));
+            }
+        }
+        List<List<EventData>> lanes = splitIntoLanes(events);
+        Queue<EventData> handedOff = new ConcurrentLinkedQueue<>();
+        CompletableFuture<?>[] handoffs = lanes.stream()
+                .filter(lane -> !lane.isEmpty())
+                .map(lane -> {
+                    List<Span> spans = lane.stream().map(eventTracing::start).toList();
+                    return CompletableFuture.runAsync(() -> handOff(lane, handedOff), laneExecutor)
+                            .whenComplete((ignored, error) -> eventTracing.finish(spans, error));
+                })
+                .toArray(CompletableFuture[]::new);
         try {
-            IncomingEventMessage event = objectMapper.readValue(message, IncomingEventMessage.class);
-            log.info("Received event: {}", event);
-            // In a real implementation, this would call the Orchestrator Service
-        } catch (Exception e) {
-            log.error("Error processing event: {}", message, e);
+            awaitHandoff(CompletableFuture.allOf(handoffs), events.size());
+        } finally {
+            deduplicator.markHandedOff(new ArrayList<>(handedOff));
+            handedOff.forEach(event -> {
+                if (event.getEventId() != null) {
+                    unsentChannels.remove(event.getEventId());
+                }
+            });
+        }
+        sample.stop(batchTimer);
+
+        acknowledgment.acknowledge();
+    }
+
+    private void handOff(List<EventData> lane, Queue<EventData> handedOff) {
+        TriggerBatchResult result;
+        try {
+            result = orchestratorClient.trigger(lane);
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                throw e;
+            }
+            // Sending it again would be refused again, and would hold up the partitions behind it
+            log.error("Orchestrator refused {} events: {}", lane.size(), e.getStatusCode());
+            handedOff.addAll(lane);
+            return;
+        }
+        Set<Integer> retry = new HashSet<>(result.getRetry());
+        for (int i = 0; i < lane.size(); i++) {
+            EventData event = lane.get(i);
+            if (!retry.contains(i)) {
+                handedOff.add(event);
+            } else if (result.getUnsentChannels().containsKey(i) && event.getEventId() != null) {
+                unsentChannels.put(event.getEventId(), result.getUnsentChannels().get(i));
+            }
+        }
+        if (!result.getFailed().isEmpty()) {
+            log.error("Orchestrator could not process {} of {} events and will not be sent them again",
+                    result.getFailed().size(), lane.size());
+        }
+        if (!retry.isEmpty()) {
+            throw new IllegalStateException("Orchestrator could not process " + retry.size() + " of " + lane.size()
+                    + " events for now");
+        }
+    }
+
+    private List<List<EventData>> splitIntoLanes(List<EventData> events) {
+        int laneCount = Math.max(1, Math.min(properties.getLanes(), events.size()));
+        List<List<EventData>> lanes = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            lanes.add(new ArrayList<>());
+        }
+        for (EventData event : events) {
+            String userId = event.getUserId() != null ? event.getUserId() : "";
+            lanes.get(Math.floorMod(userId.hashCode(), laneCount)).add(event);
+        }
+        return lanes;
+    }
+
+    private void awaitHandoff(CompletableFuture<Void> handoff, int records) {
+        try {
+            handoff.get(properties.getHandoffTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while handing off " + records + " events", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // Thrown back to the container, which redelivers the batch after a backoff
+            log.warn("Handing off {} events to the orchestrator failed, the batch will be retried: {}",
+                    records, e.getCause() != null ? e.getCause().getMessage() : e.toString());
+            throw new IllegalStateException("Failed to hand off " + records + " events to the orchestrator", e);
+        }
+    }
+
+    private void recordLag(List<ConsumerRecord<String, byte[]>> records, Consumer<?, ?> consumer) {
+        Set<TopicPartition> partitions = new HashSet<>();
+        for (ConsumerRecord<String, byte[]> record : records) {
+            partitions.add(new TopicPartition(record.topic(), record.partition()));
+        }
+        long lag = 0;
+        for (TopicPartition partition : partitions) {
+            lag += consumer.currentLag(partition).orElse(0);
         }
+        batchLag.record(lag);
     }
 }
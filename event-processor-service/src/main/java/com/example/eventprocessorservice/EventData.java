@@ -0,0 +1,46 @@
+package com.example.eventprocessorservice;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventData {
+    /**
+     * Id of the incoming event, used to drop redeliveries. Not sent to the orchestrator.
+     */
+    @JsonIgnore
+    private UUID eventId;
+    private String eventType;
+    private String userId;
+    /**
+     * The event payload as JSON text, written into the request body as-is.
+     */
+    @JsonRawValue
+    private String data;
+    /**
+     * When the event entered the platform, in epoch milliseconds. Carried through to the dispatcher
+     * so each stage's latency can be measured against the delivery SLOs.
+     */
+    private Long ingestedAt;
+    /**
+     * Trace context as propagation headers: the producer's as read from the record, then this
+     * service's span for the event, which the orchestrator continues.
+     */
+    private Map<String, String> trace;
+    /**
+     * Channels still to send, when the orchestrator already dispatched the others on an earlier
+     * attempt. Left out to send every channel.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> channels;
+}
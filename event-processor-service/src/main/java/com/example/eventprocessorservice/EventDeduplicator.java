@@ -0,0 +1,178 @@
+package com.example.eventprocessorservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Drops events whose id was already handed off within the configured window. Ids are kept in a ring
+ * of fixed-size {@link UuidSet} slices, one per window/buckets of time, and the oldest slice is cleared
+ * as time moves on, so memory is fixed up front and a lookup probes at most one table per slice.
+ * <p>
+ * Ids are only remembered once their events have been handed off: events that failed are redelivered
+ * with the same ids and must not be dropped as duplicates of themselves. Events without an id pass through.
+ */
+@Component
+@Slf4j
+public class EventDeduplicator {
+
+    private final UuidSet[] buckets;
+    private final long[] bucketStarted;
+    private final long bucketNanos;
+    private int current;
+
+    private final Counter dropped;
+    private final Counter earlyRotations;
+
+    public EventDeduplicator(DeduplicationProperties properties, MeterRegistry meterRegistry) {
+        int bucketCount = properties.isEnabled() ? Math.max(1, properties.getBuckets()) : 0;
+        this.buckets = new UuidSet[bucketCount];
+        this.bucketStarted = new long[bucketCount];
+        this.bucketNanos = bucketCount > 0 ? properties.getWindow().toNanos() / bucketCount : 0;
+        long now = System.nanoTime();
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new UuidSet(properties.getBucketCapacity());
+            bucketStarted[i] = now;
+        }
+
+        this.dropped = Counter.builder("event-processor.dedup.dropped")
+                .description("Events dropped because their id was already handed off within the window")
+                .register(meterRegistry);
+        this.earlyRotations = Counter.builder("event-processor.dedup.rotations.early")
+                .description("Slices rotated before their time because they were full, each shortening the window")
+                .register(meterRegistry);
+        Gauge.builder("event-processor.dedup.memory", this, EventDeduplicator::sizeInBytes)
+                .description("Heap held by the id tables")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("event-processor.dedup.entries", this, EventDeduplicator::entries)
+                .description("Event ids currently remembered")
+                .register(meterRegistry);
+        Gauge.builder("event-processor.dedup.window.covered", this, EventDeduplicator::coveredSeconds)
+                .description("How far back remembered ids currently reach")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the events whose id has not been handed off within the window, dropping repeats
+     * inside the batch as well. Nothing is remembered until {@link #markHandedOff(List)}.
+     */
+    public List<EventData> filter(List<EventData> events) {
+        return filter(events, EventData::getEventId);
+    }
+
+    public void markHandedOff(List<EventData> events) {
+        markHandedOff(events, EventData::getEventId);
+    }
+
+    /**
+     * As {@link #filter(List)}, for anything with an id. Ids are random UUIDs, so different kinds of
+     * item can share the window.
+     */
+    public <T> List<T> filter(List<T> events, Function<T, UUID> idOf) {
+        if (buckets.length == 0 || events.isEmpty()) {
+            return events;
+        }
+        UuidSet inBatch = new UuidSet(events.size());
+        List<T> unseen = new ArrayList<>(events.size());
+        int duplicates = 0;
+        synchronized (this) {
+            rotate(System.nanoTime());
+            for (T event : events) {
+                UUID id = idOf.apply(event);
+                if (id == null) {
+                    unseen.add(event);
+                } else if (seen(id.getMostSignificantBits(), id.getLeastSignificantBits())
+                        || !inBatch.add(id.getMostSignificantBits(), id.getLeastSignificantBits())) {
+                    duplicates++;
+                } else {
+                    unseen.add(event);
+                }
+            }
+        }
+        if (duplicates > 0) {
+            dropped.increment(duplicates);
+            log.debug("Dropped {} duplicate events out of {}", duplicates, events.size());
+        }
+        return unseen;
+    }
+
+    public <T> void markHandedOff(List<T> events, Function<T, UUID> idOf) {
+        if (buckets.length == 0 || events.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            rotate(now);
+            for (T event : events) {
+                UUID id = idOf.apply(event);
+                if (id == null) {
+                    continue;
+                }
+                if (buckets[current].isFull()) {
+                    earlyRotations.increment();
+                    advance(now);
+                }
+                buckets[current].add(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            }
+        }
+    }
+
+    private boolean seen(long msb, long lsb) {
+        for (UuidSet bucket : buckets) {
+            if (bucket.size() > 0 && bucket.contains(msb, lsb)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rotate(long now) {
+        // After an idle spell, one slice is dropped for every slice length that went by
+        long elapsed = (now - bucketStarted[current]) / Math.max(bucketNanos, 1);
+        for (long i = 0; i < Math.min(elapsed, buckets.length); i++) {
+            advance(now);
+        }
+    }
+
+    private void advance(long now) {
+        current = (current + 1) % buckets.length;
+        buckets[current].clear();
+        bucketStarted[current] = now;
+    }
+
+    private synchronized double sizeInBytes() {
+        long bytes = 0;
+        for (UuidSet bucket : buckets) {
+            bytes += bucket.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private synchronized double entries() {
+        long entries = 0;
+        for (UuidSet bucket : buckets) {
+            entries += bucket.size();
+        }
+        return entries;
+    }
+
+    private synchronized double coveredSeconds() {
+        long now = System.nanoTime();
+        long oldest = now;
+        for (int i = 0; i < buckets.length; i++) {
+            if (buckets[i].size() > 0 && now - bucketStarted[i] > now - oldest) {
+                oldest = bucketStarted[i];
+            }
+        }
+        return (now - oldest) / 1e9;
+    }
+}
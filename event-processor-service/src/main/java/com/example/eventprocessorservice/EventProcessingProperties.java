@@ -0,0 +1,25 @@
+package com.example.eventprocessorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "event-processor.processing")
+public class EventProcessingProperties {
+
+    /**
+     * Parallel lanes a polled batch is split into. Events for one user always share a lane.
+     */
+    private int lanes = 8;
+
+    /**
+     * Longest a batch may take to hand off before it is retried from its first uncommitted offset.
+     */
+    private Duration handoffTimeout = Duration.ofSeconds(30);
+
+    private Duration retryInitialInterval = Duration.ofMillis(500);
+
+    private Duration retryMaxInterval = Duration.ofSeconds(30);
+}
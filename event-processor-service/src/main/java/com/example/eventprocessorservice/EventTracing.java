@@ -0,0 +1,62 @@
+package com.example.eventprocessorservice;
+
+import com.example.shared.TailSamplingSpanHandler;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.propagation.Propagator;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+/**
+ * One span per event, from the event being decoded until the orchestrator accepted the batch
+ * carrying it. The span continues the producer's trace when the record carried one and starts a
+ * new trace otherwise. Events are handed off in batches, so the span's context travels to the
+ * orchestrator inside the event rather than in the batch request's headers.
+ */
+@Component
+public class EventTracing {
+
+    private final Propagator propagator;
+
+    public EventTracing(Propagator propagator) {
+        this.propagator = propagator;
+    }
+
+    /**
+     * Starts the event's span and replaces the event's trace context with the span's own.
+     */
+    public Span start(EventData event) {
+        Map<String, String> upstream = event.getTrace() != null ? event.getTrace() : Map.of();
+        Span.Builder builder = propagator.extract(upstream, Map::get)
+                .name("consume event")
+                .kind(Span.Kind.CONSUMER)
+                .remoteServiceName("kafka");
+        if (event.getEventType() != null) {
+            builder.tag("notification.event_type", event.getEventType());
+        }
+        if (event.getUserId() != null) {
+            builder.tag("notification.user_id", event.getUserId());
+        }
+        if (event.getIngestedAt() != null) {
+            builder.tag(TailSamplingSpanHandler.INGESTED_AT, event.getIngestedAt().toString());
+        }
+        Span span = builder.start();
+        Map<String, String> trace = new HashMap<>(4);
+        propagator.inject(span.context(), trace, Map::put);
+        event.setTrace(trace);
+        return span;
+    }
+
+    public void finish(List<Span> spans, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        for (Span span : spans) {
+            if (cause != null) {
+                span.error(cause);
+            }
+            span.end();
+        }
+    }
+}
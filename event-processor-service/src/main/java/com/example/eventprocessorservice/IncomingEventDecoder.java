@@ -0,0 +1,186 @@
+package com.example.eventprocessorservice;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes record values straight from bytes with a streaming parser. Only the routing fields are
+ * read; the payload object is skipped over and kept as its raw JSON text rather than built into a map.
+ */
+@Component
+@Slf4j
+public class IncomingEventDecoder {
+
+    // Trace context headers in the formats tracing can propagate: W3C, B3 single and B3 multi
+    private static final Set<String> TRACE_HEADERS = Set.of("traceparent", "tracestate", "b3",
+            "X-B3-TraceId", "X-B3-SpanId", "X-B3-ParentSpanId", "X-B3-Sampled", "X-B3-Flags");
+
+    private final JsonFactory jsonFactory;
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final boolean allocationTracking;
+    private final Timer decodeTimer;
+    private final DistributionSummary allocatedBytes;
+
+    public IncomingEventDecoder(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.jsonFactory = objectMapper.getFactory();
+        this.threadMXBean = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                ? bean : null;
+        this.allocationTracking = threadMXBean != null && threadMXBean.isThreadAllocatedMemorySupported()
+                && threadMXBean.isThreadAllocatedMemoryEnabled();
+        this.decodeTimer = Timer.builder("event-processor.decode")
+                .description("Time to decode one record value, averaged over each batch")
+                .register(meterRegistry);
+        this.allocatedBytes = DistributionSummary.builder("event-processor.decode.allocated")
+                .description("Heap allocated decoding one record value, averaged over each batch")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decodes a polled batch into orchestrator events, in record order. Records that cannot be decoded
+     * are logged and left out. Timing and allocation are measured across the batch and recorded as
+     * per-record averages, which keeps the meters off the per-record path.
+     */
+    public List<EventData> decodeBatch(List<ConsumerRecord<String, byte[]>> records) {
+        long allocatedBefore = allocationTracking ? threadMXBean.getCurrentThreadAllocatedBytes() : 0;
+        long started = System.nanoTime();
+        List<EventData> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            EventData event = toEventData(record);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        if (!records.isEmpty()) {
+            decodeTimer.record((System.nanoTime() - started) / records.size(), TimeUnit.NANOSECONDS);
+            if (allocationTracking) {
+                allocatedBytes.record((double) (threadMXBean.getCurrentThreadAllocatedBytes() - allocatedBefore) / records.size());
+            }
+        }
+        return events;
+    }
+
+    private EventData toEventData(ConsumerRecord<String, byte[]> record) {
+        try {
+            IncomingEventMessage event = decode(record.value());
+            // The payload names the recipient; producers may key by something else, such as an order
+            String userId = event.getUserId() != null ? event.getUserId() : record.key();
+            return new EventData(event.getEventId(),
+                    event.getEventType() != null ? event.getEventType().name() : null, userId, event.getPayload(),
+                    ingestedAt(event, record), traceHeaders(record), null);
+        } catch (Exception e) {
+            // Retrying will not make a malformed record readable, so it is skipped and its offset committed
+            log.error("Skipping unreadable event at {}-{}@{}: {}", record.topic(), record.partition(), record.offset(),
+                    record.value() != null ? new String(record.value(), StandardCharsets.UTF_8) : null, e);
+            return null;
+        }
+    }
+
+    /**
+     * The producer's receivedAt, taken as UTC, or else the record's own timestamp.
+     */
+    private static Long ingestedAt(IncomingEventMessage event, ConsumerRecord<String, byte[]> record) {
+        if (event.getReceivedAt() != null) {
+            return event.getReceivedAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+        }
+        return record.timestamp() >= 0 ? record.timestamp() : null;
+    }
+
+    private static Map<String, String> traceHeaders(ConsumerRecord<String, byte[]> record) {
+        Map<String, String> trace = null;
+        for (Header header : record.headers()) {
+            if (header.value() != null && TRACE_HEADERS.contains(header.key())) {
+                if (trace == null) {
+                    trace = new HashMap<>(4);
+                }
+                trace.put(header.key(), new String(header.value(), StandardCharsets.UTF_8));
+            }
+        }
+        return trace;
+    }
+
+    public IncomingEventMessage decode(byte[] value) throws IOException {
+        IncomingEventMessage event = new IncomingEventMessage();
+        try (JsonParser parser = jsonFactory.createParser(value)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Event is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_NULL) {
+                    continue;
+                }
+                switch (field) {
+                    case "eventId" -> event.setEventId(UUID.fromString(parser.getText()));
+                    case "eventType" -> event.setEventType(EventType.valueOf(parser.getText()));
+                    case "source" -> event.setSource(EventSource.valueOf(parser.getText()));
+                    case "receivedAt" -> event.setReceivedAt(token == JsonToken.VALUE_STRING
+                            ? parseReceivedAt(parser.getText()) : skip(parser));
+                    case "payload" -> readPayload(parser, value, event);
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return event;
+    }
+
+    private void readPayload(JsonParser parser, byte[] value, IncomingEventMessage event) throws IOException {
+        // The orchestrator binds the payload to a map, so anything else would fail there on every retry
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Event payload is not a JSON object");
+        }
+        int start = (int) parser.getTokenLocation().getByteOffset();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("userId".equals(field) && token.isScalarValue() && token != JsonToken.VALUE_NULL) {
+                event.setUserId(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        int end = (int) parser.getCurrentLocation().getByteOffset();
+        event.setPayload(new String(value, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * An ISO timestamp with an offset or Z, converted to UTC, or a local one, taken as UTC already.
+     */
+    static LocalDateTime parseReceivedAt(String text) {
+        try {
+            return OffsetDateTime.parse(text).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(text);
+        }
+    }
+
+    private static LocalDateTime skip(JsonParser parser) throws IOException {
+        parser.skipChildren();
+        return null;
+    }
+}
@@ -3,7 +3,6 @@ package com.example.eventprocessorservice;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.util.Map;
 import java.util.UUID;
 
 @Data
@@ -12,6 +11,14 @@ public class IncomingEventMessage {
     private UUID eventId;
     private EventType eventType;
     private EventSource source;
-    private Map<String, Object> payload;
+    /**
+     * The payload object exactly as it appeared in the record, as JSON text. It is passed through
+     * to the orchestrator without being parsed into a map here.
+     */
+    private String payload;
     private LocalDateTime receivedAt;
+    /**
+     * payload.userId, picked out while decoding so events can be routed without parsing the payload.
+     */
+    private String userId;
 }
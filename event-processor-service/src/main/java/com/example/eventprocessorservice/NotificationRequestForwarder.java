@@ -0,0 +1,110 @@
+package com.example.eventprocessorservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Forwards the notification requests the gateway took in to the orchestrator's scheduler, one call
+ * per polled batch. Values are already in the orchestrator's format and are passed through without
+ * being parsed. The gateway's notification id travels in a header and is used to drop redeliveries,
+ * and offsets are committed only once the orchestrator has accepted the batch. A batch it refuses as
+ * invalid is logged and skipped rather than retried, since it would only be refused again.
+ */
+@Service
+@Slf4j
+public class NotificationRequestForwarder {
+
+    static final String NOTIFICATION_ID_HEADER = "notification_id";
+
+    private final EventDeduplicator deduplicator;
+    private final OrchestratorClient orchestratorClient;
+    private final Counter forwarded;
+    private final Counter rejected;
+
+    public NotificationRequestForwarder(EventDeduplicator deduplicator, OrchestratorClient orchestratorClient,
+                                        MeterRegistry meterRegistry) {
+        this.deduplicator = deduplicator;
+        this.orchestratorClient = orchestratorClient;
+        this.forwarded = Counter.builder("event-processor.requests.forwarded")
+                .description("Notification requests handed to the orchestrator's scheduler")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("event-processor.requests.rejected")
+                .description("Notification requests the orchestrator refused as invalid, which are not retried")
+                .register(meterRegistry);
+    }
+
+    @KafkaListener(topics = "${event-processor.requests.topic}", groupId = "notification-event-processor")
+    public void forward(List<ConsumerRecord<String, byte[]>> records, Acknowledgment acknowledgment) {
+        List<ConsumerRecord<String, byte[]>> readable = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (record.value() != null && record.value().length > 0) {
+                readable.add(record);
+            } else {
+                log.error("Skipping empty notification request at {}-{}@{}", record.topic(), record.partition(),
+                        record.offset());
+            }
+        }
+        List<ConsumerRecord<String, byte[]>> unseen = deduplicator.filter(readable,
+                NotificationRequestForwarder::notificationId);
+        if (!unseen.isEmpty()) {
+            try {
+                // Other failures are thrown back to the container, which redelivers the batch after a backoff
+                orchestratorClient.send(toJsonArray(unseen));
+                forwarded.increment(unseen.size());
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS) {
+                    throw e;
+                }
+                // Sending it again would be refused again, and would hold up the partition behind it
+                log.error("Orchestrator refused {} notification requests from {}-{}@{}: {}", unseen.size(),
+                        unseen.get(0).topic(), unseen.get(0).partition(), unseen.get(0).offset(), e.getStatusCode());
+                rejected.increment(unseen.size());
+            }
+            deduplicator.markHandedOff(unseen, NotificationRequestForwarder::notificationId);
+        }
+        acknowledgment.acknowledge();
+    }
+
+    private static byte[] toJsonArray(List<ConsumerRecord<String, byte[]>> records) {
+        int length = records.size() + 1;
+        for (ConsumerRecord<String, byte[]> record : records) {
+            length += record.value().length;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream(length);
+        body.write('[');
+        for (int i = 0; i < records.size(); i++) {
+            if (i > 0) {
+                body.write(',');
+            }
+            body.writeBytes(records.get(i).value());
+        }
+        body.write(']');
+        return body.toByteArray();
+    }
+
+    private static UUID notificationId(ConsumerRecord<String, byte[]> record) {
+        Header header = record.headers().lastHeader(NOTIFICATION_ID_HEADER);
+        if (header == null || header.value() == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(new String(header.value(), StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
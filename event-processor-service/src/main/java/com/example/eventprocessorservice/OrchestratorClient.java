@@ -0,0 +1,32 @@
+package com.example.eventprocessorservice;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+@Component
+@RequiredArgsConstructor
+public class OrchestratorClient {
+
+    private final RestTemplate orchestratorRestTemplate;
+
+    public TriggerBatchResult trigger(List<EventData> events) {
+        TriggerBatchResult result = orchestratorRestTemplate.postForObject("/notifications/trigger/batch", events,
+                TriggerBatchResult.class);
+        return result != null ? result : new TriggerBatchResult();
+    }
+
+    /**
+     * Posts notification requests, given as a JSON array, to the orchestrator's scheduler.
+     */
+    public void send(byte[] notifications) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        orchestratorRestTemplate.postForLocation("/notifications/send/batch", new HttpEntity<>(notifications, headers));
+    }
+}
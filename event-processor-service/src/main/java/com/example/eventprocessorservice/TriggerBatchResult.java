@@ -0,0 +1,19 @@
+package com.example.eventprocessorservice;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class TriggerBatchResult {
+    private int processed;
+    // Positions in the batch that failed but may pass if sent again
+    private List<Integer> retry = new ArrayList<>();
+    // Positions in the batch that failed for good
+    private List<Integer> failed = new ArrayList<>();
+    // Of the retry positions, those dispatched to some channels already, with the channels still to send
+    private Map<Integer, List<String>> unsentChannels = new HashMap<>();
+}
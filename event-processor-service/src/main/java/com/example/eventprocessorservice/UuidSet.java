@@ -0,0 +1,108 @@
+package com.example.eventprocessorservice;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash set of UUIDs held as raw long pairs, so adding and looking up an id allocates
+ * nothing. The table is sized once for a fixed number of entries and never grows; callers check
+ * {@link #isFull()} before adding. Not thread-safe.
+ */
+final class UuidSet {
+
+    private static final double MAX_LOAD = 0.75;
+
+    private final long[] table;
+    private final int mask;
+    private final int capacity;
+    private int size;
+    // The all-zero UUID doubles as the empty-slot marker, so it is tracked separately
+    private boolean containsZero;
+
+    UuidSet(int capacity) {
+        int slots = Integer.highestOneBit((int) Math.ceil(Math.max(capacity, 1) / MAX_LOAD) - 1) << 1;
+        this.table = new long[Math.max(slots, 2) * 2];
+        this.mask = Math.max(slots, 2) - 1;
+        this.capacity = capacity;
+    }
+
+    boolean contains(long msb, long lsb) {
+        if ((msb | lsb) == 0) {
+            return containsZero;
+        }
+        for (int i = slot(msb, lsb); ; i = (i + 1) & mask) {
+            long m = table[i << 1];
+            long l = table[(i << 1) + 1];
+            if (m == msb && l == lsb) {
+                return true;
+            }
+            if ((m | l) == 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Adds the id, returning false if it was already present.
+     */
+    boolean add(long msb, long lsb) {
+        if ((msb | lsb) == 0) {
+            if (containsZero) {
+                return false;
+            }
+            checkNotFull();
+            containsZero = true;
+            size++;
+            return true;
+        }
+        for (int i = slot(msb, lsb); ; i = (i + 1) & mask) {
+            long m = table[i << 1];
+            long l = table[(i << 1) + 1];
+            if (m == msb && l == lsb) {
+                return false;
+            }
+            if ((m | l) == 0) {
+                // Checked only now, so an id already present is still reported as such when full
+                checkNotFull();
+                table[i << 1] = msb;
+                table[(i << 1) + 1] = lsb;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    private void checkNotFull() {
+        if (size >= capacity) {
+            throw new IllegalStateException("UUID set is full at " + capacity + " entries");
+        }
+    }
+
+    boolean isFull() {
+        return size >= capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long sizeInBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(table, 0L);
+            size = 0;
+            containsZero = false;
+        }
+    }
+
+    private int slot(long msb, long lsb) {
+        // Random UUIDs are already well mixed, but name-based and time-based ones are not
+        long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h & mask;
+    }
+}
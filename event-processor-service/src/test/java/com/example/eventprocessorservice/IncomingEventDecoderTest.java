@@ -0,0 +1,49 @@
+package com.example.eventprocessorservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class IncomingEventDecoderTest {
+
+    private final IncomingEventDecoder decoder = new IncomingEventDecoder(new ObjectMapper(), new SimpleMeterRegistry());
+
+    @Test
+    void keepsThePayloadAsRawJson() throws IOException {
+        IncomingEventMessage event = decode("{\"eventType\":\"ORDER_PLACED\",\"payload\":{\"userId\":\"u1\",\"items\":[1,2]}}");
+
+        assertThat(event.getUserId()).isEqualTo("u1");
+        assertThat(event.getPayload()).isEqualTo("{\"userId\":\"u1\",\"items\":[1,2]}");
+    }
+
+    @Test
+    void rejectsAPayloadThatIsNotAnObject() {
+        assertThatIOException().isThrownBy(() -> decode("{\"payload\":[1,2]}"));
+        assertThatIOException().isThrownBy(() -> decode("{\"payload\":\"text\"}"));
+    }
+
+    @Test
+    void readsReceivedAtWithAnOffsetAsUtc() throws IOException {
+        assertThat(decode("{\"receivedAt\":\"2024-03-01T10:15:30Z\"}").getReceivedAt())
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 15, 30));
+        assertThat(decode("{\"receivedAt\":\"2024-03-01T12:15:30.5+02:00\"}").getReceivedAt())
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 15, 30, 500_000_000));
+    }
+
+    @Test
+    void readsALocalReceivedAtAsIs() throws IOException {
+        assertThat(decode("{\"receivedAt\":\"2024-03-01T10:15:30\"}").getReceivedAt())
+                .isEqualTo(LocalDateTime.of(2024, 3, 1, 10, 15, 30));
+    }
+
+    private IncomingEventMessage decode(String json) throws IOException {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.eventprocessorservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class UuidSetTest {
+
+    @Test
+    void addsEachIdOnce() {
+        UuidSet set = new UuidSet(4);
+        UUID id = UUID.randomUUID();
+
+        assertThat(set.add(id.getMostSignificantBits(), id.getLeastSignificantBits())).isTrue();
+        assertThat(set.add(id.getMostSignificantBits(), id.getLeastSignificantBits())).isFalse();
+        assertThat(set.contains(id.getMostSignificantBits(), id.getLeastSignificantBits())).isTrue();
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    void tellsIdsApartByEitherHalf() {
+        UuidSet set = new UuidSet(4);
+        set.add(1, 0);
+
+        assertThat(set.contains(0, 1)).isFalse();
+        assertThat(set.contains(1, 1)).isFalse();
+        assertThat(set.add(0, 1)).isTrue();
+        assertThat(set.add(1, 1)).isTrue();
+        assertThat(set.contains(1, 0)).isTrue();
+    }
+
+    @Test
+    void keepsTheZeroIdApartFromEmptySlots() {
+        UuidSet set = new UuidSet(4);
+
+        assertThat(set.contains(0, 0)).isFalse();
+        assertThat(set.add(0, 0)).isTrue();
+        assertThat(set.add(0, 0)).isFalse();
+        assertThat(set.contains(0, 0)).isTrue();
+        assertThat(set.size()).isEqualTo(1);
+
+        set.clear();
+        assertThat(set.contains(0, 0)).isFalse();
+    }
+
+    @Test
+    void holdsSequentialIdsUpToCapacity() {
+        // Time-based and name-based ids differ in few bits, so they cluster without the hash mix
+        int capacity = 1_000;
+        UuidSet set = new UuidSet(capacity);
+        for (int i = 1; i <= capacity; i++) {
+            assertThat(set.add(0x11EE_0000_0000_1000L, i)).isTrue();
+        }
+
+        assertThat(set.isFull()).isTrue();
+        for (int i = 1; i <= capacity; i++) {
+            assertThat(set.contains(0x11EE_0000_0000_1000L, i)).isTrue();
+        }
+        // Lookups for absent ids have to stop at an empty slot even in a full table
+        for (int i = capacity + 1; i <= 2 * capacity; i++) {
+            assertThat(set.contains(0x11EE_0000_0000_1000L, i)).isFalse();
+        }
+    }
+
+    @Test
+    void refusesToAddPastCapacity() {
+        UuidSet set = new UuidSet(3);
+        set.add(1, 1);
+        set.add(2, 2);
+        set.add(3, 3);
+
+        assertThat(set.add(1, 1)).isFalse();
+        assertThatIllegalStateException().isThrownBy(() -> set.add(4, 4));
+        assertThatIllegalStateException().isThrownBy(() -> set.add(0, 0));
+        assertThat(set.contains(4, 4)).isFalse();
+        assertThat(set.contains(0, 0)).isFalse();
+        assertThat(set.size()).isEqualTo(3);
+    }
+
+    @Test
+    void sizesTheTableToAPowerOfTwoBelowMaxLoad() {
+        for (int capacity = 1; capacity <= 5_000; capacity++) {
+            long slots = new UuidSet(capacity).sizeInBytes() / (2 * Long.BYTES);
+
+            assertThat(Long.bitCount(slots)).as("slots for %d", capacity).isEqualTo(1);
+            assertThat(slots * 0.75).as("slots for %d", capacity).isGreaterThanOrEqualTo(capacity);
+            // Never more than twice what the load factor needs
+            assertThat(slots * 0.75).as("slots for %d", capacity).isLessThan(Math.max(capacity, 2) * 2);
+        }
+    }
+
+    @Test
+    void clearEmptiesTheSetForReuse() {
+        UuidSet set = new UuidSet(2);
+        set.add(1, 1);
+        set.add(2, 2);
+
+        set.clear();
+
+        assertThat(set.size()).isZero();
+        assertThat(set.isFull()).isFalse();
+        assertThat(set.contains(1, 1)).isFalse();
+        assertThat(set.add(2, 2)).isTrue();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.notificationapigateway;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests per second the send endpoint's ingest path takes in against an in-process broker:
+ * encoding a request and writing it with the gateway's producer settings until the broker
+ * acknowledges it. Each thread is a client waiting on its response, so the concurrent writes give
+ * linger something to batch. Compression and linger are compared with sending each write at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(64)
+@Fork(1)
+public class NotificationIngestBenchmark {
+
+    private static final String TOPIC = "notification-requests";
+
+    @Param({"none", "lz4"})
+    private String compression;
+
+    @Param({"0", "5"})
+    private int lingerMs;
+
+    private EmbeddedKafkaBroker broker;
+    private DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private NotificationIngest ingest;
+
+    @Setup
+    public void setUp() {
+        broker = new EmbeddedKafkaBroker(1, false, 4, TOPIC);
+        broker.afterPropertiesSet();
+
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        config.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 64L * 1024 * 1024);
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, 100);
+        producerFactory = new DefaultKafkaProducerFactory<>(config);
+
+        IngestProperties properties = new IngestProperties();
+        properties.setTopic(TOPIC);
+        KafkaTemplate<String, byte[]> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        ingest = new NotificationIngest(kafkaTemplate, Jackson2ObjectMapperBuilder.json().build(), properties);
+        ingest.warmUp();
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerFactory.destroy();
+        broker.destroy();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        private SendNotificationRequest request;
+
+        @Setup
+        public void setUp() {
+            request = new SendNotificationRequest();
+            request.setUser_id(UUID.randomUUID());
+            request.setTemplate_name("ORDER_SHIPPED");
+            request.setChannel(List.of("EMAIL", "PUSH"));
+            request.setLanguage("en");
+            request.setSchedule_at(LocalDateTime.now().plusHours(1));
+            request.setData(Map.of("user_name", "Jane", "order_id", "12345", "delivery_date", "Tuesday"));
+        }
+    }
+
+    @Benchmark
+    public SendNotificationResponse submit(Client client) {
+        return ingest.submit(client.request).join();
+    }
+}
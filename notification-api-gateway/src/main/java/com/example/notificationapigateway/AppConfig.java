@@ -0,0 +1,33 @@
+package com.example.notificationapigateway;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+
+@Configuration
+@EnableConfigurationProperties(IngestProperties.class)
+public class AppConfig {
+
+    @Bean
+    public RestTemplate orchestratorRestTemplate(RestTemplateBuilder builder,
+                                                 @Value("${orchestrator-service.url}") String orchestratorUrl) {
+        return builder.rootUri(orchestratorUrl)
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    @Bean
+    public RestTemplate trackingRestTemplate(RestTemplateBuilder builder,
+                                             @Value("${tracking-service.url}") String trackingUrl) {
+        return builder.rootUri(trackingUrl)
+                .setConnectTimeout(Duration.ofSeconds(2))
+                .setReadTimeout(Duration.ofSeconds(2))
+                .build();
+    }
+}
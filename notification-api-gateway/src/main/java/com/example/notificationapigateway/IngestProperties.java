@@ -0,0 +1,15 @@
+package com.example.notificationapigateway;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "gateway.ingest")
+public class IngestProperties {
+    // Topic send requests are written to, keyed by user id
+    private String topic = "notification-requests";
+    // Suggested to clients turned away while Kafka cannot take more
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
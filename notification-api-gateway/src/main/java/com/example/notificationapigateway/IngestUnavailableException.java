@@ -0,0 +1,8 @@
+package com.example.notificationapigateway;
+
+public class IngestUnavailableException extends RuntimeException {
+
+    public IngestUnavailableException(Throwable cause) {
+        super("Notification requests cannot be accepted right now: " + cause.getMessage(), cause);
+    }
+}
@@ -6,6 +6,9 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,32 +16,42 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1")
 @Tag(name = "Notifications", description = "Notification management APIs")
+@RequiredArgsConstructor
 public class NotificationController {
 
+    private final OrchestratorClient orchestratorClient;
+    private final TrackingClient trackingClient;
+    private final NotificationIngest notificationIngest;
+    private final IngestProperties ingestProperties;
+
     @Operation(summary = "Send a notification to a user", responses = {
             @ApiResponse(responseCode = "200", description = "Notification accepted",
                     content = @Content(schema = @Schema(implementation = SendNotificationResponse.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
-            @ApiResponse(responseCode = "500", description = "Internal error")
+            @ApiResponse(responseCode = "503", description = "Cannot accept notifications right now, retry after the Retry-After delay")
     })
     @PostMapping("/notifications/send")
-    public ResponseEntity<SendNotificationResponse> sendNotification(@RequestBody SendNotificationRequest request) {
-        // Placeholder for actual logic
-        return ResponseEntity.ok(new SendNotificationResponse(UUID.randomUUID(), "SCHEDULED"));
+    public CompletableFuture<ResponseEntity<SendNotificationResponse>> sendNotification(@RequestBody SendNotificationRequest request) {
+        // Completes on the producer's thread once Kafka acknowledges; the request thread is released meanwhile
+        return notificationIngest.submit(request).thenApply(ResponseEntity::ok);
     }
 
     @Operation(summary = "Get notification status", responses = {
             @ApiResponse(responseCode = "200", description = "Notification status",
-                    content = @Content(schema = @Schema(implementation = NotificationStatus.class)))
+                    content = @Content(schema = @Schema(implementation = NotificationStatus.class))),
+            @ApiResponse(responseCode = "404", description = "No events tracked for the notification")
     })
     @GetMapping("/notifications/{notification_id}")
     public ResponseEntity<NotificationStatus> getNotificationStatus(@PathVariable("notification_id") UUID notificationId) {
-        // Placeholder for actual logic
-        return ResponseEntity.ok(new NotificationStatus(notificationId, "SENT", "EMAIL", LocalDateTime.now(), null, null));
+        return trackingClient.getStatus(notificationId)
+                .map(status -> ResponseEntity.ok(new NotificationStatus(notificationId, status.getStatus(),
+                        status.getChannel(), status.getSentAt(), status.getReadAt(), status.getError())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     @Operation(summary = "Bulk/Broadcast Notification", responses = {
@@ -47,8 +60,30 @@ public class NotificationController {
     })
     @PostMapping("/notifications/broadcast")
     public ResponseEntity<BroadcastNotificationResponse> broadcastNotification(@RequestBody BroadcastNotificationRequest request) {
-        // Placeholder for actual logic
-        return ResponseEntity.ok(new BroadcastNotificationResponse(UUID.randomUUID(), 100000));
+        OrchestratorBroadcast broadcast = orchestratorClient.startBroadcast(request);
+        return ResponseEntity.ok(new BroadcastNotificationResponse(broadcast.getBroadcastId(),
+                (int) Math.min(broadcast.getTotalScheduled(), Integer.MAX_VALUE)));
+    }
+
+    @Operation(summary = "Get broadcast progress", responses = {
+            @ApiResponse(responseCode = "200", description = "Broadcast progress",
+                    content = @Content(schema = @Schema(implementation = BroadcastStatusResponse.class))),
+            @ApiResponse(responseCode = "404", description = "Unknown broadcast")
+    })
+    @GetMapping("/notifications/broadcast/{broadcast_id}")
+    public ResponseEntity<BroadcastStatusResponse> getBroadcastStatus(@PathVariable("broadcast_id") UUID broadcastId) {
+        return orchestratorClient.getBroadcast(broadcastId)
+                .map(broadcast -> ResponseEntity.ok(new BroadcastStatusResponse(broadcast.getBroadcastId(),
+                        broadcast.getStatus(), broadcast.getTotalScheduled(), broadcast.getSent(),
+                        broadcast.getFailed(), broadcast.getRatePerSecond(), broadcast.getError())))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @ExceptionHandler(IngestUnavailableException.class)
+    public ResponseEntity<String> handleIngestUnavailable(IngestUnavailableException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ingestProperties.getRetryAfter().toSeconds())))
+                .body(e.getMessage());
     }
 }
 
@@ -58,6 +93,7 @@ class SendNotificationRequest {
     private String template_name;
     private List<String> channel;
     private String language;
+    // UTC; sent straight away when missing or past
     private LocalDateTime schedule_at;
     private Map<String, String> data;
 }
@@ -111,3 +147,24 @@ class BroadcastNotificationResponse {
         this.total_scheduled = total_scheduled;
     }
 }
+
+@Data
+class BroadcastStatusResponse {
+    private UUID broadcast_id;
+    private String status;
+    private long total_scheduled;
+    private long sent;
+    private long failed;
+    private double rate;
+    private String error;
+
+    public BroadcastStatusResponse(UUID broadcast_id, String status, long total_scheduled, long sent, long failed, double rate, String error) {
+        this.broadcast_id = broadcast_id;
+        this.status = status;
+        this.total_scheduled = total_scheduled;
+        this.sent = sent;
+        this.failed = failed;
+        this.rate = rate;
+        this.error = error;
+    }
+}
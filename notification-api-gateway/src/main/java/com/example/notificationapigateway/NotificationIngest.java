@@ -0,0 +1,111 @@
+package com.example.notificationapigateway;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.KafkaException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Takes in send requests by assigning their notification id and writing them to Kafka, keyed by user
+ * so one user's requests stay in order, for the event processor to hand to the orchestrator. A request
+ * is answered as soon as the broker acknowledges the write, and nothing waits on the pipeline behind it.
+ * <p>
+ * The producer is idempotent and batches and compresses writes, so a spike costs larger batches rather
+ * than more requests to the broker. It only blocks the caller, for at most max.block.ms, when its
+ * buffer is full or the topic's metadata is missing; then, as on a failed write, the request is turned
+ * away with {@link IngestUnavailableException}.
+ */
+@Component
+@Slf4j
+public class NotificationIngest {
+
+    static final String NOTIFICATION_ID_HEADER = "notification_id";
+    static final String ACCEPTED = "ACCEPTED";
+    // The orchestrator's ChannelType; one unknown value would make it refuse the whole forwarded batch
+    static final Set<String> CHANNELS = Set.of("EMAIL", "SMS", "PUSH");
+
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final String topic;
+
+    public NotificationIngest(KafkaTemplate<String, byte[]> kafkaTemplate, ObjectMapper objectMapper,
+                              IngestProperties properties) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.topic = properties.getTopic();
+    }
+
+    public CompletableFuture<SendNotificationResponse> submit(SendNotificationRequest request) {
+        if (request.getUser_id() == null || request.getTemplate_name() == null
+                || request.getChannel() == null || request.getChannel().isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "user_id, template_name and channel are required");
+        }
+        for (String channel : request.getChannel()) {
+            if (!CHANNELS.contains(channel)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Unknown channel " + channel + ", expected one of " + CHANNELS);
+            }
+        }
+        UUID notificationId = UUID.randomUUID();
+        String userId = request.getUser_id().toString();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, userId, encode(notificationId, request));
+        record.headers().add(NOTIFICATION_ID_HEADER, notificationId.toString().getBytes(StandardCharsets.UTF_8));
+        CompletableFuture<?> written;
+        try {
+            written = kafkaTemplate.send(record);
+        } catch (KafkaException | org.springframework.kafka.KafkaException e) {
+            // The template wraps the producer's synchronous failures, e.g. a full buffer, in its own type
+            throw new IngestUnavailableException(e);
+        }
+        return written.handle((result, error) -> {
+            if (error != null) {
+                throw new IngestUnavailableException(error);
+            }
+            return new SendNotificationResponse(notificationId, ACCEPTED);
+        });
+    }
+
+    /**
+     * Encodes the request in the form the orchestrator's scheduler takes, so it is passed on unparsed.
+     */
+    private byte[] encode(UUID notificationId, SendNotificationRequest request) {
+        OrchestratorSendRequest body = new OrchestratorSendRequest();
+        body.setNotificationId(notificationId);
+        body.setUserId(request.getUser_id().toString());
+        body.setTemplateName(request.getTemplate_name());
+        body.setChannels(request.getChannel());
+        body.setLanguage(request.getLanguage());
+        body.setData(request.getData());
+        body.setScheduleAt(request.getSchedule_at() != null ? request.getSchedule_at().toInstant(ZoneOffset.UTC) : null);
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot encode notification request", e);
+        }
+    }
+
+    /**
+     * Fetches the topic's metadata before traffic arrives, so the first requests do not wait for it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            log.info("Writing notification requests to {} ({} partitions)", topic, kafkaTemplate.partitionsFor(topic).size());
+        } catch (KafkaException e) {
+            log.warn("Could not fetch metadata for {} yet: {}", topic, e.getMessage());
+        }
+    }
+}
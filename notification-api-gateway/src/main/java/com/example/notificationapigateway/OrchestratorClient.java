@@ -0,0 +1,71 @@
+package com.example.notificationapigateway;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class OrchestratorClient {
+
+    private final RestTemplate orchestratorRestTemplate;
+
+    public OrchestratorBroadcast startBroadcast(BroadcastNotificationRequest request) {
+        OrchestratorBroadcastRequest body = new OrchestratorBroadcastRequest();
+        body.setTemplateName(request.getTemplate_name());
+        body.setChannels(request.getChannel());
+        body.setLanguage(request.getLanguage());
+        body.setFilter(request.getFilter());
+        body.setData(request.getData());
+        return orchestratorRestTemplate.postForObject("/broadcasts", body, OrchestratorBroadcast.class);
+    }
+
+    public Optional<OrchestratorBroadcast> getBroadcast(UUID broadcastId) {
+        try {
+            return Optional.ofNullable(orchestratorRestTemplate.getForObject(
+                    "/broadcasts/{broadcastId}", OrchestratorBroadcast.class, broadcastId));
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        }
+    }
+}
+
+@Data
+class OrchestratorBroadcastRequest {
+    private String templateName;
+    private List<String> channels;
+    private String language;
+    private Map<String, String> filter;
+    private Map<String, String> data;
+}
+
+// Written to Kafka by NotificationIngest and forwarded as-is to the orchestrator's scheduler
+@Data
+class OrchestratorSendRequest {
+    private UUID notificationId;
+    private String userId;
+    private String templateName;
+    private List<String> channels;
+    private String language;
+    private Map<String, String> data;
+    private Instant scheduleAt;
+}
+
+@Data
+class OrchestratorBroadcast {
+    private UUID broadcastId;
+    private String status;
+    private long totalScheduled;
+    private long sent;
+    private long failed;
+    private double ratePerSecond;
+    private String error;
+}
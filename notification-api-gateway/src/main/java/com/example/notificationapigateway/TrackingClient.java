@@ -0,0 +1,37 @@
+package com.example.notificationapigateway;
+
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Component
+@RequiredArgsConstructor
+public class TrackingClient {
+
+    private final RestTemplate trackingRestTemplate;
+
+    public Optional<TrackedStatus> getStatus(UUID notificationId) {
+        try {
+            return Optional.ofNullable(trackingRestTemplate.getForObject(
+                    "/track/{notificationId}", TrackedStatus.class, notificationId));
+        } catch (HttpClientErrorException.NotFound e) {
+            return Optional.empty();
+        }
+    }
+}
+
+@Data
+class TrackedStatus {
+    private UUID notificationId;
+    private String status;
+    private String channel;
+    private LocalDateTime sentAt;
+    private LocalDateTime readAt;
+    private String error;
+}
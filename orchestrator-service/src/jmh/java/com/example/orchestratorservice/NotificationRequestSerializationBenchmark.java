@@ -0,0 +1,81 @@
+package com.example.orchestratorservice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of encoding what the orchestrator posts to dispatcher-service: a single request, and a
+ * {@link NotificationBatch} envelope of {@code ENVELOPE_SIZE} requests, as JSON and as CBOR.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NotificationRequestSerializationBenchmark {
+
+    private static final int ENVELOPE_SIZE = 250;
+
+    @Param({"256", "4096"})
+    private int bodyLength;
+
+    @Param({"1", "8"})
+    private int metadataEntries;
+
+    private ObjectMapper objectMapper;
+    private ObjectMapper cborMapper;
+    private NotificationRequest request;
+    private NotificationBatch envelope;
+
+    @Setup
+    public void setUp() {
+        // Configured the same way as the mapper behind WebClient's JSON encoder
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+        StringBuilder body = new StringBuilder(bodyLength);
+        while (body.length() < bodyLength) {
+            body.append("Hello Jane, your order 12345 has shipped and will arrive on Tuesday. ");
+        }
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("eventType", "ORDER_SHIPPED");
+        for (int i = 1; i < metadataEntries; i++) {
+            metadata.put("key" + i, "value-" + i);
+        }
+        request = new NotificationRequest("user00042", ChannelType.EMAIL,
+                new MessageContent("Your order has shipped", body.substring(0, bodyLength)), metadata);
+        List<NotificationRequest> requests = new ArrayList<>(ENVELOPE_SIZE);
+        for (int i = 0; i < ENVELOPE_SIZE; i++) {
+            requests.add(new NotificationRequest("user%05d".formatted(i), ChannelType.EMAIL, request.getMessage(), metadata));
+        }
+        envelope = NotificationBatch.of(requests);
+    }
+
+    @Benchmark
+    public byte[] writeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] writeCbor() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public byte[] writeJsonEnvelope() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public byte[] writeCborEnvelope() throws JsonProcessingException {
+        return cborMapper.writeValueAsBytes(envelope);
+    }
+}
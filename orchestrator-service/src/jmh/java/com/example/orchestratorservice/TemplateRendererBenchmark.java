@@ -0,0 +1,73 @@
+package com.example.orchestratorservice;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRendererBenchmark {
+
+    @Param({"4", "16", "64"})
+    private int keyCount;
+
+    @Param({"256", "4096"})
+    private int bodyLength;
+
+    // Number of enabled channels per event; the old path rendered once per channel
+    @Param({"1", "3"})
+    private int channelCount;
+
+    private TemplateResponse template;
+    private Map<String, Object> data;
+    private TemplateRenderer renderer;
+
+    @Setup
+    public void setUp() {
+        data = new HashMap<>();
+        StringBuilder body = new StringBuilder(bodyLength);
+        int key = 0;
+        while (body.length() < bodyLength) {
+            String name = "key" + (key % keyCount);
+            body.append("Lorem ipsum dolor sit amet, consectetur {{").append(name).append("}} adipiscing elit. ");
+            data.put(name, "value-" + key % keyCount);
+            key++;
+        }
+        template = new TemplateResponse();
+        template.setId(UUID.randomUUID());
+        template.setUpdatedAt(LocalDateTime.now());
+        template.setSubject("Your order {{key0}} has been confirmed!");
+        template.setBody(body.toString());
+        renderer = new TemplateRenderer();
+    }
+
+    @Benchmark
+    public void legacyReplaceLoop(Blackhole blackhole) {
+        for (int i = 0; i < channelCount; i++) {
+            blackhole.consume(legacyRender(template.getSubject(), data));
+            blackhole.consume(legacyRender(template.getBody(), data));
+        }
+    }
+
+    @Benchmark
+    public MessageContent compiledRenderer() {
+        return renderer.render(template, data);
+    }
+
+    // The OrchestratorService.renderTemplate implementation this renderer replaced
+    private static String legacyRender(String template, Map<String, Object> data) {
+        for (Map.Entry<String, Object> entry : data.entrySet()) {
+            template = template.replace("{{" + entry.getKey() + "}}", String.valueOf(entry.getValue()));
+        }
+        return template;
+    }
+}
@@ -1,14 +1,96 @@
 package com.example.orchestratorservice;
 
+import com.example.shared.TailSamplingProperties;
+import com.example.shared.TailSamplingSpanHandler;
+import com.example.shared.TraceFileWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
+@EnableScheduling
+@Import({TailSamplingSpanHandler.class, TraceFileWriter.class})
+@EnableConfigurationProperties({
+        TemplateCacheProperties.class,
+        PreferenceBatchProperties.class,
+        BroadcastProperties.class,
+        DownstreamClientProperties.class,
+        DispatchProperties.class,
+        ScheduleProperties.class,
+        LeaseProperties.class,
+        TailSamplingProperties.class
+})
 public class AppConfig {
 
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient templateWebClient(WebClient.Builder builder, DownstreamClientProperties properties) {
+        return downstreamClient(builder, "template-service", properties.getTemplate());
+    }
+
+    @Bean
+    public WebClient preferenceWebClient(WebClient.Builder builder, DownstreamClientProperties properties) {
+        return downstreamClient(builder, "user-preference-service", properties.getPreference());
+    }
+
+    @Bean
+    public WebClient dispatcherWebClient(WebClient.Builder builder, DownstreamClientProperties properties) {
+        // CBOR responses alongside JSON; request bodies are encoded by DispatcherClient itself
+        builder.codecs(codecs -> codecs.customCodecs().register(new Jackson2CborDecoder()));
+        return downstreamClient(builder, "dispatcher-service", properties.getDispatcher());
+    }
+
+    @Bean
+    public DownstreamGuard templateGuard(DownstreamClientProperties properties, MeterRegistry meterRegistry) {
+        return new DownstreamGuard("template-service", properties.getTemplate(), meterRegistry);
+    }
+
+    @Bean
+    public DownstreamGuard preferenceGuard(DownstreamClientProperties properties, MeterRegistry meterRegistry) {
+        return new DownstreamGuard("user-preference-service", properties.getPreference(), meterRegistry);
+    }
+
+    @Bean
+    public DownstreamGuard dispatcherGuard(DownstreamClientProperties properties, MeterRegistry meterRegistry) {
+        return new DownstreamGuard("dispatcher-service", properties.getDispatcher(), meterRegistry);
+    }
+
+    /**
+     * One shared client per downstream service, each with its own connection pool so a slow service
+     * cannot take connections from the others. Pool gauges and acquire times are published as
+     * reactor.netty.connection.provider.* tagged with the pool name.
+     */
+    private static WebClient downstreamClient(WebClient.Builder builder, String name,
+                                              DownstreamClientProperties.ServiceClient settings) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(name)
+                .maxConnections(settings.getMaxConnections())
+                .pendingAcquireMaxCount(settings.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(settings.getPendingAcquireTimeout())
+                .maxIdleTime(settings.getMaxIdleTime())
+                .maxLifeTime(settings.getMaxLifeTime())
+                .evictInBackground(settings.getMaxIdleTime())
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis())
+                .responseTimeout(settings.getResponseTimeout())
+                .keepAlive(true);
+        if (settings.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.HTTP11,
+                    settings.getBaseUrl().startsWith("https") ? HttpProtocol.H2 : HttpProtocol.H2C);
+        }
+        return builder.clone()
+                .baseUrl(settings.getBaseUrl())
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
     }
 }
@@ -0,0 +1,9 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+@Data
+public class AudienceMember {
+    private String userId;
+    private ChannelType channel;
+}
@@ -0,0 +1,13 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class AudiencePage {
+    private List<AudienceMember> members;
+    private String nextUserId;
+    private String nextChannel;
+    private boolean last;
+}
@@ -0,0 +1,22 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+public class BroadcastCheckpoint {
+    private UUID broadcastId;
+    private BroadcastRequest request;
+    private BroadcastStatus status;
+    private long totalScheduled;
+    private long sent;
+    private long failed;
+    // Keyset position of the last fully dispatched chunk
+    private String afterUserId = "";
+    private String afterChannel = "";
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,117 @@
+package com.example.orchestratorservice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps broadcast checkpoints in the orchestrator database, so any replica can report a broadcast's
+ * progress and a broadcast left behind by a replica that went away is resumed by another. A running
+ * broadcast is held by the instance sending it, and only the holder can move its checkpoint on.
+ */
+@Component
+@Slf4j
+public class BroadcastCheckpointStore {
+
+    private static final String TABLE = "broadcast_checkpoints";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrchestratorSchema schema;
+    private final InstanceLease lease;
+    private final ObjectMapper objectMapper;
+    private final RowMapper<BroadcastCheckpoint> checkpointMapper;
+
+    public BroadcastCheckpointStore(JdbcTemplate jdbcTemplate, OrchestratorSchema schema, InstanceLease lease,
+                                    ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schema = schema;
+        this.lease = lease;
+        this.objectMapper = objectMapper;
+        this.checkpointMapper = (rs, rowNum) -> read(rs.getString("checkpoint"));
+    }
+
+    @PostConstruct
+    void prepare() {
+        schema.ensureTable(TABLE, "CREATE TABLE " + TABLE + " (" +
+                "broadcast_id uuid PRIMARY KEY, " +
+                "status varchar(16) NOT NULL, " +
+                // Instance sending the broadcast; null once it has finished
+                "owner text, " +
+                "checkpoint jsonb NOT NULL, " +
+                "updated_at timestamptz NOT NULL)");
+    }
+
+    public void create(BroadcastCheckpoint checkpoint, String owner) {
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (broadcast_id, status, owner, checkpoint, updated_at) " +
+                        "VALUES (?, ?, ?, ?::jsonb, now())",
+                checkpoint.getBroadcastId(), checkpoint.getStatus().name(), owner, write(checkpoint));
+    }
+
+    /**
+     * Saves a checkpoint of a broadcast {@code owner} holds, giving it up when the broadcast has
+     * finished. Fails with {@link LeaseLostException} when another instance has taken it over.
+     */
+    public void save(BroadcastCheckpoint checkpoint, String owner) {
+        String status = checkpoint.getStatus().name();
+        int saved = jdbcTemplate.update("UPDATE " + TABLE + " SET status = ?, checkpoint = ?::jsonb, updated_at = now(), " +
+                        "owner = CASE WHEN ? = 'RUNNING' THEN owner END " +
+                        "WHERE broadcast_id = ? AND owner = ?",
+                status, write(checkpoint), status, checkpoint.getBroadcastId(), owner);
+        if (saved == 0) {
+            throw new LeaseLostException("Broadcast " + checkpoint.getBroadcastId() + " is no longer held by " + owner);
+        }
+    }
+
+    public Optional<BroadcastCheckpoint> load(UUID broadcastId) {
+        return jdbcTemplate.query("SELECT checkpoint FROM " + TABLE + " WHERE broadcast_id = ?",
+                checkpointMapper, broadcastId).stream().filter(Objects::nonNull).findFirst();
+    }
+
+    /**
+     * Takes a failed broadcast for {@code owner} to resume. Empty when it is not there or not failed,
+     * which includes another instance having just taken it.
+     */
+    public Optional<BroadcastCheckpoint> claimFailed(UUID broadcastId, String owner) {
+        return jdbcTemplate.query("UPDATE " + TABLE + " SET status = 'RUNNING', owner = ?, updated_at = now() " +
+                        "WHERE broadcast_id = ? AND status = 'FAILED' RETURNING checkpoint",
+                checkpointMapper, owner, broadcastId).stream().filter(Objects::nonNull).findFirst();
+    }
+
+    /**
+     * Takes over, for {@code owner}, every running broadcast whose holder no longer has a live lease.
+     */
+    public List<BroadcastCheckpoint> claimAbandoned(String owner) {
+        // SKIP LOCKED leaves a broadcast another instance is claiming at the same moment to that one
+        return jdbcTemplate.query("UPDATE " + TABLE + " SET owner = ?, updated_at = now() " +
+                        "WHERE broadcast_id IN (SELECT b.broadcast_id FROM " + TABLE + " b WHERE b.status = 'RUNNING' " +
+                        "AND (b.owner IS NULL OR NOT " + lease.isLive("b.owner") + ") FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING checkpoint",
+                checkpointMapper, owner).stream().filter(Objects::nonNull).toList();
+    }
+
+    private String write(BroadcastCheckpoint checkpoint) {
+        try {
+            return objectMapper.writeValueAsString(checkpoint);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not checkpoint broadcast " + checkpoint.getBroadcastId(), e);
+        }
+    }
+
+    private BroadcastCheckpoint read(String json) {
+        try {
+            return objectMapper.readValue(json, BroadcastCheckpoint.class);
+        } catch (JsonProcessingException e) {
+            log.error("Skipping unreadable broadcast checkpoint {}", json, e);
+            return null;
+        }
+    }
+}
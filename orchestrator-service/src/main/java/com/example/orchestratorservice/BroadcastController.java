@@ -0,0 +1,40 @@
+package com.example.orchestratorservice;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/broadcasts")
+@RequiredArgsConstructor
+public class BroadcastController {
+
+    private final BroadcastEngine broadcastEngine;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<BroadcastProgress> startBroadcast(@RequestBody BroadcastRequest request) {
+        return broadcastEngine.start(request);
+    }
+
+    @GetMapping("/{broadcastId}")
+    public Mono<ResponseEntity<BroadcastProgress>> getBroadcast(@PathVariable UUID broadcastId) {
+        return Mono.fromCallable(() -> broadcastEngine.getProgress(broadcastId)
+                        .map(ResponseEntity::ok)
+                        .orElseGet(() -> ResponseEntity.notFound().build()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @PostMapping("/{broadcastId}/resume")
+    public Mono<ResponseEntity<BroadcastProgress>> resumeBroadcast(@PathVariable UUID broadcastId) {
+        return Mono.fromCallable(() -> broadcastEngine.resume(broadcastId)
+                        .map(ResponseEntity::ok)
+                        .orElseGet(() -> ResponseEntity.notFound().build()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+}
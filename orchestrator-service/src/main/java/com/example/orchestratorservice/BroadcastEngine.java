@@ -0,0 +1,327 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Streams a broadcast audience from user-preference-service one keyset page at a time and
+ * dispatches each page as a chunk in /dispatch/batch envelopes. The next page is only fetched once
+ * the pipeline has room for it, and the cursor is checkpointed as recipients are queued. Recipients
+ * the dispatcher turns away are sent again with backoff, and the pages after them slow down to match.
+ * <p>
+ * Checkpoints live in the orchestrator database and a running broadcast is held by the instance
+ * sending it. Broadcasts whose instance stopped renewing its {@link InstanceLease} are taken over by
+ * whichever instance looks first, and resume from their last checkpoint.
+ */
+@Service
+@Slf4j
+public class BroadcastEngine {
+
+    private static final String DEFAULT_CATEGORY = "MARKETING";
+    private static final String DEFAULT_LANGUAGE = "en";
+    private static final int PAGE_FETCH_RETRIES = 3;
+
+    private final WebClient preferenceWebClient;
+    private final TemplateClient templateClient;
+    private final TemplateRenderer templateRenderer;
+    private final DispatcherClient dispatcherClient;
+    private final BroadcastCheckpointStore checkpointStore;
+    private final InstanceLease lease;
+    private final TaskScheduler taskScheduler;
+    private final BroadcastProperties properties;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+
+    private final Map<UUID, BroadcastJob> jobs = new ConcurrentHashMap<>();
+    private final Map<UUID, Disposable> sending = new ConcurrentHashMap<>();
+    private ScheduledFuture<?> adoption;
+
+    public BroadcastEngine(@Qualifier("preferenceWebClient") WebClient preferenceWebClient, TemplateClient templateClient,
+                           TemplateRenderer templateRenderer, DispatcherClient dispatcherClient,
+                           BroadcastCheckpointStore checkpointStore, InstanceLease lease, TaskScheduler taskScheduler,
+                           BroadcastProperties properties, MeterRegistry meterRegistry) {
+        this.preferenceWebClient = preferenceWebClient;
+        this.templateClient = templateClient;
+        this.templateRenderer = templateRenderer;
+        this.dispatcherClient = dispatcherClient;
+        this.checkpointStore = checkpointStore;
+        this.lease = lease;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+        this.sentCounter = meterRegistry.counter("orchestrator.broadcast.recipients", "outcome", "sent");
+        this.failedCounter = meterRegistry.counter("orchestrator.broadcast.recipients", "outcome", "failed");
+    }
+
+    public Mono<BroadcastProgress> start(BroadcastRequest request) {
+        if (request.getTemplateName() == null || request.getChannels() == null || request.getChannels().isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "templateName and channels are required"));
+        }
+        if (request.getLanguage() == null) {
+            request.setLanguage(DEFAULT_LANGUAGE);
+        }
+        return countAudience(request)
+                .publishOn(Schedulers.boundedElastic())
+                .map(total -> {
+                    BroadcastCheckpoint checkpoint = new BroadcastCheckpoint();
+                    checkpoint.setBroadcastId(UUID.randomUUID());
+                    checkpoint.setRequest(request);
+                    checkpoint.setStatus(BroadcastStatus.RUNNING);
+                    checkpoint.setTotalScheduled(total);
+                    checkpoint.setCreatedAt(LocalDateTime.now());
+                    checkpoint.setUpdatedAt(checkpoint.getCreatedAt());
+                    BroadcastJob job = new BroadcastJob(checkpoint, lease.instanceId());
+                    checkpointStore.create(checkpoint, job.getOwner());
+                    launch(job);
+                    return job.progress();
+                });
+    }
+
+    public Optional<BroadcastProgress> getProgress(UUID broadcastId) {
+        BroadcastJob job = jobs.get(broadcastId);
+        if (job != null) {
+            return Optional.of(job.progress());
+        }
+        // Sent by another instance, or finished before this one started
+        return checkpointStore.load(broadcastId).map(checkpoint -> new BroadcastJob(checkpoint).progress());
+    }
+
+    public Optional<BroadcastProgress> resume(UUID broadcastId) {
+        BroadcastJob running = jobs.get(broadcastId);
+        if (running != null && running.progress().getStatus() == BroadcastStatus.RUNNING) {
+            return Optional.of(running.progress());
+        }
+        String owner = lease.instanceId();
+        Optional<BroadcastProgress> resumed = checkpointStore.claimFailed(broadcastId, owner)
+                .map(checkpoint -> {
+                    checkpoint.setStatus(BroadcastStatus.RUNNING);
+                    checkpoint.setError(null);
+                    BroadcastJob job = new BroadcastJob(checkpoint, owner);
+                    launch(job);
+                    return job.progress();
+                });
+        if (resumed.isPresent()) {
+            return resumed;
+        }
+        // Already running on another instance
+        return checkpointStore.load(broadcastId)
+                .filter(checkpoint -> checkpoint.getStatus() == BroadcastStatus.RUNNING)
+                .map(checkpoint -> new BroadcastJob(checkpoint).progress());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startAdopting() {
+        adoption = taskScheduler.scheduleWithFixedDelay(this::adoptAbandoned, Instant.now(), properties.getAdoptInterval());
+    }
+
+    /**
+     * Resumes running broadcasts left behind by an instance that stopped or lost its lease, this one
+     * included after a restart.
+     */
+    void adoptAbandoned() {
+        try {
+            String owner = lease.instanceId();
+            for (BroadcastCheckpoint checkpoint : checkpointStore.claimAbandoned(owner)) {
+                log.info("Resuming broadcast {} after user '{}' channel '{}' ({} sent, {} failed so far)",
+                        checkpoint.getBroadcastId(), checkpoint.getAfterUserId(), checkpoint.getAfterChannel(),
+                        checkpoint.getSent(), checkpoint.getFailed());
+                launch(new BroadcastJob(checkpoint, owner));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not look for abandoned broadcasts: {}", e.getMessage());
+        }
+    }
+
+    private void launch(BroadcastJob job) {
+        jobs.put(job.getBroadcastId(), job);
+        checkpointStore.save(job.snapshot(), job.getOwner());
+        BroadcastRequest request = job.getRequest();
+
+        Disposable subscription = renderMessages(request)
+                .flatMapMany(messages -> fetchPage(request, job.getAfterUserId(), job.getAfterChannel())
+                        .expand(page -> page.isLast()
+                                ? Mono.empty()
+                                : fetchPage(request, page.getNextUserId(), page.getNextChannel()))
+                        // One chunk in flight and one page of read-ahead at most
+                        .concatMap(page -> dispatchChunk(job, page, messages), 1))
+                // The final checkpoint is a blocking write
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(null,
+                        error -> {
+                            if (error instanceof LeaseLostException) {
+                                log.warn("Broadcast {} was taken over by another instance, stopping here",
+                                        job.getBroadcastId());
+                                jobs.remove(job.getBroadcastId(), job);
+                            } else {
+                                log.error("Broadcast {} failed", job.getBroadcastId(), error);
+                                finish(job, BroadcastStatus.FAILED, error.getMessage());
+                            }
+                            sending.remove(job.getBroadcastId());
+                        },
+                        () -> {
+                            BroadcastCheckpoint finished = finish(job, BroadcastStatus.COMPLETED, null);
+                            log.info("Broadcast {} completed: {} sent, {} failed",
+                                    job.getBroadcastId(), finished.getSent(), finished.getFailed());
+                            sending.remove(job.getBroadcastId());
+                        });
+        sending.put(job.getBroadcastId(), subscription);
+    }
+
+    private BroadcastCheckpoint finish(BroadcastJob job, BroadcastStatus status, String error) {
+        BroadcastCheckpoint finished = job.finish(status, error);
+        try {
+            checkpointStore.save(finished, job.getOwner());
+        } catch (LeaseLostException e) {
+            log.warn("Broadcast {} was taken over by another instance before it finished here", job.getBroadcastId());
+            jobs.remove(job.getBroadcastId(), job);
+        } catch (RuntimeException e) {
+            // Still running as far as the store knows, so the broadcast is resumed from its last checkpoint
+            log.error("Could not record broadcast {} as {}", job.getBroadcastId(), status, e);
+        }
+        return finished;
+    }
+
+    /**
+     * Stops sending so that the broadcasts are taken over from their checkpoints once this instance
+     * gives up its lease.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (adoption != null) {
+            adoption.cancel(false);
+        }
+        sending.values().forEach(Disposable::dispose);
+    }
+
+    private Mono<Map<ChannelType, MessageContent>> renderMessages(BroadcastRequest request) {
+        // Broadcast data is shared by every recipient, so each channel's message is rendered once
+        return Flux.fromIterable(request.getChannels())
+                .concatMap(channel -> {
+                    TemplateKey key = new TemplateKey(request.getTemplateName(), channel, request.getLanguage());
+                    return templateClient.getTemplate(key)
+                            .switchIfEmpty(Mono.error(() -> new IllegalStateException("No template found for " + key)))
+                            .map(template -> Map.entry(channel, templateRenderer.render(template, request.getData())));
+                })
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private Mono<Void> dispatchChunk(BroadcastJob job, AudiencePage page, Map<ChannelType, MessageContent> messages) {
+        Map<String, Object> metadata = Map.of("eventType", "BROADCAST", "broadcastId", job.getBroadcastId().toString());
+        List<NotificationRequest> requests = page.getMembers().stream()
+                .map(member -> new NotificationRequest(
+                        member.getUserId(), member.getChannel(), messages.get(member.getChannel()), metadata))
+                .toList();
+        List<Integer> all = IntStream.range(0, requests.size()).boxed().toList();
+        return Mono.delay(job.pause())
+                .then(dispatchPending(job, page, requests, all, properties.getRetryInitialInterval(), System.nanoTime()));
+    }
+
+    /**
+     * Sends the chunk's pending recipients and, while the dispatcher turns some away because a lane is
+     * full or it is unavailable, sends those again after a growing backoff. Recipients whose envelope
+     * failed in a way that may have queued them are counted failed rather than risk a duplicate. The
+     * checkpoint only moves past recipients that are settled either way, so none is skipped after a restart.
+     */
+    private Mono<Void> dispatchPending(BroadcastJob job, AudiencePage page, List<NotificationRequest> requests,
+                                       List<Integer> pending, Duration backoff, long progressedAt) {
+        List<NotificationRequest> batch = pending.stream().map(requests::get).toList();
+        return dispatcherClient.dispatchBatch(batch, properties.getDispatchConcurrency())
+                .flatMap(result -> {
+                    List<Integer> rejected = result.getRejected().stream().map(pending::get).sorted().toList();
+                    int failed = result.getFailed().size();
+                    int sent = pending.size() - rejected.size() - failed;
+                    job.recordSent(sent);
+                    job.recordFailed(failed);
+                    sentCounter.increment(sent);
+                    failedCounter.increment(failed);
+                    Mono<Void> checkpoint = Mono.fromRunnable(() -> checkpointStore.save(advance(job, page, rejected), job.getOwner()))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then();
+                    if (rejected.isEmpty()) {
+                        job.eased();
+                        return checkpoint;
+                    }
+                    long now = System.nanoTime();
+                    long lastProgress = sent > 0 ? now : progressedAt;
+                    if (now - lastProgress > properties.getStallTimeout().toNanos()) {
+                        return checkpoint.then(Mono.error(new IllegalStateException(
+                                "Dispatcher has not taken any recipient for " + properties.getStallTimeout())));
+                    }
+                    job.throttled(backoff);
+                    Duration next = backoff.multipliedBy(2).compareTo(properties.getRetryMaxInterval()) > 0
+                            ? properties.getRetryMaxInterval()
+                            : backoff.multipliedBy(2);
+                    return checkpoint
+                            .then(Mono.delay(backoff))
+                            .then(Mono.defer(() -> dispatchPending(job, page, requests, rejected, next, lastProgress)));
+                });
+    }
+
+    /**
+     * Moves the cursor up to the recipient before the first one still pending, or to the end of the page.
+     */
+    private static BroadcastCheckpoint advance(BroadcastJob job, AudiencePage page, List<Integer> rejected) {
+        if (rejected.isEmpty()) {
+            return job.advance(page.getNextUserId(), page.getNextChannel());
+        }
+        int first = rejected.get(0);
+        if (first == 0) {
+            return job.snapshot();
+        }
+        AudienceMember last = page.getMembers().get(first - 1);
+        return job.advance(last.getUserId(), last.getChannel().name());
+    }
+
+    private Mono<AudiencePage> fetchPage(BroadcastRequest request, String afterUserId, String afterChannel) {
+        return preferenceWebClient.get()
+                .uri("/preferences/audience?category={category}&channels={channels}" +
+                                "&afterUserId={afterUserId}&afterChannel={afterChannel}&limit={limit}",
+                        categoryOf(request), channelsOf(request), afterUserId, afterChannel, properties.getChunkSize())
+                .retrieve()
+                .bodyToMono(AudiencePage.class)
+                .retryWhen(Retry.backoff(PAGE_FETCH_RETRIES, Duration.ofSeconds(1)));
+    }
+
+    private Mono<Long> countAudience(BroadcastRequest request) {
+        return preferenceWebClient.get()
+                .uri("/preferences/audience/count?category={category}&channels={channels}",
+                        categoryOf(request), channelsOf(request))
+                .retrieve()
+                .bodyToMono(Long.class);
+    }
+
+    private String categoryOf(BroadcastRequest request) {
+        Map<String, String> filter = request.getFilter();
+        return filter != null && filter.get("category") != null ? filter.get("category") : DEFAULT_CATEGORY;
+    }
+
+    private String channelsOf(BroadcastRequest request) {
+        return request.getChannels().stream().map(ChannelType::name).collect(Collectors.joining(","));
+    }
+}
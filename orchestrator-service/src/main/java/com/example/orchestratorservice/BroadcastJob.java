@@ -0,0 +1,114 @@
+package com.example.orchestratorservice;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+class BroadcastJob {
+
+    private final BroadcastCheckpoint checkpoint;
+    // Instance the broadcast is sent by, which alone may save its checkpoint
+    private final String owner;
+    private final AtomicLong sent;
+    private final AtomicLong failed;
+    // The rate covers this run only, so a resumed broadcast does not report a diluted rate
+    private final long runStartNanos = System.nanoTime();
+    private final long runStartProcessed;
+    // Wait before each chunk, raised while the dispatcher turns recipients away and eased off after
+    private volatile Duration pause = Duration.ZERO;
+
+    BroadcastJob(BroadcastCheckpoint checkpoint) {
+        this(checkpoint, null);
+    }
+
+    BroadcastJob(BroadcastCheckpoint checkpoint, String owner) {
+        this.checkpoint = checkpoint;
+        this.owner = owner;
+        this.sent = new AtomicLong(checkpoint.getSent());
+        this.failed = new AtomicLong(checkpoint.getFailed());
+        this.runStartProcessed = checkpoint.getSent() + checkpoint.getFailed();
+    }
+
+    UUID getBroadcastId() {
+        return checkpoint.getBroadcastId();
+    }
+
+    String getOwner() {
+        return owner;
+    }
+
+    BroadcastRequest getRequest() {
+        return checkpoint.getRequest();
+    }
+
+    synchronized String getAfterUserId() {
+        return checkpoint.getAfterUserId();
+    }
+
+    synchronized String getAfterChannel() {
+        return checkpoint.getAfterChannel();
+    }
+
+    void recordSent(long count) {
+        sent.addAndGet(count);
+    }
+
+    void recordFailed(long count) {
+        failed.addAndGet(count);
+    }
+
+    Duration pause() {
+        return pause;
+    }
+
+    void throttled(Duration backoff) {
+        pause = backoff;
+    }
+
+    void eased() {
+        pause = pause.dividedBy(2);
+    }
+
+    synchronized BroadcastCheckpoint advance(String afterUserId, String afterChannel) {
+        checkpoint.setAfterUserId(afterUserId);
+        checkpoint.setAfterChannel(afterChannel);
+        return snapshot();
+    }
+
+    synchronized BroadcastCheckpoint finish(BroadcastStatus status, String error) {
+        checkpoint.setStatus(status);
+        checkpoint.setError(error);
+        return snapshot();
+    }
+
+    synchronized BroadcastCheckpoint snapshot() {
+        checkpoint.setSent(sent.get());
+        checkpoint.setFailed(failed.get());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        BroadcastCheckpoint copy = new BroadcastCheckpoint();
+        copy.setBroadcastId(checkpoint.getBroadcastId());
+        copy.setRequest(checkpoint.getRequest());
+        copy.setStatus(checkpoint.getStatus());
+        copy.setTotalScheduled(checkpoint.getTotalScheduled());
+        copy.setSent(checkpoint.getSent());
+        copy.setFailed(checkpoint.getFailed());
+        copy.setAfterUserId(checkpoint.getAfterUserId());
+        copy.setAfterChannel(checkpoint.getAfterChannel());
+        copy.setError(checkpoint.getError());
+        copy.setCreatedAt(checkpoint.getCreatedAt());
+        copy.setUpdatedAt(checkpoint.getUpdatedAt());
+        return copy;
+    }
+
+    synchronized BroadcastProgress progress() {
+        long sentNow = sent.get();
+        long failedNow = failed.get();
+        double elapsedSeconds = (System.nanoTime() - runStartNanos) / 1_000_000_000.0;
+        double rate = checkpoint.getStatus() == BroadcastStatus.RUNNING && elapsedSeconds > 0
+                ? (sentNow + failedNow - runStartProcessed) / elapsedSeconds
+                : 0;
+        return new BroadcastProgress(checkpoint.getBroadcastId(), checkpoint.getStatus(), checkpoint.getTotalScheduled(),
+                sentNow, failedNow, rate, checkpoint.getError(), checkpoint.getCreatedAt(), checkpoint.getUpdatedAt());
+    }
+}
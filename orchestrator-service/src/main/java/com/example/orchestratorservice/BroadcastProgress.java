@@ -0,0 +1,21 @@
+package com.example.orchestratorservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class BroadcastProgress {
+    private UUID broadcastId;
+    private BroadcastStatus status;
+    private long totalScheduled;
+    private long sent;
+    private long failed;
+    private double ratePerSecond;
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+}
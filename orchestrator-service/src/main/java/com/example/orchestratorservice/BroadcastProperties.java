@@ -0,0 +1,22 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.broadcast")
+public class BroadcastProperties {
+    // Recipients per audience page; progress is checkpointed after each chunk
+    private int chunkSize = 500;
+    // Dispatch batch calls in flight per chunk
+    private int dispatchConcurrency = 4;
+    // Backoff before resending recipients the dispatcher turned away, which also spaces out the next pages
+    private Duration retryInitialInterval = Duration.ofMillis(500);
+    private Duration retryMaxInterval = Duration.ofSeconds(30);
+    // A broadcast the dispatcher has taken no recipient of for this long fails, and can be resumed
+    private Duration stallTimeout = Duration.ofMinutes(10);
+    // How often to look for running broadcasts whose instance stopped renewing its lease, and take them over
+    private Duration adoptInterval = Duration.ofSeconds(30);
+}
@@ -0,0 +1,16 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class BroadcastRequest {
+    private String templateName;
+    private List<ChannelType> channels;
+    private String language;
+    // Supported keys: category (defaults to MARKETING)
+    private Map<String, String> filter;
+    private Map<String, Object> data;
+}
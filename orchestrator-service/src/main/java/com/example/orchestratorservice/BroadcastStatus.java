@@ -0,0 +1,7 @@
+package com.example.orchestratorservice;
+
+public enum BroadcastStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
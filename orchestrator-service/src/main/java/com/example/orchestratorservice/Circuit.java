@@ -0,0 +1,127 @@
+package com.example.orchestratorservice;
+
+/**
+ * Count-based circuit breaker. Closed, it tracks the outcome of the last {@code slidingWindowSize}
+ * calls and opens once their failure rate reaches the threshold. Open, it refuses calls for
+ * {@code openDuration}, then goes half-open and lets {@code halfOpenCalls} trial calls through,
+ * closing again only if few enough of them fail.
+ * <p>
+ * Each admitted call gets the generation it was admitted in, and results from an earlier
+ * generation are ignored, so calls started while closed cannot decide a half-open trial.
+ */
+final class Circuit {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    static final long REJECTED = -1;
+
+    private final boolean enabled;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+
+    // Ring of recent outcomes, true for a failure
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private volatile State state = State.CLOSED;
+    private long generation;
+    private long openedAt;
+    private int trialsAdmitted;
+    private int trialsCompleted;
+    private int trialFailures;
+
+    Circuit(DownstreamClientProperties.CircuitBreaker settings) {
+        this.enabled = settings.isEnabled();
+        this.failureRateThreshold = settings.getFailureRateThreshold();
+        this.minimumCalls = settings.getMinimumCalls();
+        this.openNanos = settings.getOpenDuration().toNanos();
+        this.halfOpenCalls = settings.getHalfOpenCalls();
+        this.window = new boolean[settings.getSlidingWindowSize()];
+    }
+
+    State state() {
+        return state;
+    }
+
+    /**
+     * Returns the generation to report the call's result under, or {@link #REJECTED}.
+     */
+    synchronized long tryAcquire() {
+        if (!enabled) {
+            return generation;
+        }
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return REJECTED;
+            }
+            transition(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsAdmitted == halfOpenCalls) {
+                return REJECTED;
+            }
+            trialsAdmitted++;
+        }
+        return generation;
+    }
+
+    synchronized void onResult(long callGeneration, boolean failed) {
+        if (!enabled || callGeneration != generation) {
+            return;
+        }
+        if (state == State.CLOSED) {
+            if (recorded == window.length) {
+                failures -= window[next] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            window[next] = failed;
+            failures += failed ? 1 : 0;
+            next = (next + 1) % window.length;
+            if (recorded >= minimumCalls && failures * 100 >= failureRateThreshold * recorded) {
+                transition(State.OPEN);
+            }
+        } else if (state == State.HALF_OPEN) {
+            trialsCompleted++;
+            trialFailures += failed ? 1 : 0;
+            if (trialFailures * 100 >= failureRateThreshold * halfOpenCalls) {
+                transition(State.OPEN);
+            } else if (trialsCompleted == halfOpenCalls) {
+                transition(State.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * A call given up before it finished, such as the losing copy of a hedged call, frees its trial.
+     */
+    synchronized void onCancel(long callGeneration) {
+        if (enabled && callGeneration == generation && state == State.HALF_OPEN) {
+            trialsAdmitted--;
+        }
+    }
+
+    private void transition(State to) {
+        generation++;
+        state = to;
+        switch (to) {
+            case OPEN -> openedAt = System.nanoTime();
+            case HALF_OPEN -> {
+                trialsAdmitted = 0;
+                trialsCompleted = 0;
+                trialFailures = 0;
+            }
+            case CLOSED -> {
+                next = 0;
+                recorded = 0;
+                failures = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.orchestratorservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {{placeholder}} template parsed once into alternating literal and placeholder segments,
+ * so rendering is a single pass over the segments into a presized buffer.
+ */
+final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int ESTIMATED_VALUE_LENGTH = 16;
+
+    // literals.length == keys.length + 1; rendering emits literals[0], keys[0], literals[1], ...
+    private final String[] literals;
+    private final String[] keys;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] keys, int literalLength) {
+        this.literals = literals;
+        this.keys = keys;
+        this.literalLength = literalLength;
+    }
+
+    static CompiledTemplate compile(String source) {
+        if (source == null) {
+            return new CompiledTemplate(new String[]{""}, new String[0], 0);
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int literalLength = 0;
+        int position = 0;
+        while (true) {
+            int open = source.indexOf(OPEN, position);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                String tail = source.substring(position);
+                literals.add(tail);
+                literalLength += tail.length();
+                break;
+            }
+            // The placeholder opens at the last {{ before its }}; an unclosed {{ earlier on stays
+            // literal text, as it did for the old replace loop
+            open = source.lastIndexOf(OPEN, close - OPEN.length());
+            String literal = source.substring(position, open);
+            literals.add(literal);
+            literalLength += literal.length();
+            keys.add(source.substring(open + OPEN.length(), close));
+            position = close + CLOSE.length();
+        }
+        return new CompiledTemplate(literals.toArray(new String[0]), keys.toArray(new String[0]), literalLength);
+    }
+
+    String render(Map<String, Object> data) {
+        if (keys.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = new StringBuilder(literalLength + keys.length * ESTIMATED_VALUE_LENGTH);
+        out.append(literals[0]);
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            if (data.containsKey(key)) {
+                out.append(data.get(key));
+            } else {
+                // Unknown placeholders are left in place, as the old replace loop did
+                out.append(OPEN).append(key).append(CLOSE);
+            }
+            out.append(literals[i + 1]);
+        }
+        return out.toString();
+    }
+
+    int placeholderCount() {
+        return keys.length;
+    }
+}
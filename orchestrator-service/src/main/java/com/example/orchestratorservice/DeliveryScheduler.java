@@ -0,0 +1,471 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds notifications until their scheduleAt and then renders and dispatches them.
+ * <p>
+ * A notification without a scheduleAt, or already due, is stored under this instance and released at
+ * once, ahead of any backlog, so a campaign falling due does not hold up an SMS sent now.
+ * Every scheduled notification is first stored in the {@link ScheduleStore}, shared by all replicas.
+ * Each instance claims the stored notifications falling due within its memory horizon and holds them
+ * in a {@link TimingWheel}, so near-term notifications cost no database reads and far-future ones no
+ * heap. Each tick the wheel hands over what has fallen due, and that backlog is released at no more
+ * than the configured rate, so a campaign that falls due at one instant goes out as a steady stream.
+ * What the dispatcher turns away goes back to the head of the backlog, and the rate is halved each
+ * time it does and recovers as it takes all. A channel whose template could not be fetched is tried
+ * again after a growing delay; only a template that does not exist fails it for good.
+ * <p>
+ * A notification stays stored until it has been dispatched. Those held by an instance that went away
+ * are claimed by another once its {@link InstanceLease} runs out, so delivery is at least once:
+ * releases that were in flight at a crash are sent again.
+ */
+@Service
+@Slf4j
+public class DeliveryScheduler {
+
+    private static final String DEFAULT_LANGUAGE = "en";
+    private static final double MIN_RELEASE_RATE = 1;
+
+    private final ScheduleStore store;
+    private final InstanceLease lease;
+    private final TemplateClient templateClient;
+    private final TemplateRenderer templateRenderer;
+    private final DispatcherClient dispatcherClient;
+    private final ScheduleProperties properties;
+    private final long tickMillis;
+
+    private TimingWheel<ScheduledNotification> wheel;
+    // Due, waiting for release
+    private final Deque<TimingWheel.Entry<ScheduledNotification>> backlog = new ArrayDeque<>();
+    // Template fetches that failed so far, by notification, for the delay before the next
+    private final Map<UUID, Integer> attempts = new HashMap<>();
+    // Every stored notification due before this is held by this instance or has been released
+    private long claimedUntil = Long.MIN_VALUE;
+    private volatile long nextClaim;
+    private double releaseAllowance;
+    // Per second; lowered while the dispatcher turns notifications away
+    private double releaseRate;
+    private long lastTick;
+
+    private volatile boolean running;
+    private Thread ticker;
+    // Settling writes to the store, which must not hold up the dispatcher's event loop
+    Scheduler settleScheduler = Schedulers.boundedElastic();
+
+    private final Counter acceptedCounter;
+    private final Counter sentCounter;
+    private final Counter failedCounter;
+    private final Counter requeuedCounter;
+    private final Counter retriedCounter;
+    private final Timer releaseLag;
+
+    public DeliveryScheduler(ScheduleStore store, InstanceLease lease, TemplateClient templateClient,
+                             TemplateRenderer templateRenderer, DispatcherClient dispatcherClient,
+                             ScheduleProperties properties, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.lease = lease;
+        this.templateClient = templateClient;
+        this.templateRenderer = templateRenderer;
+        this.dispatcherClient = dispatcherClient;
+        this.properties = properties;
+        this.tickMillis = properties.getTick().toMillis();
+        this.releaseRate = properties.getReleaseRate();
+        this.wheel = new TimingWheel<>(tickMillis, properties.getWheelSize(), System.currentTimeMillis());
+        lease.onLapse(this::letGo);
+
+        this.acceptedCounter = meterRegistry.counter("orchestrator.schedule.accepted");
+        this.sentCounter = meterRegistry.counter("orchestrator.schedule.released", "outcome", "sent");
+        this.failedCounter = meterRegistry.counter("orchestrator.schedule.released", "outcome", "failed");
+        this.requeuedCounter = meterRegistry.counter("orchestrator.schedule.released", "outcome", "requeued");
+        this.retriedCounter = meterRegistry.counter("orchestrator.schedule.released", "outcome", "retried");
+        this.releaseLag = Timer.builder("orchestrator.schedule.release.lag")
+                .description("Time from a notification's scheduleAt to its release")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.schedule.pending", this, DeliveryScheduler::pending)
+                .description("Scheduled notifications held in the timing wheel")
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.schedule.backlog", this, DeliveryScheduler::backlogSize)
+                .description("Notifications that have fallen due and are waiting to be released")
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.schedule.release.rate", this, DeliveryScheduler::currentReleaseRate)
+                .description("Notifications released per second, lowered while the dispatcher turns them away")
+                .register(meterRegistry);
+    }
+
+    public Mono<ScheduledNotificationResponse> schedule(ScheduledNotification notification) {
+        if (notification.getUserId() == null || notification.getTemplateName() == null
+                || notification.getChannels() == null || notification.getChannels().isEmpty()) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "userId, templateName and channels are required"));
+        }
+        if (notification.getLanguage() == null) {
+            notification.setLanguage(DEFAULT_LANGUAGE);
+        }
+        if (notification.getNotificationId() == null) {
+            notification.setNotificationId(UUID.randomUUID());
+        }
+        return Mono.fromCallable(() -> {
+                    Instant scheduleAt = notification.getScheduleAt();
+                    if (scheduleAt == null || !scheduleAt.isAfter(Instant.now())) {
+                        sendNow(notification);
+                        return new ScheduledNotificationResponse(notification.getNotificationId(), "QUEUED", scheduleAt);
+                    }
+                    accept(notification);
+                    return new ScheduledNotificationResponse(notification.getNotificationId(), "SCHEDULED", scheduleAt);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Schedules notifications that have already been accepted upstream, in order. One that is invalid
+     * is logged and skipped rather than failing the rest, since resending would not make it valid.
+     */
+    public Mono<Void> scheduleAll(List<ScheduledNotification> notifications) {
+        return Flux.fromIterable(notifications)
+                .concatMap(notification -> schedule(notification)
+                        .onErrorResume(ResponseStatusException.class, e -> {
+                            log.warn("Skipping notification {}: {}", notification.getNotificationId(), e.getReason());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Stores a notification that is already due, held by this instance, and releases it at once
+     * rather than through the rate-limited backlog. It stays stored until it has been dispatched, so
+     * one in flight at a crash is claimed and sent again like any other. A notification stored before,
+     * as when a request is sent twice, is not sent again.
+     */
+    private void sendNow(ScheduledNotification notification) {
+        long now = System.currentTimeMillis();
+        String owner = lease.instanceId();
+        if (!store.add(notification, Instant.ofEpochMilli(now), owner)) {
+            log.debug("Scheduled notification {} is already stored", notification.getNotificationId());
+            return;
+        }
+        acceptedCounter.increment();
+        release(List.of(new TimingWheel.Entry<>(now, notification)), owner);
+    }
+
+    /**
+     * Stores a notification due later and, if it falls due within what this instance has claimed,
+     * holds it in the wheel. A notification stored before, as when a request is sent twice, is left
+     * as it is.
+     */
+    private synchronized void accept(ScheduledNotification notification) {
+        long dueAt = Math.max(notification.getScheduleAt().toEpochMilli(), System.currentTimeMillis());
+        boolean held = dueAt < claimedUntil;
+        if (!store.add(notification, Instant.ofEpochMilli(dueAt), held ? lease.instanceId() : null)) {
+            log.debug("Scheduled notification {} is already stored", notification.getNotificationId());
+            return;
+        }
+        acceptedCounter.increment();
+        if (held) {
+            hold(new TimingWheel.Entry<>(dueAt, notification));
+        }
+    }
+
+    private void hold(TimingWheel.Entry<ScheduledNotification> entry) {
+        if (!wheel.add(entry.dueAt(), entry.item())) {
+            backlog.add(entry);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        lastTick = System.currentTimeMillis();
+        ticker = new Thread(this::run, "schedule-ticker");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                tick(System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.error("Scheduled delivery tick failed", e);
+            }
+            long now = System.currentTimeMillis();
+            try {
+                Thread.sleep(Math.max(1, tickMillis - Math.floorMod(now, tickMillis)));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    void tick(long now) {
+        if (now >= nextClaim) {
+            // Set first, so a failing claim is tried again next interval rather than every tick
+            nextClaim = now + properties.getClaimInterval().toMillis();
+            claim(now + properties.getMemoryHorizon().toMillis());
+        }
+        List<TimingWheel.Entry<ScheduledNotification>> batch = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(now, backlog::add);
+
+            // Catching up after a stall does not turn into a burst: at most two ticks' worth is carried over
+            double perTick = Math.max(1, releaseRate * tickMillis / 1000);
+            releaseAllowance = Math.min(releaseAllowance + releaseRate * (now - lastTick) / 1000.0, 2.0 * perTick);
+            lastTick = now;
+            while (releaseAllowance >= 1 && !backlog.isEmpty()) {
+                batch.add(backlog.poll());
+                releaseAllowance--;
+            }
+        }
+        if (!batch.isEmpty()) {
+            release(batch, lease.instanceId());
+        }
+    }
+
+    /**
+     * Takes over stored notifications due before {@code horizon} that no live instance holds: those
+     * not yet within anyone's horizon, and those left by an instance that went away.
+     */
+    private void claim(long horizon) {
+        String owner = lease.instanceId();
+        int limit = properties.getClaimBatchSize();
+        List<TimingWheel.Entry<ScheduledNotification>> claimed;
+        do {
+            claimed = store.claimDue(Instant.ofEpochMilli(horizon), owner, limit);
+            synchronized (this) {
+                if (!owner.equals(lease.instanceId())) {
+                    // Claimed under a lease that has since run out; another instance may take them
+                    return;
+                }
+                claimed.forEach(this::hold);
+            }
+            if (!claimed.isEmpty()) {
+                log.debug("Claimed {} scheduled notifications due before {}", claimed.size(), Instant.ofEpochMilli(horizon));
+            }
+        } while (claimed.size() == limit);
+        synchronized (this) {
+            if (owner.equals(lease.instanceId())) {
+                claimedUntil = Math.max(claimedUntil, horizon);
+            }
+        }
+    }
+
+    /**
+     * Drops everything held in memory once the lease has run out: the stored notifications may already
+     * have been claimed by another instance, and this one claims afresh under its new id.
+     */
+    private synchronized void letGo() {
+        log.warn("Letting go of {} held and {} due scheduled notifications", wheel.size(), backlog.size());
+        wheel = new TimingWheel<>(tickMillis, properties.getWheelSize(), System.currentTimeMillis());
+        backlog.clear();
+        attempts.clear();
+        claimedUntil = Long.MIN_VALUE;
+        nextClaim = 0;
+    }
+
+    private void release(List<TimingWheel.Entry<ScheduledNotification>> batch, String owner) {
+        long now = System.currentTimeMillis();
+        for (TimingWheel.Entry<ScheduledNotification> entry : batch) {
+            releaseLag.record(now - entry.dueAt(), TimeUnit.MILLISECONDS);
+        }
+        Flux.fromIterable(batch)
+                .concatMap(entry -> Flux.fromIterable(entry.item().getChannels())
+                        .concatMap(channel -> prepare(entry, channel)))
+                .collectList()
+                .flatMap(prepared -> {
+                    List<Prepared> sendable = prepared.stream().filter(p -> p.request() != null).toList();
+                    if (sendable.isEmpty()) {
+                        return Mono.just(new Released(prepared, List.of()));
+                    }
+                    return dispatcherClient.dispatchBatch(sendable.stream().map(Prepared::request).toList(),
+                                    properties.getDispatchConcurrency())
+                            .map(result -> {
+                                sentCounter.increment(result.getAccepted());
+                                failedCounter.increment(result.getFailed().size());
+                                return new Released(prepared, result.getRejected().stream().map(sendable::get).toList());
+                            });
+                })
+                .publishOn(settleScheduler)
+                .subscribe(released -> settle(batch, released, owner), error -> {
+                    // Still stored; claimed again once this instance's lease has been let go
+                    log.error("Releasing {} scheduled notifications failed", batch.size(), error);
+                });
+    }
+
+    /**
+     * Renders one channel of a released notification. A template that could not be fetched leaves the
+     * channel to be tried again; one that does not exist, or does not render, fails it for good.
+     */
+    private Mono<Prepared> prepare(TimingWheel.Entry<ScheduledNotification> entry, ChannelType channel) {
+        ScheduledNotification notification = entry.item();
+        TemplateKey key = new TemplateKey(notification.getTemplateName(), channel, notification.getLanguage());
+        return templateClient.getTemplate(key)
+                .map(template -> {
+                    Map<String, Object> data = notification.getData() != null ? notification.getData() : Map.of();
+                    Map<String, Object> metadata = Map.of("eventType", "SCHEDULED",
+                            "notificationId", notification.getNotificationId().toString());
+                    try {
+                        return new Prepared(entry, channel, new NotificationRequest(notification.getUserId(), channel,
+                                templateRenderer.render(template, data), metadata), false);
+                    } catch (RuntimeException e) {
+                        log.error("Dropping {} of scheduled notification {}: {}", channel,
+                                notification.getNotificationId(), e.getMessage());
+                        return new Prepared(entry, channel, null, false);
+                    }
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> missingTemplate(entry, channel, key)))
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(missingTemplate(entry, channel, key)))
+                .onErrorResume(error -> {
+                    log.warn("Could not fetch template {} for scheduled notification {}, trying again later: {}",
+                            key, notification.getNotificationId(), error.getMessage());
+                    return Mono.just(new Prepared(entry, channel, null, true));
+                });
+    }
+
+    private static Prepared missingTemplate(TimingWheel.Entry<ScheduledNotification> entry, ChannelType channel,
+                                            TemplateKey key) {
+        log.error("Dropping {} of scheduled notification {}: no template found for {}", channel,
+                entry.item().getNotificationId(), key);
+        return new Prepared(entry, channel, null, false);
+    }
+
+    /**
+     * Removes from the store the notifications that have nothing left to send. Channels the dispatcher
+     * turned away go back to the head of the backlog; a notification with a channel whose template
+     * could not be fetched goes back to the wheel, with all its remaining channels, after a delay that
+     * doubles each time. Nothing is put back once the lease it was released under has run out.
+     */
+    private void settle(List<TimingWheel.Entry<ScheduledNotification>> batch, Released released, String owner) {
+        Map<TimingWheel.Entry<ScheduledNotification>, List<ChannelType>> turnedAway = new IdentityHashMap<>();
+        Map<TimingWheel.Entry<ScheduledNotification>, List<ChannelType>> retried = new IdentityHashMap<>();
+        for (Prepared prepared : released.rejected()) {
+            turnedAway.computeIfAbsent(prepared.entry(), entry -> new ArrayList<>()).add(prepared.channel());
+        }
+        for (Prepared prepared : released.prepared()) {
+            if (prepared.retry()) {
+                retried.computeIfAbsent(prepared.entry(), entry -> new ArrayList<>()).add(prepared.channel());
+            } else if (prepared.request() == null) {
+                failedCounter.increment();
+            }
+        }
+
+        List<UUID> completed = new ArrayList<>();
+        List<TimingWheel.Entry<ScheduledNotification>> requeued = new ArrayList<>();
+        List<ScheduledNotification> delayed = new ArrayList<>();
+        for (TimingWheel.Entry<ScheduledNotification> entry : batch) {
+            ScheduledNotification notification = entry.item();
+            List<ChannelType> remaining = new ArrayList<>(turnedAway.getOrDefault(entry, List.of()));
+            remaining.addAll(retried.getOrDefault(entry, List.of()));
+            if (remaining.isEmpty()) {
+                completed.add(notification.getNotificationId());
+                continue;
+            }
+            ScheduledNotification rest = remaining.size() == notification.getChannels().size()
+                    ? notification
+                    : withChannels(notification, remaining);
+            if (rest != notification) {
+                store.update(rest);
+            }
+            if (retried.containsKey(entry)) {
+                delayed.add(rest);
+            } else {
+                requeued.add(rest == notification ? entry : new TimingWheel.Entry<>(entry.dueAt(), rest));
+            }
+        }
+        store.delete(completed);
+
+        synchronized (this) {
+            completed.forEach(attempts::remove);
+            if (!owner.equals(lease.instanceId())) {
+                return;
+            }
+            for (int i = requeued.size() - 1; i >= 0; i--) {
+                backlog.addFirst(requeued.get(i));
+            }
+            long now = System.currentTimeMillis();
+            for (ScheduledNotification notification : delayed) {
+                hold(new TimingWheel.Entry<>(now + retryDelay(notification.getNotificationId()), notification));
+            }
+            retriedCounter.increment(delayed.size());
+            if (requeued.isEmpty()) {
+                releaseRate = Math.min(properties.getReleaseRate(), releaseRate + properties.getReleaseRate() / 10.0);
+            } else {
+                releaseRate = Math.max(MIN_RELEASE_RATE, releaseRate / 2);
+                requeuedCounter.increment(requeued.size());
+            }
+        }
+    }
+
+    private long retryDelay(UUID notificationId) {
+        int attempt = attempts.merge(notificationId, 1, Integer::sum);
+        long initial = properties.getRetryInitialInterval().toMillis();
+        long max = properties.getRetryMaxInterval().toMillis();
+        return attempt > 30 ? max : Math.min(max, initial << (attempt - 1));
+    }
+
+    private static ScheduledNotification withChannels(ScheduledNotification notification, List<ChannelType> channels) {
+        ScheduledNotification copy = new ScheduledNotification();
+        copy.setNotificationId(notification.getNotificationId());
+        copy.setUserId(notification.getUserId());
+        copy.setTemplateName(notification.getTemplateName());
+        copy.setChannels(channels);
+        copy.setLanguage(notification.getLanguage());
+        copy.setData(notification.getData());
+        copy.setScheduleAt(notification.getScheduleAt());
+        return copy;
+    }
+
+    // One channel of a released notification: its request, or null when it is not sent this time
+    private record Prepared(TimingWheel.Entry<ScheduledNotification> entry, ChannelType channel,
+                            NotificationRequest request, boolean retry) {
+    }
+
+    private record Released(List<Prepared> prepared, List<Prepared> rejected) {
+    }
+
+    synchronized double pending() {
+        return wheel.size();
+    }
+
+    synchronized double backlogSize() {
+        return backlog.size();
+    }
+
+    synchronized double currentReleaseRate() {
+        return releaseRate;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (ticker != null) {
+            ticker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.orchestratorservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DispatchBatchResult {
+    private int accepted;
+    // Positions in the batch the dispatcher did not queue
+    private List<Integer> rejected;
+    // Positions that may have been queued or were refused for good, and must not be sent again
+    private List<Integer> failed;
+}
@@ -0,0 +1,19 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.dispatch")
+public class DispatchProperties {
+    // Send CBOR to the dispatcher, falling back to JSON if it answers 415
+    private boolean cbor = true;
+    // Notifications per /dispatch/batch envelope
+    private int batchSize = 250;
+    // Retries of a call the dispatcher turned away unread (429, 503) or that could not connect
+    private int retryAttempts = 3;
+    private Duration retryInitialInterval = Duration.ofMillis(200);
+    private Duration retryMaxInterval = Duration.ofSeconds(2);
+}
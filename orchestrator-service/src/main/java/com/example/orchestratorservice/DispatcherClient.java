@@ -0,0 +1,157 @@
+package com.example.orchestratorservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posts notifications to dispatcher-service as CBOR when enabled, or JSON otherwise. A dispatcher
+ * that answers 415 to CBOR is assumed not to support it, and this client switches to JSON for good.
+ * Calls the dispatcher turned away before enqueuing anything, or that never reached it, are retried
+ * with backoff and jitter.
+ */
+@Component
+@Slf4j
+public class DispatcherClient {
+
+    private final WebClient dispatcherWebClient;
+    private final DownstreamGuard dispatcherGuard;
+    private final DispatchProperties properties;
+    private final ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+    private volatile boolean cbor;
+
+    public DispatcherClient(@Qualifier("dispatcherWebClient") WebClient dispatcherWebClient,
+                            @Qualifier("dispatcherGuard") DownstreamGuard dispatcherGuard, DispatchProperties properties) {
+        this.dispatcherWebClient = dispatcherWebClient;
+        this.dispatcherGuard = dispatcherGuard;
+        this.properties = properties;
+        this.cbor = properties.isCbor();
+    }
+
+    public Mono<Void> dispatch(NotificationRequest notificationRequest) {
+        return post("/dispatch", notificationRequest, Void.class);
+    }
+
+    /**
+     * Sends the requests in envelopes of up to {@code batchSize}, at most {@code concurrency} at a time,
+     * and reports an outcome for every request rather than failing. An envelope that failed before the
+     * dispatcher enqueued any of it is reported rejected, so it can be sent again; one that failed in a
+     * way that leaves that unknown, or that the dispatcher refused for good, is reported failed.
+     * Positions in the result refer to the whole list.
+     */
+    public Mono<DispatchBatchResult> dispatchBatch(List<NotificationRequest> requests, int concurrency) {
+        int batchSize = properties.getBatchSize();
+        return Flux.range(0, (requests.size() + batchSize - 1) / batchSize)
+                .flatMapSequential(batch -> {
+                    int from = batch * batchSize;
+                    List<NotificationRequest> envelope = requests.subList(from, Math.min(from + batchSize, requests.size()));
+                    return post("/dispatch/batch", NotificationBatch.of(envelope), DispatchBatchResult.class)
+                            .map(result -> offset(result, from))
+                            .onErrorResume(error -> Mono.just(unsent(error, from, envelope.size())));
+                }, concurrency)
+                .reduce(new DispatchBatchResult(0, new ArrayList<>(), new ArrayList<>()), (total, result) -> {
+                    total.setAccepted(total.getAccepted() + result.getAccepted());
+                    total.getRejected().addAll(result.getRejected());
+                    total.getFailed().addAll(result.getFailed());
+                    return total;
+                });
+    }
+
+
+    private <T> Mono<T> post(String uri, Object body, Class<T> responseType) {
+        // Backing off on the reactor timer keeps the retry off the calling thread
+        return encodeAndExchange(uri, body, responseType)
+                .retryWhen(Retry.backoff(properties.getRetryAttempts(), properties.getRetryInitialInterval())
+                        .maxBackoff(properties.getRetryMaxInterval())
+                        .jitter(0.5)
+                        .filter(DispatcherClient::isRetryable)
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        // Nothing was enqueued for these, so sending again cannot duplicate a notification. Other request
+        // errors, such as a premature close or a response timeout, may come after the body was taken in
+        return error instanceof WebClientResponseException.TooManyRequests
+                || error instanceof WebClientResponseException.ServiceUnavailable
+                || error instanceof WebClientRequestException && neverConnected(error);
+    }
+
+    private static boolean neverEnqueued(Throwable error) {
+        // The guard refuses a call before anything is sent
+        return isRetryable(error) || error instanceof DownstreamUnavailableException;
+    }
+
+    private static boolean neverConnected(Throwable error) {
+        for (Throwable cause = error.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T> Mono<T> encodeAndExchange(String uri, Object body, Class<T> responseType) {
+        if (!cbor) {
+            return exchange(uri, MediaType.APPLICATION_JSON, body, responseType);
+        }
+        // Spring 6.0's CBOR encoder only supports decoding, so the body is encoded here
+        return Mono.fromCallable(() -> cborMapper.writeValueAsBytes(body))
+                .flatMap(bytes -> exchange(uri, MediaType.APPLICATION_CBOR, bytes, responseType))
+                .onErrorResume(WebClientResponseException.UnsupportedMediaType.class, e -> {
+                    if (cbor) {
+                        log.warn("dispatcher-service does not accept CBOR, switching to JSON");
+                        cbor = false;
+                    }
+                    return exchange(uri, MediaType.APPLICATION_JSON, body, responseType);
+                });
+    }
+
+    private <T> Mono<T> exchange(String uri, MediaType mediaType, Object body, Class<T> responseType) {
+        // Never hedged: a second copy could enqueue the notification twice
+        return dispatcherGuard.call(() -> dispatcherWebClient.post()
+                .uri(uri)
+                .contentType(mediaType)
+                .accept(mediaType)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(responseType));
+    }
+
+    private static DispatchBatchResult offset(DispatchBatchResult result, int from) {
+        List<Integer> rejected = new ArrayList<>();
+        if (result.getRejected() != null) {
+            for (Integer index : result.getRejected()) {
+                rejected.add(index + from);
+            }
+        }
+        return new DispatchBatchResult(result.getAccepted(), rejected, new ArrayList<>());
+    }
+
+    private static DispatchBatchResult unsent(Throwable error, int from, int size) {
+        List<Integer> positions = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            positions.add(from + i);
+        }
+        if (neverEnqueued(error)) {
+            log.warn("Envelope of {} notifications was not enqueued: {}", size, error.getMessage());
+            return new DispatchBatchResult(0, positions, new ArrayList<>());
+        }
+        log.warn("Envelope of {} notifications failed and may have been enqueued, not sending it again: {}",
+                size, error.getMessage());
+        return new DispatchBatchResult(0, new ArrayList<>(), positions);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.downstream")
+public class DownstreamClientProperties {
+
+    private ServiceClient template = new ServiceClient("http://template-service:8080");
+    private ServiceClient preference = new ServiceClient("http://user-preference-service:8080");
+    private ServiceClient dispatcher = new ServiceClient("http://dispatcher-service:8080");
+
+    @Data
+    public static class ServiceClient {
+
+        private String baseUrl;
+
+        /**
+         * Open connections allowed to each host of the service.
+         */
+        private int maxConnections = 100;
+
+        /**
+         * Requests allowed to wait for a connection once all are in use; further requests fail fast.
+         */
+        private int pendingAcquireMaxCount = 1000;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Kept below the server's keep-alive timeout so the client never reuses a connection the server is closing.
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(15);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        /**
+         * Offer HTTP/2 (h2c upgrade over plain HTTP, ALPN over TLS); HTTP/1.1 is used when the server declines.
+         */
+        private boolean http2 = false;
+
+        private Bulkhead bulkhead = new Bulkhead();
+
+        private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+        private Hedge hedge = new Hedge();
+
+        public ServiceClient() {
+        }
+
+        public ServiceClient(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+    }
+
+    @Data
+    public static class Bulkhead {
+
+        /**
+         * Calls allowed in flight at once; further calls fail at once rather than queue behind them.
+         */
+        private int maxConcurrentCalls = 200;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+
+        private boolean enabled = true;
+
+        /**
+         * Percentage of failed calls, among the last {@code slidingWindowSize}, that opens the circuit.
+         */
+        private int failureRateThreshold = 50;
+
+        private int slidingWindowSize = 100;
+
+        /**
+         * Calls the window must hold before the failure rate is acted on.
+         */
+        private int minimumCalls = 20;
+
+        /**
+         * How long an open circuit fails calls before letting trial calls through.
+         */
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        /**
+         * Trial calls let through half-open; the circuit closes if fewer than the threshold of them fail.
+         */
+        private int halfOpenCalls = 5;
+    }
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * Send a second copy of a call still unanswered after the hedge delay. Only for calls that are
+         * safe to repeat.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Latency percentile of recent successful calls used as the hedge delay.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Floor for the hedge delay, which also applies until enough calls have been timed.
+         */
+        private Duration minDelay = Duration.ofMillis(20);
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Latency controls around the calls to one downstream service:
+ * <ul>
+ *     <li>a bulkhead capping calls in flight, refusing the rest at once;</li>
+ *     <li>a {@link Circuit} that refuses calls while the service keeps failing;</li>
+ *     <li>for calls that are safe to repeat, a hedge: a second copy sent once the first has taken
+ *     longer than the configured percentile of recent calls, the first answer winning.</li>
+ * </ul>
+ * Refused calls fail with {@link DownstreamUnavailableException}. Client errors other than 429 say
+ * nothing about the service's health and do not count against the circuit.
+ */
+public class DownstreamGuard {
+
+    private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String name;
+    private final int maxConcurrentCalls;
+    private final Circuit circuit;
+    private final boolean hedging;
+    private final double hedgePercentile;
+    private final long minHedgeDelayNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer latency;
+    private final Counter failures;
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+    private final Counter hedgesSent;
+    private final Counter hedgesWon;
+
+    private volatile long hedgeDelayNanos;
+    private volatile long hedgeDelayRefreshedAt;
+
+    public DownstreamGuard(String name, DownstreamClientProperties.ServiceClient settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrentCalls = settings.getBulkhead().getMaxConcurrentCalls();
+        this.circuit = new Circuit(settings.getCircuitBreaker());
+        this.hedging = settings.getHedge().isEnabled();
+        this.hedgePercentile = settings.getHedge().getPercentile();
+        this.minHedgeDelayNanos = settings.getHedge().getMinDelay().toNanos();
+        this.hedgeDelayNanos = minHedgeDelayNanos;
+        this.hedgeDelayRefreshedAt = System.nanoTime();
+
+        this.latency = Timer.builder("orchestrator.downstream.latency")
+                .description("Duration of successful calls, per attempt")
+                .tag("downstream", name)
+                .publishPercentiles(hedgePercentile)
+                .register(meterRegistry);
+        this.failures = Counter.builder("orchestrator.downstream.failures")
+                .description("Calls counted as failures by the circuit breaker")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        this.bulkheadRejections = rejections(meterRegistry, "bulkhead_full");
+        this.circuitRejections = rejections(meterRegistry, "circuit_open");
+        this.hedgesSent = hedges(meterRegistry, "sent");
+        this.hedgesWon = hedges(meterRegistry, "won");
+        Gauge.builder("orchestrator.downstream.in_flight", inFlight, AtomicInteger::get)
+                .description("Calls in flight, hedges included")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.downstream.circuit.state", circuit, c -> c.state().ordinal())
+                .description("0 closed, 1 half-open, 2 open")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        Gauge.builder("orchestrator.downstream.hedge.delay", this, guard -> guard.hedgeDelayNanos / 1e9)
+                .description("Current delay before a call is hedged")
+                .tag("downstream", name)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call through the bulkhead and circuit breaker. {@code call} is subscribed once per
+     * attempt, so it must build a fresh request each time.
+     */
+    public <T> Mono<T> call(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Permit permit = admit();
+            return permit.admitted() ? run(permit, call)
+                    : Mono.error(new DownstreamUnavailableException(name, permit.rejection()));
+        });
+    }
+
+    /**
+     * Like {@link #call}, but hedged when hedging is enabled for this service. The copy is only sent
+     * if the bulkhead and circuit admit it; whichever attempt answers first is used and the other is
+     * cancelled. The call fails only when every attempt has.
+     */
+    public <T> Mono<T> hedged(Supplier<Mono<T>> call) {
+        if (!hedging) {
+            return call(call);
+        }
+        return Mono.create(sink -> {
+            Permit permit = admit();
+            if (!permit.admitted()) {
+                sink.error(new DownstreamUnavailableException(name, permit.rejection()));
+                return;
+            }
+            Disposable.Composite attempts = Disposables.composite();
+            sink.onDispose(attempts);
+            HedgedCall<T> hedged = new HedgedCall<>(sink);
+            attempts.add(hedged.start(run(permit, call), false));
+            attempts.add(Schedulers.parallel().schedule(() -> {
+                if (hedged.done.get()) {
+                    return;
+                }
+                Permit hedgePermit = admit();
+                if (!hedgePermit.admitted()) {
+                    return;
+                }
+                // Counted before starting, so a primary failing meanwhile waits for the hedge
+                if (hedged.running.incrementAndGet() == 1) {
+                    release(hedgePermit, null);
+                    return;
+                }
+                hedgesSent.increment();
+                attempts.add(hedged.start(run(hedgePermit, call), true));
+            }, hedgeDelay(), TimeUnit.NANOSECONDS));
+        });
+    }
+
+    private Permit admit() {
+        long generation = circuit.tryAcquire();
+        if (generation == Circuit.REJECTED) {
+            circuitRejections.increment();
+            return Permit.rejected("circuit " + circuit.state().name().toLowerCase().replace('_', '-'));
+        }
+        if (inFlight.incrementAndGet() > maxConcurrentCalls) {
+            inFlight.decrementAndGet();
+            circuit.onCancel(generation);
+            bulkheadRejections.increment();
+            return Permit.rejected(maxConcurrentCalls + " calls already in flight");
+        }
+        return new Permit(generation, System.nanoTime(), null);
+    }
+
+    private <T> Mono<T> run(Permit permit, Supplier<Mono<T>> call) {
+        AtomicBoolean released = new AtomicBoolean();
+        return Mono.defer(call)
+                .doOnSuccess(value -> {
+                    if (released.compareAndSet(false, true)) {
+                        latency.record(System.nanoTime() - permit.started(), TimeUnit.NANOSECONDS);
+                        release(permit, false);
+                    }
+                })
+                .doOnError(error -> {
+                    if (released.compareAndSet(false, true)) {
+                        boolean failed = isFailure(error);
+                        if (failed) {
+                            failures.increment();
+                        }
+                        release(permit, failed);
+                    }
+                })
+                .doOnCancel(() -> {
+                    if (released.compareAndSet(false, true)) {
+                        release(permit, null);
+                    }
+                });
+    }
+
+    private void release(Permit permit, Boolean failed) {
+        inFlight.decrementAndGet();
+        if (failed == null) {
+            circuit.onCancel(permit.generation());
+        } else {
+            circuit.onResult(permit.generation(), failed);
+        }
+    }
+
+    private static boolean isFailure(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return true;
+    }
+
+    private long hedgeDelay() {
+        long now = System.nanoTime();
+        if (now - hedgeDelayRefreshedAt >= HEDGE_DELAY_REFRESH_NANOS) {
+            hedgeDelayRefreshedAt = now;
+            long delay = minHedgeDelayNanos;
+            for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                if (value.percentile() == hedgePercentile) {
+                    delay = Math.max(delay, (long) value.value(TimeUnit.NANOSECONDS));
+                }
+            }
+            hedgeDelayNanos = delay;
+        }
+        return hedgeDelayNanos;
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("orchestrator.downstream.rejected")
+                .description("Calls refused without being sent")
+                .tag("downstream", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private Counter hedges(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("orchestrator.downstream.hedges")
+                .description("Second copies of slow calls, and how many answered first")
+                .tag("downstream", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private record Permit(long generation, long started, String rejection) {
+
+        static Permit rejected(String reason) {
+            return new Permit(Circuit.REJECTED, 0, reason);
+        }
+
+        boolean admitted() {
+            return rejection == null;
+        }
+    }
+
+    private final class HedgedCall<T> {
+        private final MonoSink<T> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private final AtomicInteger running = new AtomicInteger(1);
+        private final AtomicReference<Throwable> firstError = new AtomicReference<>();
+
+        private HedgedCall(MonoSink<T> sink) {
+            this.sink = sink;
+        }
+
+        private Disposable start(Mono<T> attempt, boolean hedge) {
+            // Subscribed here rather than by the caller, so the caller's context is passed on explicitly
+            return attempt.contextWrite(sink.contextView()).subscribe(
+                    value -> {
+                        if (done.compareAndSet(false, true)) {
+                            if (hedge) {
+                                hedgesWon.increment();
+                            }
+                            sink.success(value);
+                        }
+                    },
+                    error -> {
+                        firstError.compareAndSet(null, error);
+                        if (running.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                            sink.error(firstError.get());
+                        }
+                    },
+                    () -> {
+                        if (done.compareAndSet(false, true)) {
+                            sink.success();
+                        }
+                    });
+        }
+    }
+}
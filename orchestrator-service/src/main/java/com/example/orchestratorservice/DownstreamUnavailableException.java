@@ -0,0 +1,8 @@
+package com.example.orchestratorservice;
+
+public class DownstreamUnavailableException extends RuntimeException {
+
+    public DownstreamUnavailableException(String downstream, String reason) {
+        super("Call to " + downstream + " refused: " + reason);
+    }
+}
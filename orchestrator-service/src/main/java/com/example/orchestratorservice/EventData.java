@@ -2,6 +2,7 @@ package com.example.orchestratorservice;
 
 import lombok.Data;
 
+import java.util.List;
 import java.util.Map;
 
 @Data
@@ -9,4 +10,17 @@ public class EventData {
     private String eventType;
     private String userId;
     private Map<String, Object> data;
+    /**
+     * When the event entered the platform, in epoch milliseconds, if the sender knows.
+     */
+    private Long ingestedAt;
+    /**
+     * Trace context of the event's own span upstream, as propagation headers, if it was traced.
+     */
+    private Map<String, String> trace;
+    /**
+     * Channels still to send, when an earlier attempt already dispatched the others. Null sends every
+     * channel the user has enabled.
+     */
+    private List<ChannelType> channels;
 }
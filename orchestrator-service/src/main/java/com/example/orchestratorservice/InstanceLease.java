@@ -0,0 +1,119 @@
+package com.example.orchestratorservice;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * This instance's lease on the work it holds in the orchestrator database. Rows of shared work name
+ * the instance holding them, and an instance counts as live while it keeps renewing its lease row,
+ * so work left by a replica that crashed or was scaled away can be taken over by any other.
+ * <p>
+ * An instance whose lease ran out carries on under a new id: whatever it held under the old one may
+ * already have been taken over, and conditional writes under the old id no longer succeed.
+ */
+@Component
+@Slf4j
+public class InstanceLease {
+
+    private static final String TABLE = "orchestrator_instances";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrchestratorSchema schema;
+    private final TaskScheduler taskScheduler;
+    private final LeaseProperties properties;
+
+    private final List<Runnable> lapseListeners = new CopyOnWriteArrayList<>();
+
+    private volatile String instanceId;
+    private ScheduledFuture<?> renewal;
+
+    public InstanceLease(JdbcTemplate jdbcTemplate, OrchestratorSchema schema, TaskScheduler taskScheduler,
+                         LeaseProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schema = schema;
+        this.taskScheduler = taskScheduler;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    void register() {
+        schema.ensureTable(TABLE, "CREATE TABLE " + TABLE + " (" +
+                "instance_id text PRIMARY KEY, " +
+                "lease_until timestamptz NOT NULL)");
+        // Leases that ran out say nothing a missing row does not
+        jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE lease_until < now()");
+        acquire();
+        renewal = taskScheduler.scheduleWithFixedDelay(this::renew,
+                Instant.now().plus(properties.getRenewInterval()), properties.getRenewInterval());
+    }
+
+    public String instanceId() {
+        return instanceId;
+    }
+
+    /**
+     * Runs {@code listener} when the lease has run out and this instance carries on under a new id, so
+     * work held in memory under the old one can be let go.
+     */
+    public void onLapse(Runnable listener) {
+        lapseListeners.add(listener);
+    }
+
+    /**
+     * SQL condition that holds when the instance named in {@code column} holds a live lease.
+     */
+    public String isLive(String column) {
+        return "EXISTS (SELECT 1 FROM " + TABLE + " i WHERE i.instance_id = " + column + " AND i.lease_until > now())";
+    }
+
+    private void acquire() {
+        String id = hostname() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        jdbcTemplate.update("INSERT INTO " + TABLE + " (instance_id, lease_until) " +
+                "VALUES (?, now() + ? * interval '1 millisecond')", id, properties.getDuration().toMillis());
+        instanceId = id;
+        log.info("Orchestrator instance {} holds a lease of {}", id, properties.getDuration());
+    }
+
+    private void renew() {
+        try {
+            int renewed = jdbcTemplate.update("UPDATE " + TABLE + " SET lease_until = now() + ? * interval '1 millisecond' " +
+                    "WHERE instance_id = ? AND lease_until > now()", properties.getDuration().toMillis(), instanceId);
+            if (renewed == 0) {
+                log.error("Lease of orchestrator instance {} ran out; work it held may have been taken over", instanceId);
+                acquire();
+                lapseListeners.forEach(Runnable::run);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not renew the lease of orchestrator instance {}: {}", instanceId, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void release() {
+        if (renewal != null) {
+            renewal.cancel(false);
+        }
+        try {
+            // Lets the other instances take over at once rather than after the lease runs out
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE instance_id = ?", instanceId);
+        } catch (DataAccessException e) {
+            log.warn("Could not release the lease of orchestrator instance {}: {}", instanceId, e.getMessage());
+        }
+    }
+
+    private static String hostname() {
+        String hostname = System.getenv("HOSTNAME");
+        return hostname != null && !hostname.isBlank() ? hostname : "orchestrator";
+    }
+}
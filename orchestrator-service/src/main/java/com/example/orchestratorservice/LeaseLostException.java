@@ -0,0 +1,8 @@
+package com.example.orchestratorservice;
+
+public class LeaseLostException extends RuntimeException {
+
+    public LeaseLostException(String message) {
+        super(message);
+    }
+}
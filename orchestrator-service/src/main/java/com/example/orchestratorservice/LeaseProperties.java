@@ -0,0 +1,15 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.lease")
+public class LeaseProperties {
+    // Work held by an instance that has not renewed its lease for this long is taken over by another
+    private Duration duration = Duration.ofSeconds(30);
+    // Well under the duration, so a slow renewal or two does not let the lease run out
+    private Duration renewInterval = Duration.ofSeconds(10);
+}
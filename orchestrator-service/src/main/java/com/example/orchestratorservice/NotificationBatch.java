@@ -0,0 +1,45 @@
+package com.example.orchestratorservice;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Envelope for POST /dispatch/batch. Each distinct message is written once in {@code messages} and
+ * notifications refer to it by position, so a broadcast chunk does not repeat the same rendered body
+ * for every recipient.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationBatch {
+
+    private List<MessageContent> messages;
+    private List<Entry> notifications;
+
+    public static NotificationBatch of(List<NotificationRequest> requests) {
+        // Identity is enough: requests sharing a message share the rendered instance
+        Map<MessageContent, Integer> refs = new IdentityHashMap<>();
+        List<MessageContent> messages = new ArrayList<>();
+        List<Entry> entries = new ArrayList<>(requests.size());
+        for (NotificationRequest request : requests) {
+            Integer ref = refs.computeIfAbsent(request.getMessage(), message -> {
+                messages.add(message);
+                return messages.size() - 1;
+            });
+            entries.add(new Entry(request.getUserId(), request.getChannel(), ref, request.getMetadata(),
+                    request.getIngestedAt()));
+        }
+        return new NotificationBatch(messages, entries);
+    }
+
+    public record Entry(String userId, ChannelType channel, int messageRef, Map<String, Object> metadata,
+                        @JsonInclude(JsonInclude.Include.NON_NULL) Long ingestedAt) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.orchestratorservice;
+
+import com.example.shared.TailSamplingSpanHandler;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.ReceiverContext;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Starts the observation, and so the span, covering one event's processing. Events arrive in
+ * batches, so an event that carries its upstream trace context continues that trace rather than
+ * the batch request's; the calls made for it to template, preference and dispatcher services are
+ * traced under it. The event type, user and ingestion time are span tags only, not meter tags.
+ */
+@Component
+public class NotificationObservations {
+
+    private final ObservationRegistry observationRegistry;
+
+    public NotificationObservations(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    public Observation process(EventData event, Observation parent) {
+        Observation observation;
+        if (event.getTrace() != null && !event.getTrace().isEmpty()) {
+            ReceiverContext<Map<String, String>> context = new ReceiverContext<>(Map::get);
+            context.setCarrier(event.getTrace());
+            context.setRemoteServiceName("event-processor-service");
+            observation = Observation.createNotStarted("notification.process", () -> context, observationRegistry);
+        } else {
+            observation = Observation.createNotStarted("notification.process", observationRegistry)
+                    .parentObservation(parent);
+        }
+        observation.contextualName("process event");
+        if (event.getEventType() != null) {
+            observation.highCardinalityKeyValue("notification.event_type", event.getEventType());
+        }
+        if (event.getUserId() != null) {
+            observation.highCardinalityKeyValue("notification.user_id", event.getUserId());
+        }
+        if (event.getIngestedAt() != null) {
+            observation.highCardinalityKeyValue(TailSamplingSpanHandler.INGESTED_AT,
+                    event.getIngestedAt().toString());
+        }
+        return observation.start();
+    }
+}
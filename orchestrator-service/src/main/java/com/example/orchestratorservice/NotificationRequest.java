@@ -1,5 +1,6 @@
 package com.example.orchestratorservice;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -12,4 +13,11 @@ public class NotificationRequest {
     private ChannelType channel;
     private MessageContent message;
     private Map<String, Object> metadata;
+    // Epoch millis the triggering event was ingested, passed on for end-to-end latency
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long ingestedAt;
+
+    public NotificationRequest(String userId, ChannelType channel, MessageContent message, Map<String, Object> metadata) {
+        this(userId, channel, message, metadata, null);
+    }
 }
@@ -1,21 +1,60 @@
 package com.example.orchestratorservice;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @RestController
 @RequestMapping("/notifications")
 @RequiredArgsConstructor
+@Slf4j
 public class OrchestratorController {
 
     private final OrchestratorService orchestratorService;
+    private final DeliveryScheduler deliveryScheduler;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/trigger")
     public Mono<Void> triggerNotification(@RequestBody EventData eventData) {
         return orchestratorService.processEvent(eventData);
     }
+
+    @PostMapping("/trigger/batch")
+    public Mono<TriggerBatchResult> triggerNotifications(@RequestBody List<EventData> events) {
+        return orchestratorService.processEvents(events);
+    }
+
+    @PostMapping("/send")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<ScheduledNotificationResponse> sendNotification(@RequestBody ScheduledNotification notification) {
+        return deliveryScheduler.schedule(notification);
+    }
+
+    @PostMapping("/send/batch")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Mono<Void> sendNotifications(@RequestBody List<JsonNode> entries) {
+        // Bound one by one, so an entry that cannot be read is skipped instead of failing the batch
+        List<ScheduledNotification> notifications = new ArrayList<>(entries.size());
+        for (JsonNode entry : entries) {
+            try {
+                notifications.add(objectMapper.treeToValue(entry, ScheduledNotification.class));
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                log.warn("Skipping unreadable notification {}: {}", entry.path("notificationId").asText(null),
+                        e.getMessage());
+            }
+        }
+        return deliveryScheduler.scheduleAll(notifications);
+    }
 }
@@ -0,0 +1,43 @@
+package com.example.orchestratorservice;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Creates the orchestrator's tables on first start.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OrchestratorSchema {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Runs {@code ddl} unless {@code table} already exists. Instances starting together take turns;
+     * the first creates the table, the rest find it.
+     */
+    public void ensureTable(String table, String ddl) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (tableExists(table)) {
+                return;
+            }
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {
+            }, table);
+            if (tableExists(table)) {
+                return;
+            }
+            jdbcTemplate.execute(ddl);
+            log.info("Created table {}", table);
+        });
+    }
+
+    private boolean tableExists(String table) {
+        // Each statement takes a fresh snapshot, so this sees a table another instance just committed
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+    }
+}
@@ -1,58 +1,187 @@
 package com.example.orchestratorservice;
 
+import com.example.orchestratorservice.StageLatency.Stage;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class OrchestratorService {
 
-    private final WebClient.Builder webClientBuilder;
+    private final TemplateRenderer templateRenderer;
+    private final TemplateClient templateClient;
+    private final PreferenceBatchLoader preferenceBatchLoader;
+    private final DispatcherClient dispatcherClient;
+    private final StageLatency stageLatency;
+    private final NotificationObservations observations;
 
     public Mono<Void> processEvent(EventData eventData) {
+        return Mono.deferContextual(contextView -> {
+            Observation observation = observations.process(eventData,
+                    contextView.getOrDefault(ObservationThreadLocalAccessor.KEY, null));
+            return process(eventData)
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    private Mono<Void> process(EventData eventData) {
         String category = determineCategory(eventData.getEventType());
+        long started = System.currentTimeMillis();
 
-        Mono<TemplateResponse> templateMono = webClientBuilder.build()
-                .get()
-                .uri("http://template-service:8080/templates/search?name={name}&channel={channel}&language={language}",
-                        eventData.getEventType(), "EMAIL", "en") // Hardcoded for now
-                .retrieve()
-                .bodyToMono(TemplateResponse.class);
+        Mono<TemplateResponse> templateMono = templateClient.getTemplate(
+                new TemplateKey(eventData.getEventType(), ChannelType.EMAIL, "en")); // Hardcoded for now
 
-        Flux<UserPreferenceResponse> preferencesFlux = webClientBuilder.build()
-                .get()
-                .uri("http://user-preference-service:8080/preferences?userId={userId}&category={category}",
-                        eventData.getUserId(), category)
-                .retrieve()
-                .bodyToFlux(UserPreferenceResponse.class);
+        Mono<List<UserPreferenceResponse>> preferencesMono = preferenceBatchLoader.load(eventData.getUserId(), category);
+        Map<ChannelType, Throwable> unsent = new ConcurrentHashMap<>();
 
-        return Mono.zip(templateMono, preferencesFlux.collectList())
+        return Mono.zip(templateMono.timed(), preferencesMono.timed())
                 .flatMapMany(tuple -> {
-                    TemplateResponse template = tuple.getT1();
-                    return Flux.fromIterable(tuple.getT2())
+                    // The message is the same for every channel, so render it once per event
+                    long renderStarted = System.nanoTime();
+                    MessageContent message = templateRenderer.render(tuple.getT1().get(), eventData.getData());
+                    long renderNanos = System.nanoTime() - renderStarted;
+                    return Flux.fromIterable(tuple.getT2().get())
                             .filter(UserPreferenceResponse::isEnabled)
+                            .filter(preference -> eventData.getChannels() == null
+                                    || eventData.getChannels().contains(preference.getChannel()))
                             .flatMap(preference -> {
-                                String renderedSubject = renderTemplate(template.getSubject(), eventData.getData());
-                                String renderedBody = renderTemplate(template.getBody(), eventData.getData());
+                                ChannelType channel = preference.getChannel();
+                                String eventType = eventData.getEventType();
+                                // Shared stages are recorded per channel, so each channel's breakdown is complete
+                                if (eventData.getIngestedAt() != null) {
+                                    stageLatency.record(Stage.INGEST_QUEUE, channel, eventType,
+                                            TimeUnit.MILLISECONDS.toNanos(started - eventData.getIngestedAt()));
+                                }
+                                stageLatency.record(Stage.TEMPLATE_FETCH, channel, eventType,
+                                        tuple.getT1().elapsed().toNanos());
+                                stageLatency.record(Stage.PREFERENCE_FETCH, channel, eventType,
+                                        tuple.getT2().elapsed().toNanos());
+                                stageLatency.record(Stage.RENDER, channel, eventType, renderNanos);
                                 NotificationRequest notificationRequest = new NotificationRequest(
                                         eventData.getUserId(),
-                                        preference.getChannel(),
-                                        new MessageContent(renderedSubject, renderedBody),
-                                        Map.of("eventType", eventData.getEventType())
+                                        channel,
+                                        message,
+                                        Map.of("eventType", eventType),
+                                        eventData.getIngestedAt()
                                 );
-                                return webClientBuilder.build()
-                                        .post()
-                                        .uri("http://dispatcher-service:8080/dispatch")
-                                        .bodyValue(notificationRequest)
-                                        .retrieve()
-                                        .bodyToMono(Void.class);
+                                return Mono.defer(() -> {
+                                    long dispatchStarted = System.nanoTime();
+                                    return dispatcherClient.dispatch(notificationRequest)
+                                            .doOnSuccess(ignored -> stageLatency.record(Stage.DISPATCH, channel,
+                                                    eventType, System.nanoTime() - dispatchStarted));
+                                }).onErrorResume(e -> {
+                                    // The other channels still go out; failing here would cancel them half-sent
+                                    unsent.put(channel, e);
+                                    return Mono.empty();
+                                });
+                            });
+                })
+                .then(Mono.defer(() -> unsent.isEmpty() ? Mono.empty() : Mono.error(unsentError(eventData, unsent))));
+    }
+
+    /**
+     * The error for an event some of whose channels were not dispatched. Channels that may pass later
+     * are reported so that only they are sent again; those that failed for good are logged and dropped.
+     */
+    private static Throwable unsentError(EventData eventData, Map<ChannelType, Throwable> unsent) {
+        List<ChannelType> retry = unsent.entrySet().stream()
+                .filter(failure -> mayPassLater(failure.getValue()))
+                .map(Map.Entry::getKey)
+                .sorted()
+                .toList();
+        if (retry.isEmpty()) {
+            return unsent.values().iterator().next();
+        }
+        unsent.forEach((channel, error) -> {
+            if (!mayPassLater(error)) {
+                log.error("Dropping {} of {} event for user {}", channel, eventData.getEventType(),
+                        eventData.getUserId(), error);
+            }
+        });
+        return new UnsentChannelsException(retry, unsent.get(retry.get(0)));
+    }
+
+    /**
+     * Processes a batch of events, in parallel across users but in arrival order for any one user,
+     * and reports which failed. Once one of a user's events fails in a way that may pass later, that
+     * user's later events are not attempted and are reported for retry too, so they stay in order.
+     * An event dispatched to some of its channels is reported for retry with the channels still to
+     * send, so sending it again does not repeat the ones that went out.
+     */
+    public Mono<TriggerBatchResult> processEvents(List<EventData> events) {
+        Map<String, List<Integer>> byUser = IntStream.range(0, events.size()).boxed()
+                .collect(Collectors.groupingBy(position -> Objects.toString(events.get(position).getUserId(), ""),
+                        LinkedHashMap::new, Collectors.toList()));
+        return Flux.fromIterable(byUser.values())
+                .flatMap(positions -> processInOrder(events, positions))
+                .reduce(new TriggerBatchResult(0, new ArrayList<>(), new ArrayList<>(), new HashMap<>()), (total, result) -> {
+                    total.setProcessed(total.getProcessed() + result.getProcessed());
+                    total.getRetry().addAll(result.getRetry());
+                    total.getFailed().addAll(result.getFailed());
+                    total.getUnsentChannels().putAll(result.getUnsentChannels());
+                    return total;
+                });
+    }
+
+    private Mono<TriggerBatchResult> processInOrder(List<EventData> events, List<Integer> positions) {
+        TriggerBatchResult result = new TriggerBatchResult(0, new ArrayList<>(), new ArrayList<>(), new HashMap<>());
+        return Flux.fromIterable(positions)
+                .concatMap(position -> {
+                    if (!result.getRetry().isEmpty()) {
+                        result.getRetry().add(position);
+                        return Mono.empty();
+                    }
+                    EventData event = events.get(position);
+                    return processEvent(event)
+                            .doOnSuccess(ignored -> result.setProcessed(result.getProcessed() + 1))
+                            .onErrorResume(e -> {
+                                boolean retry = mayPassLater(e);
+                                log.error("Failed to process {} event for user {}{}", event.getEventType(),
+                                        event.getUserId(), retry ? ", reporting it for retry" : "", e);
+                                (retry ? result.getRetry() : result.getFailed()).add(position);
+                                if (e instanceof UnsentChannelsException partlySent) {
+                                    result.getUnsentChannels().put(position, partlySent.getChannels());
+                                }
+                                return Mono.empty();
                             });
-                }).then();
+                })
+                .then(Mono.just(result));
+    }
+
+    /**
+     * Whether processing failed on a downstream service being unreachable, overloaded or failing,
+     * rather than on the event itself.
+     */
+    private static boolean mayPassLater(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException
+                || error instanceof UnsentChannelsException
+                || error instanceof DownstreamUnavailableException
+                || error instanceof TimeoutException;
     }
 
     private String determineCategory(String eventType) {
@@ -64,12 +193,4 @@ public class OrchestratorService {
             return "MARKETING";
         }
     }
-
-    private String renderTemplate(String template, Map<String, Object> data) {
-        // Simple replacement, in a real scenario use a templating engine
-        for (Map.Entry<String, Object> entry : data.entrySet()) {
-            template = template.replace("{{" + entry.getKey() + "}}", String.valueOf(entry.getValue()));
-        }
-        return template;
-    }
 }
@@ -0,0 +1,126 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent preference lookups into a single POST /preferences/batch call, flushing
+ * when the batch is full or when the window opened by its first lookup has elapsed.
+ */
+@Component
+@Slf4j
+public class PreferenceBatchLoader {
+
+    private final WebClient preferenceWebClient;
+    private final DownstreamGuard preferenceGuard;
+    private final PreferenceBatchProperties properties;
+    private final DistributionSummary batchSize;
+
+    private final Object lock = new Object();
+    private List<PendingLookup> pending = new ArrayList<>();
+    private Disposable scheduledFlush;
+
+    public PreferenceBatchLoader(@Qualifier("preferenceWebClient") WebClient preferenceWebClient,
+                                 @Qualifier("preferenceGuard") DownstreamGuard preferenceGuard,
+                                 PreferenceBatchProperties properties, MeterRegistry meterRegistry) {
+        this.preferenceWebClient = preferenceWebClient;
+        this.preferenceGuard = preferenceGuard;
+        this.properties = properties;
+        this.batchSize = DistributionSummary.builder("orchestrator.preference.batch.size")
+                .description("Distinct (userId, category) lookups per batch call")
+                .register(meterRegistry);
+    }
+
+    public Mono<List<UserPreferenceResponse>> load(String userId, String category) {
+        return Mono.create(sink -> enqueue(new PendingLookup(new PreferenceKey(userId, category), sink)));
+    }
+
+    private void enqueue(PendingLookup lookup) {
+        List<PendingLookup> batch = null;
+        synchronized (lock) {
+            pending.add(lookup);
+            if (pending.size() >= properties.getMaxBatchSize()) {
+                batch = drain();
+            } else if (pending.size() == 1) {
+                scheduledFlush = Schedulers.parallel().schedule(this::flushWindow,
+                        properties.getWindow().toNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+        if (batch != null) {
+            execute(batch);
+        }
+    }
+
+    private void flushWindow() {
+        List<PendingLookup> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = drain();
+        }
+        execute(batch);
+    }
+
+    // Must hold lock
+    private List<PendingLookup> drain() {
+        List<PendingLookup> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.dispose();
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void execute(List<PendingLookup> batch) {
+        Set<PreferenceKey> keys = new LinkedHashSet<>();
+        for (PendingLookup lookup : batch) {
+            keys.add(lookup.key());
+        }
+        batchSize.record(keys.size());
+
+        // A batch lookup only reads, so it may be hedged like a GET
+        preferenceGuard.hedged(() -> preferenceWebClient.post()
+                        .uri("/preferences/batch")
+                        .bodyValue(keys)
+                        .retrieve()
+                        .bodyToFlux(PreferenceLookupResult.class)
+                        .collectMap(result -> new PreferenceKey(result.getUserId(), result.getCategory()),
+                                PreferenceLookupResult::getPreferences))
+                .subscribe(results -> complete(batch, results), error -> fail(batch, error));
+    }
+
+    private void complete(List<PendingLookup> batch, Map<PreferenceKey, List<UserPreferenceResponse>> results) {
+        for (PendingLookup lookup : batch) {
+            List<UserPreferenceResponse> preferences = results.get(lookup.key());
+            lookup.sink().success(preferences != null ? preferences : Collections.emptyList());
+        }
+    }
+
+    private void fail(List<PendingLookup> batch, Throwable error) {
+        log.warn("Preference batch of {} lookups failed: {}", batch.size(), error.getMessage());
+        for (PendingLookup lookup : batch) {
+            lookup.sink().error(error);
+        }
+    }
+
+    private record PendingLookup(PreferenceKey key, MonoSink<List<UserPreferenceResponse>> sink) {
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.preference-batch")
+public class PreferenceBatchProperties {
+    private int maxBatchSize = 200;
+    // How long the first lookup of a batch waits for others to join it
+    private Duration window = Duration.ofMillis(5);
+}
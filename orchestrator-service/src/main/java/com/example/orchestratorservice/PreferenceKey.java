@@ -0,0 +1,4 @@
+package com.example.orchestratorservice;
+
+public record PreferenceKey(String userId, String category) {
+}
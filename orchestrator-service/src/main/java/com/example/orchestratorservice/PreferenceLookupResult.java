@@ -0,0 +1,12 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PreferenceLookupResult {
+    private String userId;
+    private String category;
+    private List<UserPreferenceResponse> preferences;
+}
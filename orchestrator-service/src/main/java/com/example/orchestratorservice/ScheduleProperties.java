@@ -0,0 +1,26 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.schedule")
+public class ScheduleProperties {
+    // Notifications due within this horizon are claimed and held in the timing wheel, later ones only in the database
+    private Duration memoryHorizon = Duration.ofHours(1);
+    // How often the store is looked at for notifications coming within the horizon or left by another instance
+    private Duration claimInterval = Duration.ofSeconds(1);
+    private int claimBatchSize = 1000;
+    // Release granularity; nothing is released early, and at most this late unless there is a backlog
+    private Duration tick = Duration.ofMillis(100);
+    private int wheelSize = 512;
+    // Most notifications released per second; a burst falling due at once drains at this rate. Kept to
+    // the dispatcher's default SMTP rate, and lowered further while the dispatcher turns them away
+    private int releaseRate = 200;
+    private int dispatchConcurrency = 4;
+    // Delay before a notification whose template could not be fetched is released again, doubling up to the max
+    private Duration retryInitialInterval = Duration.ofSeconds(1);
+    private Duration retryMaxInterval = Duration.ofMinutes(5);
+}
@@ -0,0 +1,123 @@
+package com.example.orchestratorservice;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Keeps scheduled notifications in the orchestrator database until they have been released, shared
+ * by every replica. Each row is held by the instance that has it in memory, or by none while it is
+ * still beyond every instance's memory horizon. Rows held by an instance without a live
+ * {@link InstanceLease} are claimed again by whichever instance looks next.
+ */
+@Component
+@Slf4j
+public class ScheduleStore {
+
+    private static final String TABLE = "scheduled_notifications";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrchestratorSchema schema;
+    private final InstanceLease lease;
+    private final ObjectMapper objectMapper;
+    private final RowMapper<TimingWheel.Entry<ScheduledNotification>> entryMapper;
+
+    public ScheduleStore(JdbcTemplate jdbcTemplate, OrchestratorSchema schema, InstanceLease lease,
+                         ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.schema = schema;
+        this.lease = lease;
+        this.objectMapper = objectMapper;
+        this.entryMapper = (rs, rowNum) -> {
+            ScheduledNotification notification = read(rs.getString("notification"));
+            return notification != null ? new TimingWheel.Entry<>(rs.getTimestamp("due_at").getTime(), notification) : null;
+        };
+    }
+
+    @PostConstruct
+    void prepare() {
+        schema.ensureTable(TABLE, "CREATE TABLE " + TABLE + " (" +
+                "notification_id uuid PRIMARY KEY, " +
+                "due_at timestamptz NOT NULL, " +
+                // Instance holding it in memory; null while no instance has claimed it
+                "owner text, " +
+                "notification jsonb NOT NULL); " +
+                "CREATE INDEX " + TABLE + "_due_at_idx ON " + TABLE + " (due_at)");
+    }
+
+    /**
+     * Stores a notification falling due at {@code dueAt}, held by {@code owner} or by none. Returns
+     * false when one with the same id is already stored, as for a request sent twice.
+     */
+    public boolean add(ScheduledNotification notification, Instant dueAt, String owner) {
+        return jdbcTemplate.update("INSERT INTO " + TABLE + " (notification_id, due_at, owner, notification) " +
+                        "VALUES (?, ?, ?, ?::jsonb) ON CONFLICT (notification_id) DO NOTHING",
+                notification.getNotificationId(), utc(dueAt), owner, write(notification)) > 0;
+    }
+
+    /**
+     * Claims, for {@code owner}, up to {@code limit} notifications due before {@code horizon} that no
+     * live instance holds, earliest first, each with its due time.
+     */
+    public List<TimingWheel.Entry<ScheduledNotification>> claimDue(Instant horizon, String owner, int limit) {
+        // SKIP LOCKED leaves rows another instance is claiming at the same moment to that one
+        return jdbcTemplate.query("UPDATE " + TABLE + " SET owner = ? " +
+                        "WHERE notification_id IN (SELECT s.notification_id FROM " + TABLE + " s " +
+                        "WHERE s.due_at < ? AND (s.owner IS NULL OR NOT " + lease.isLive("s.owner") + ") " +
+                        "ORDER BY s.due_at LIMIT ? FOR UPDATE SKIP LOCKED) " +
+                        "RETURNING due_at, notification",
+                entryMapper, owner, utc(horizon), limit).stream().filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Replaces a stored notification, as when only some of its channels are left to send.
+     */
+    public void update(ScheduledNotification notification) {
+        jdbcTemplate.update("UPDATE " + TABLE + " SET notification = ?::jsonb WHERE notification_id = ?",
+                write(notification), notification.getNotificationId());
+    }
+
+    public void delete(Collection<UUID> notificationIds) {
+        if (notificationIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(connection -> {
+            var statement = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE notification_id = ANY (?)");
+            statement.setArray(1, connection.createArrayOf("uuid", notificationIds.toArray()));
+            return statement;
+        });
+    }
+
+    private static OffsetDateTime utc(Instant instant) {
+        return instant.atOffset(ZoneOffset.UTC);
+    }
+
+    private String write(ScheduledNotification notification) {
+        try {
+            return objectMapper.writeValueAsString(notification);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not store scheduled notification " + notification.getNotificationId(), e);
+        }
+    }
+
+    private ScheduledNotification read(String json) {
+        try {
+            return objectMapper.readValue(json, ScheduledNotification.class);
+        } catch (JsonProcessingException e) {
+            log.error("Skipping unreadable scheduled notification {}", json, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+@Data
+public class ScheduledNotification {
+    // Assigned by the gateway for requests it took in; otherwise on arrival
+    private UUID notificationId;
+    private String userId;
+    private String templateName;
+    private List<ChannelType> channels;
+    private String language;
+    private Map<String, Object> data;
+    // Sent straight away when missing or already past
+    private Instant scheduleAt;
+}
@@ -0,0 +1,16 @@
+package com.example.orchestratorservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.UUID;
+
+@Data
+@AllArgsConstructor
+public class ScheduledNotificationResponse {
+    private UUID notificationId;
+    // SCHEDULED, or QUEUED when it was sent straight away
+    private String status;
+    private Instant scheduleAt;
+}
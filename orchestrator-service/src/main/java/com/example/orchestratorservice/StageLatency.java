@@ -0,0 +1,76 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long each stage of an event-triggered notification took, as
+ * notification.stage.latency tagged by stage, channel and event type. The dispatcher records its
+ * own stages under the same name, and the histogram buckets are the SLO thresholds configured
+ * under management.metrics.distribution.slo.notification, so one query shows which stage used up
+ * a channel's budget.
+ * <p>
+ * Event types arrive in request bodies, so past {@link #MAX_EVENT_TYPES} distinct ones the rest
+ * are recorded as "other" rather than growing the number of meters without bound.
+ */
+@Component
+public class StageLatency {
+
+    static final int MAX_EVENT_TYPES = 100;
+
+    enum Stage {
+        /**
+         * From ingestion until the orchestrator started on the event: the Kafka wait, the event
+         * processor and any events ahead of it for the same user.
+         */
+        INGEST_QUEUE,
+        TEMPLATE_FETCH,
+        PREFERENCE_FETCH,
+        RENDER,
+        /**
+         * Until the dispatcher accepted the notification onto its channel queue, retries included.
+         */
+        DISPATCH
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+    private final Set<String> eventTypes = ConcurrentHashMap.newKeySet();
+
+    public StageLatency(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(Stage stage, ChannelType channel, String eventType, long nanos) {
+        timers.computeIfAbsent(new Key(stage, channel, eventTypeTag(eventType)), this::register)
+                .record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    private String eventTypeTag(String eventType) {
+        if (eventType == null) {
+            return "unknown";
+        }
+        if (eventTypes.contains(eventType) || (eventTypes.size() < MAX_EVENT_TYPES && eventTypes.add(eventType))) {
+            return eventType;
+        }
+        return "other";
+    }
+
+    private Timer register(Key key) {
+        return Timer.builder("notification.stage.latency")
+                .description("Time an event-triggered notification spent in each stage")
+                .tag("stage", key.stage().name().toLowerCase())
+                .tag("channel", key.channel().name())
+                .tag("event_type", key.eventType())
+                .register(meterRegistry);
+    }
+
+    private record Key(Stage stage, ChannelType channel, String eventType) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "orchestrator.template-cache")
+public class TemplateCacheProperties {
+    private long maximumSize = 10_000;
+    // Upper bound on staleness if a change notification is missed
+    private Duration timeToLive = Duration.ofMinutes(10);
+    private Duration changePollInterval = Duration.ofSeconds(5);
+}
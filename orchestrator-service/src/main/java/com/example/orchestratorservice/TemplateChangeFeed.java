@@ -0,0 +1,21 @@
+package com.example.orchestratorservice;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+public class TemplateChangeFeed {
+    private long cursor;
+    private List<TemplateChange> changes;
+
+    @Data
+    public static class TemplateChange {
+        private long id;
+        private UUID templateId;
+        private String name;
+        private ChannelType channel;
+        private String language;
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.orchestratorservice;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+@Component
+@Slf4j
+public class TemplateClient {
+
+    private static final Duration CHANGE_POLL_TIMEOUT = Duration.ofSeconds(5);
+
+    private final WebClient templateWebClient;
+    private final DownstreamGuard templateGuard;
+    private final TemplateRenderer templateRenderer;
+    private final AsyncCache<TemplateKey, TemplateResponse> cache;
+    private volatile Long changeCursor;
+
+    public TemplateClient(@Qualifier("templateWebClient") WebClient templateWebClient,
+                          @Qualifier("templateGuard") DownstreamGuard templateGuard, TemplateRenderer templateRenderer,
+                          TemplateCacheProperties properties, MeterRegistry meterRegistry, TaskScheduler taskScheduler) {
+        this.templateWebClient = templateWebClient;
+        this.templateGuard = templateGuard;
+        this.templateRenderer = templateRenderer;
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync(), "templates");
+        taskScheduler.scheduleWithFixedDelay(this::pollChanges, properties.getChangePollInterval());
+    }
+
+    public Mono<TemplateResponse> getTemplate(TemplateKey key) {
+        // Concurrent misses for the same key share a single in-flight request, traced under the caller that started it
+        return Mono.deferContextual(context -> Mono.fromFuture(
+                () -> cache.get(key, (k, executor) -> fetch(k).contextWrite(context).toFuture())));
+    }
+
+    private Mono<TemplateResponse> fetch(TemplateKey key) {
+        return templateGuard.hedged(() -> templateWebClient.get()
+                .uri("/templates/search?name={name}&channel={channel}&language={language}",
+                        key.name(), key.channel(), key.language())
+                .retrieve()
+                .bodyToMono(TemplateResponse.class));
+    }
+
+    void pollChanges() {
+        Long after = changeCursor;
+        try {
+            TemplateChangeFeed feed = templateWebClient.get()
+                    .uri(after == null ? "/templates/changes" : "/templates/changes?after={after}", after)
+                    .retrieve()
+                    .bodyToMono(TemplateChangeFeed.class)
+                    .block(CHANGE_POLL_TIMEOUT);
+            if (feed != null) {
+                applyChanges(after, feed);
+            }
+        } catch (Exception e) {
+            // Entries still expire by TTL while template-service is unreachable
+            log.warn("Could not poll template changes after cursor {}: {}", after, e.getMessage());
+        }
+    }
+
+    private void applyChanges(Long after, TemplateChangeFeed feed) {
+        if (after != null && feed.getCursor() < after) {
+            log.info("Template change feed restarted at {} (was {}), invalidating all cached templates",
+                    feed.getCursor(), after);
+            cache.synchronous().invalidateAll();
+        }
+        for (TemplateChangeFeed.TemplateChange change : feed.getChanges()) {
+            cache.synchronous().invalidate(new TemplateKey(change.getName(), change.getChannel(), change.getLanguage()));
+            templateRenderer.evict(change.getTemplateId());
+        }
+        changeCursor = feed.getCursor();
+    }
+}
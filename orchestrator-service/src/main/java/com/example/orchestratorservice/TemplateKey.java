@@ -0,0 +1,4 @@
+package com.example.orchestratorservice;
+
+public record TemplateKey(String name, ChannelType channel, String language) {
+}
@@ -0,0 +1,50 @@
+package com.example.orchestratorservice;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class TemplateRenderer {
+
+    private final Map<UUID, CompiledMessageTemplate> compiledTemplates = new ConcurrentHashMap<>();
+
+    public MessageContent render(TemplateResponse template, Map<String, Object> data) {
+        Map<String, Object> values = data != null ? data : Collections.emptyMap();
+        CompiledMessageTemplate compiled = compiledFor(template);
+        return new MessageContent(compiled.subject().render(values), compiled.body().render(values));
+    }
+
+    public void evict(UUID templateId) {
+        if (templateId != null) {
+            compiledTemplates.remove(templateId);
+        }
+    }
+
+    private CompiledMessageTemplate compiledFor(TemplateResponse template) {
+        if (template.getId() == null) {
+            return CompiledMessageTemplate.compile(template);
+        }
+        // Templates are compiled once per (id, updatedAt); an edited template simply replaces its entry
+        CompiledMessageTemplate cached = compiledTemplates.get(template.getId());
+        if (cached == null || !Objects.equals(cached.updatedAt(), template.getUpdatedAt())) {
+            cached = CompiledMessageTemplate.compile(template);
+            compiledTemplates.put(template.getId(), cached);
+        }
+        return cached;
+    }
+
+    private record CompiledMessageTemplate(LocalDateTime updatedAt, CompiledTemplate subject, CompiledTemplate body) {
+
+        static CompiledMessageTemplate compile(TemplateResponse template) {
+            return new CompiledMessageTemplate(template.getUpdatedAt(),
+                    CompiledTemplate.compile(template.getSubject()),
+                    CompiledTemplate.compile(template.getBody()));
+        }
+    }
+}
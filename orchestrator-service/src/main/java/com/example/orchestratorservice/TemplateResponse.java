@@ -2,9 +2,14 @@ package com.example.orchestratorservice;
 
 import lombok.Data;
 
+import java.time.LocalDateTime;
+import java.util.UUID;
+
 @Data
 public class TemplateResponse {
+    private UUID id;
     private String subject;
     private String body;
     private String language;
+    private LocalDateTime updatedAt;
 }
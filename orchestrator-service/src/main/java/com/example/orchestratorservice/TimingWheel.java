@@ -0,0 +1,116 @@
+package com.example.orchestratorservice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has {@code wheelSize} slots of one tick each; every level above
+ * has slots as wide as the whole level below it, and levels are added as later due times need them.
+ * Adding an item is a slot calculation and a list append. Each tick expires one level-0 slot, and when
+ * a higher-level slot comes due its items are moved down a level, so an item is touched once per
+ * level at most. Items are released within one tick after they fall due, never before.
+ * <p>
+ * Not thread-safe; the owner serialises {@link #add} and {@link #advance}.
+ */
+final class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final List<Level<T>> levels = new ArrayList<>();
+    // Start of the level-0 slot that expires next, always a multiple of tickMillis
+    private long currentTime;
+    private int size;
+
+    TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMillis - Math.floorMod(startMillis, tickMillis);
+        levels.add(new Level<>(tickMillis, wheelSize));
+    }
+
+    /**
+     * Schedules an item, or returns false without keeping it if it is already due.
+     */
+    boolean add(long dueAt, T item) {
+        if (dueAt < currentTime) {
+            return false;
+        }
+        place(new Entry<>(dueAt, item));
+        size++;
+        return true;
+    }
+
+    /**
+     * Moves the wheel up to {@code now}, passing every item due by then to {@code expired}.
+     */
+    void advance(long now, Consumer<Entry<T>> expired) {
+        while (now >= currentTime + tickMillis) {
+            List<Entry<T>> due = levels.get(0).take(currentTime);
+            size -= due.size();
+            due.forEach(expired);
+            currentTime += tickMillis;
+            // Top-down, so items cascading two levels land in a slot that is cascaded next
+            for (int i = levels.size() - 1; i > 0; i--) {
+                Level<T> level = levels.get(i);
+                if (currentTime % level.tickMillis == 0) {
+                    for (Entry<T> entry : level.take(currentTime)) {
+                        place(entry);
+                    }
+                }
+            }
+        }
+    }
+
+    long currentTime() {
+        return currentTime;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void place(Entry<T> entry) {
+        for (int i = 0; ; i++) {
+            if (i == levels.size()) {
+                levels.add(new Level<>(levels.get(i - 1).tickMillis * wheelSize, wheelSize));
+            }
+            Level<T> level = levels.get(i);
+            // A level covers wheelSize slots from the start of its current slot
+            long levelStart = currentTime - currentTime % level.tickMillis;
+            if (entry.dueAt() < levelStart + level.tickMillis * wheelSize) {
+                level.slot(entry.dueAt()).add(entry);
+                return;
+            }
+        }
+    }
+
+    record Entry<T>(long dueAt, T item) {
+    }
+
+    private static final class Level<T> {
+        private final long tickMillis;
+        private final List<Entry<T>>[] slots;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMillis, int wheelSize) {
+            this.tickMillis = tickMillis;
+            this.slots = new List[wheelSize];
+        }
+
+        List<Entry<T>> slot(long time) {
+            int index = (int) ((time / tickMillis) % slots.length);
+            if (slots[index] == null) {
+                slots[index] = new ArrayList<>();
+            }
+            return slots[index];
+        }
+
+        List<Entry<T>> take(long time) {
+            int index = (int) ((time / tickMillis) % slots.length);
+            List<Entry<T>> entries = slots[index];
+            slots[index] = null;
+            return entries != null ? entries : List.of();
+        }
+    }
+}
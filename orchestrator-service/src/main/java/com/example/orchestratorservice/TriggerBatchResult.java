@@ -0,0 +1,21 @@
+package com.example.orchestratorservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TriggerBatchResult {
+    private int processed;
+    // Positions in the batch that failed but may pass if sent again, with the same user's later events
+    private List<Integer> retry;
+    // Positions in the batch that failed for good
+    private List<Integer> failed;
+    // Of the retry positions, those dispatched to some channels already, with the channels still to send
+    private Map<Integer, List<ChannelType>> unsentChannels;
+}
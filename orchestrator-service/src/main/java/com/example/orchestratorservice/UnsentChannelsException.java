@@ -0,0 +1,20 @@
+package com.example.orchestratorservice;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Some of an event's channels could not be dispatched for now, while the rest may already have been.
+ * Sending the event again for {@link #getChannels()} only does not repeat the others.
+ */
+@Getter
+public class UnsentChannelsException extends RuntimeException {
+
+    private final List<ChannelType> channels;
+
+    public UnsentChannelsException(List<ChannelType> channels, Throwable cause) {
+        super("Could not dispatch " + channels + " for now: " + cause.getMessage(), cause);
+        this.channels = channels;
+    }
+}
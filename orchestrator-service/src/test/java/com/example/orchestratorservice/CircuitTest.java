@@ -0,0 +1,93 @@
+package com.example.orchestratorservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitTest {
+
+    @Test
+    void opensOnceTheFailureRateReachesTheThreshold() {
+        Circuit circuit = circuit(1);
+
+        circuit.onResult(circuit.tryAcquire(), false);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.CLOSED);
+        circuit.onResult(circuit.tryAcquire(), true);
+
+        assertThat(circuit.state()).isEqualTo(Circuit.State.OPEN);
+    }
+
+    @Test
+    void admitsExactlyTheHalfOpenTrialsUntilTheyFinish() {
+        Circuit circuit = circuit(1);
+        open(circuit);
+
+        long trial = circuit.tryAcquire();
+        assertThat(trial).isNotEqualTo(Circuit.REJECTED);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.HALF_OPEN);
+        assertThat(circuit.tryAcquire()).isEqualTo(Circuit.REJECTED);
+
+        circuit.onResult(trial, false);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.CLOSED);
+    }
+
+    @Test
+    void aCancelledTrialFreesItsPlace() {
+        Circuit circuit = circuit(1);
+        open(circuit);
+
+        long trial = circuit.tryAcquire();
+        circuit.onCancel(trial);
+
+        assertThat(circuit.tryAcquire()).isEqualTo(trial);
+    }
+
+    @Test
+    void aResultFromAnEarlierGenerationDoesNotCloseAReopenedCircuit() {
+        Circuit circuit = circuit(2);
+        open(circuit);
+        long first = circuit.tryAcquire();
+        long second = circuit.tryAcquire();
+
+        circuit.onResult(second, true);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.OPEN);
+        circuit.onResult(first, false);
+        circuit.onResult(first, false);
+
+        assertThat(circuit.state()).isEqualTo(Circuit.State.OPEN);
+    }
+
+    @Test
+    void aCallStartedWhileClosedDoesNotDecideAHalfOpenTrial() {
+        Circuit circuit = circuit(1);
+        long startedClosed = circuit.tryAcquire();
+        open(circuit);
+        long trial = circuit.tryAcquire();
+
+        circuit.onResult(startedClosed, false);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.HALF_OPEN);
+        assertThat(circuit.tryAcquire()).isEqualTo(Circuit.REJECTED);
+
+        circuit.onResult(trial, true);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.OPEN);
+    }
+
+    private static void open(Circuit circuit) {
+        circuit.onResult(circuit.tryAcquire(), true);
+        circuit.onResult(circuit.tryAcquire(), true);
+        assertThat(circuit.state()).isEqualTo(Circuit.State.OPEN);
+    }
+
+    // Goes half-open on the first call after opening
+    private static Circuit circuit(int halfOpenCalls) {
+        DownstreamClientProperties.CircuitBreaker settings = new DownstreamClientProperties.CircuitBreaker();
+        settings.setFailureRateThreshold(50);
+        settings.setSlidingWindowSize(2);
+        settings.setMinimumCalls(2);
+        settings.setOpenDuration(Duration.ZERO);
+        settings.setHalfOpenCalls(halfOpenCalls);
+        return new Circuit(settings);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.orchestratorservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompiledTemplateTest {
+
+    private static final Map<String, Object> DATA = Map.of("name", "Jane", "orderId", 12345);
+
+    @Test
+    void fillsPlaceholdersAndKeepsUnknownOnes() {
+        CompiledTemplate template = CompiledTemplate.compile("Hi {{name}}, order {{orderId}} ships with {{carrier}}.");
+
+        assertThat(template.placeholderCount()).isEqualTo(3);
+        assertThat(template.render(DATA)).isEqualTo("Hi Jane, order 12345 ships with {{carrier}}.");
+    }
+
+    @Test
+    void treatsAnUnclosedOpeningAsText() {
+        assertThat(CompiledTemplate.compile("Hi {{ there {{name}}").render(DATA)).isEqualTo("Hi {{ there Jane");
+        assertThat(CompiledTemplate.compile("{{{name}}}").render(DATA)).isEqualTo("{Jane}");
+        assertThat(CompiledTemplate.compile("{{name}} and {{").render(DATA)).isEqualTo("Jane and {{");
+        assertThat(CompiledTemplate.compile("}} {{name}}").render(DATA)).isEqualTo("}} Jane");
+    }
+
+    @Test
+    void rendersAsTheReplaceLoopItSupersedes() {
+        String[] sources = {
+                "", "plain text", "{{name}}", "{{name}}{{orderId}}", "{{ {{name}} }}", "{{{{name}}}}",
+                "Dear {{name}}, {{ oops {{orderId}} {{missing}} {{", "{{}} {{name}", "{{na{{name}}me}}"
+        };
+        for (String source : sources) {
+            assertThat(CompiledTemplate.compile(source).render(DATA)).as(source).isEqualTo(replaceLoop(source, DATA));
+        }
+    }
+
+    @Test
+    void rendersANullTemplateAsEmpty() {
+        assertThat(CompiledTemplate.compile(null).render(DATA)).isEmpty();
+    }
+
+    private static String replaceLoop(String template, Map<String, Object> data) {
+        for (Map.Entry<String, Object> entry : new LinkedHashMap<>(data).entrySet()) {
+            template = template.replace("{{" + entry.getKey() + "}}", String.valueOf(entry.getValue()));
+        }
+        return template;
+    }
+}
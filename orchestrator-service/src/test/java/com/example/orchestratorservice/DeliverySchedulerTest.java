@@ -0,0 +1,276 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import static com.example.orchestratorservice.ChannelType.EMAIL;
+import static com.example.orchestratorservice.ChannelType.SMS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DeliverySchedulerTest {
+
+    private static final String OWNER = "orchestrator-1";
+    private static final long MINUTE = Duration.ofMinutes(1).toMillis();
+
+    private final FakeStore store = new FakeStore();
+    private final FakeDispatcher dispatcher = new FakeDispatcher();
+    private final TemplateClient templateClient = mock(TemplateClient.class);
+    private final ScheduleProperties properties = new ScheduleProperties();
+    private final List<TemplateKey> templateFetches = new ArrayList<>();
+    private Function<TemplateKey, Mono<TemplateResponse>> templates = key -> Mono.just(template());
+
+    @BeforeEach
+    void setUp() {
+        properties.setTick(Duration.ofMillis(100));
+        when(templateClient.getTemplate(any())).thenAnswer(invocation -> {
+            TemplateKey key = invocation.getArgument(0);
+            templateFetches.add(key);
+            return templates.apply(key);
+        });
+    }
+
+    @Test
+    void releasesADueBacklogNoFasterThanTheReleaseRate() {
+        properties.setReleaseRate(10);
+        DeliveryScheduler scheduler = scheduler();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            store.stored(notification("user" + i, EMAIL), now - MINUTE);
+        }
+
+        // The first tick may carry over at most two ticks' worth, then one a tick at 10 per second
+        for (int i = 0; i <= 10; i++) {
+            scheduler.tick(now + i * 100L);
+        }
+        assertThat(dispatcher.sent()).hasSize(12);
+        assertThat(scheduler.backlogSize()).isEqualTo(18);
+
+        // A stall does not turn into a burst
+        scheduler.tick(now + 6_000);
+        assertThat(dispatcher.sent()).hasSize(14);
+    }
+
+    @Test
+    void sendsADueNotificationAheadOfTheBacklog() {
+        properties.setReleaseRate(1);
+        DeliveryScheduler scheduler = scheduler();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            store.stored(notification("campaign" + i, EMAIL), now - MINUTE);
+        }
+        scheduler.tick(now);
+        int released = dispatcher.sent().size();
+
+        ScheduledNotification sms = notification("urgent", SMS);
+        ScheduledNotificationResponse response = scheduler.schedule(sms).block();
+
+        assertThat(response.getStatus()).isEqualTo("QUEUED");
+        assertThat(dispatcher.sent()).hasSize(released + 1);
+        assertThat(dispatcher.sent().get(released).getUserId()).isEqualTo("urgent");
+        assertThat(store.deleted).contains(sms.getNotificationId());
+        assertThat(scheduler.backlogSize()).isEqualTo(100 - released);
+    }
+
+    @Test
+    void putsTurnedAwayChannelsBackAtTheHeadOfTheBacklogAndHalvesTheRate() {
+        properties.setReleaseRate(20);
+        DeliveryScheduler scheduler = scheduler();
+        long now = System.currentTimeMillis();
+        ScheduledNotification first = notification("first", EMAIL, SMS);
+        store.stored(first, now - 6 * MINUTE);
+        for (int i = 0; i < 5; i++) {
+            store.stored(notification("later" + i, EMAIL), now - 5 * MINUTE + i);
+        }
+        dispatcher.turnAway = request -> request.getUserId().equals("first") && request.getChannel() == SMS;
+
+        scheduler.tick(now);
+
+        assertThat(dispatcher.sent()).extracting(NotificationRequest::getUserId)
+                .containsExactly("first", "first", "later0", "later1", "later2");
+        assertThat(store.deleted).doesNotContain(first.getNotificationId()).hasSize(3);
+        assertThat(store.rows.get(first.getNotificationId()).notification().getChannels()).containsExactly(SMS);
+        assertThat(scheduler.currentReleaseRate()).isEqualTo(10);
+
+        dispatcher.turnAway = request -> false;
+        dispatcher.batches.clear();
+        scheduler.tick(now + 100);
+
+        // Only the channel turned away is sent again, before anything that was behind it
+        assertThat(dispatcher.sent()).singleElement().satisfies(request -> {
+            assertThat(request.getUserId()).isEqualTo("first");
+            assertThat(request.getChannel()).isEqualTo(SMS);
+        });
+        assertThat(store.deleted).contains(first.getNotificationId());
+        assertThat(scheduler.currentReleaseRate()).isEqualTo(12);
+    }
+
+    @Test
+    void triesAChannelWhoseTemplateCouldNotBeFetchedAgainAfterAGrowingDelay() {
+        properties.setRetryInitialInterval(Duration.ofMinutes(10));
+        properties.setRetryMaxInterval(Duration.ofHours(1));
+        DeliveryScheduler scheduler = scheduler();
+        long now = System.currentTimeMillis();
+        ScheduledNotification notification = notification("user", EMAIL, SMS);
+        store.stored(notification, now - MINUTE);
+        templates = key -> key.channel() == SMS
+                ? Mono.error(new IllegalStateException("template-service unavailable"))
+                : Mono.just(template());
+
+        scheduler.tick(now);
+
+        assertThat(dispatcher.sent()).extracting(NotificationRequest::getChannel).containsExactly(EMAIL);
+        assertThat(store.deleted).isEmpty();
+        assertThat(store.rows.get(notification.getNotificationId()).notification().getChannels()).containsExactly(SMS);
+        assertThat(scheduler.pending()).isEqualTo(1);
+
+        scheduler.tick(now + 9 * MINUTE);
+        assertThat(smsFetches()).isEqualTo(1);
+        scheduler.tick(now + 11 * MINUTE);
+        assertThat(smsFetches()).isEqualTo(2);
+
+        // Twice as long after the second failure; delays run from the clock, which has hardly moved here
+        scheduler.tick(now + 19 * MINUTE);
+        assertThat(smsFetches()).isEqualTo(2);
+        templates = key -> Mono.just(template());
+        scheduler.tick(now + 21 * MINUTE);
+        assertThat(smsFetches()).isEqualTo(3);
+
+        assertThat(dispatcher.sent()).extracting(NotificationRequest::getChannel).containsExactly(EMAIL, SMS);
+        assertThat(store.deleted).containsExactly(notification.getNotificationId());
+        assertThat(scheduler.pending()).isZero();
+    }
+
+    @Test
+    void deletesANotificationWhoseTemplateDoesNotExist() {
+        DeliveryScheduler scheduler = scheduler();
+        long now = System.currentTimeMillis();
+        ScheduledNotification notification = notification("user", EMAIL);
+        store.stored(notification, now - MINUTE);
+        templates = key -> Mono.empty();
+
+        scheduler.tick(now);
+
+        assertThat(dispatcher.batches).isEmpty();
+        assertThat(store.deleted).containsExactly(notification.getNotificationId());
+        assertThat(scheduler.pending()).isZero();
+        assertThat(scheduler.backlogSize()).isZero();
+    }
+
+    private DeliveryScheduler scheduler() {
+        InstanceLease lease = mock(InstanceLease.class);
+        when(lease.instanceId()).thenReturn(OWNER);
+        DeliveryScheduler scheduler = new DeliveryScheduler(store, lease, templateClient, new TemplateRenderer(),
+                dispatcher, properties, new SimpleMeterRegistry());
+        scheduler.settleScheduler = Schedulers.immediate();
+        return scheduler;
+    }
+
+    private long smsFetches() {
+        return templateFetches.stream().filter(key -> key.channel() == SMS).count();
+    }
+
+    private static ScheduledNotification notification(String userId, ChannelType... channels) {
+        ScheduledNotification notification = new ScheduledNotification();
+        notification.setNotificationId(UUID.randomUUID());
+        notification.setUserId(userId);
+        notification.setTemplateName("welcome");
+        notification.setChannels(List.of(channels));
+        notification.setLanguage("en");
+        return notification;
+    }
+
+    private static TemplateResponse template() {
+        TemplateResponse template = new TemplateResponse();
+        template.setSubject("Hello");
+        template.setBody("Hello {{name}}");
+        return template;
+    }
+
+    private record Row(long dueAt, String owner, ScheduledNotification notification) {
+    }
+
+    private static final class FakeStore extends ScheduleStore {
+        private final Map<UUID, Row> rows = new LinkedHashMap<>();
+        private final List<UUID> deleted = new ArrayList<>();
+
+        private FakeStore() {
+            super(null, null, null, null);
+        }
+
+        void stored(ScheduledNotification notification, long dueAt) {
+            rows.put(notification.getNotificationId(), new Row(dueAt, null, notification));
+        }
+
+        @Override
+        public boolean add(ScheduledNotification notification, Instant dueAt, String owner) {
+            return rows.putIfAbsent(notification.getNotificationId(),
+                    new Row(dueAt.toEpochMilli(), owner, notification)) == null;
+        }
+
+        @Override
+        public List<TimingWheel.Entry<ScheduledNotification>> claimDue(Instant horizon, String owner, int limit) {
+            List<Row> due = rows.values().stream()
+                    .filter(row -> row.owner() == null && row.dueAt() < horizon.toEpochMilli())
+                    .sorted(Comparator.comparingLong(Row::dueAt))
+                    .limit(limit)
+                    .toList();
+            due.forEach(row -> rows.put(row.notification().getNotificationId(), new Row(row.dueAt(), owner, row.notification())));
+            return due.stream().map(row -> new TimingWheel.Entry<>(row.dueAt(), row.notification())).toList();
+        }
+
+        @Override
+        public void update(ScheduledNotification notification) {
+            rows.computeIfPresent(notification.getNotificationId(), (id, row) -> new Row(row.dueAt(), row.owner(), notification));
+        }
+
+        @Override
+        public void delete(Collection<UUID> notificationIds) {
+            notificationIds.forEach(rows::remove);
+            deleted.addAll(notificationIds);
+        }
+    }
+
+    // Takes every request except those it is told to turn away, as an overloaded dispatcher would
+    private static final class FakeDispatcher extends DispatcherClient {
+        private final List<List<NotificationRequest>> batches = new ArrayList<>();
+        private Predicate<NotificationRequest> turnAway = request -> false;
+
+        private FakeDispatcher() {
+            super(null, null, new DispatchProperties());
+        }
+
+        @Override
+        public Mono<DispatchBatchResult> dispatchBatch(List<NotificationRequest> requests, int concurrency) {
+            batches.add(List.copyOf(requests));
+            List<Integer> rejected = new ArrayList<>();
+            for (int i = 0; i < requests.size(); i++) {
+                if (turnAway.test(requests.get(i))) {
+                    rejected.add(i);
+                }
+            }
+            return Mono.just(new DispatchBatchResult(requests.size() - rejected.size(), rejected, new ArrayList<>()));
+        }
+
+        List<NotificationRequest> sent() {
+            return batches.stream().flatMap(List::stream).toList();
+        }
+    }
+}
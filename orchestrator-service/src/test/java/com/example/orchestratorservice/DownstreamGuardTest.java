@@ -0,0 +1,102 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownstreamGuardTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DownstreamClientProperties.ServiceClient settings = new DownstreamClientProperties.ServiceClient();
+
+    @Test
+    void releasesThePermitWhenTheCallFails() {
+        settings.getBulkhead().setMaxConcurrentCalls(1);
+        DownstreamGuard guard = guard();
+
+        StepVerifier.create(guard.call(() -> Mono.error(new IllegalStateException("boom"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        assertThat(inFlight()).isZero();
+        StepVerifier.create(guard.call(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    }
+
+    @Test
+    void releasesThePermitWhenTheCallIsCancelled() {
+        settings.getBulkhead().setMaxConcurrentCalls(1);
+        DownstreamGuard guard = guard();
+
+        StepVerifier.create(guard.call(Mono::never))
+                .expectSubscription()
+                .then(() -> StepVerifier.create(guard.call(() -> Mono.just("refused")))
+                        .expectError(DownstreamUnavailableException.class)
+                        .verify())
+                .thenCancel()
+                .verify();
+
+        assertThat(inFlight()).isZero();
+        StepVerifier.create(guard.call(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    }
+
+    @Test
+    void letsExactlyOneTrialThroughWhileHalfOpen() {
+        DownstreamClientProperties.CircuitBreaker circuitBreaker = settings.getCircuitBreaker();
+        circuitBreaker.setSlidingWindowSize(1);
+        circuitBreaker.setMinimumCalls(1);
+        circuitBreaker.setOpenDuration(Duration.ZERO);
+        circuitBreaker.setHalfOpenCalls(1);
+        DownstreamGuard guard = guard();
+        StepVerifier.create(guard.call(() -> Mono.error(new IllegalStateException("down"))))
+                .expectError(IllegalStateException.class)
+                .verify();
+
+        StepVerifier.create(guard.call(Mono::never))
+                .expectSubscription()
+                .then(() -> StepVerifier.create(guard.call(() -> Mono.just("second trial")))
+                        .expectError(DownstreamUnavailableException.class)
+                        .verify())
+                .thenCancel()
+                .verify();
+
+        // The cancelled trial gave its place back
+        StepVerifier.create(guard.call(() -> Mono.just("ok"))).expectNext("ok").verifyComplete();
+    }
+
+    @Test
+    void cancelsTheLosingAttemptOfAHedgedCall() {
+        settings.getHedge().setEnabled(true);
+        settings.getHedge().setMinDelay(Duration.ofMillis(20));
+        DownstreamGuard guard = guard();
+        AtomicInteger attempts = new AtomicInteger();
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+
+        StepVerifier.create(guard.hedged(() -> attempts.getAndIncrement() == 0
+                        ? Mono.<String>never().doOnCancel(() -> primaryCancelled.set(true))
+                        : Mono.just("hedge")))
+                .expectNext("hedge")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(2);
+        assertThat(primaryCancelled).isTrue();
+        assertThat(inFlight()).isZero();
+        assertThat(meterRegistry.get("orchestrator.downstream.hedges").tag("outcome", "won").counter().count())
+                .isEqualTo(1);
+    }
+
+    private DownstreamGuard guard() {
+        return new DownstreamGuard("test", settings, meterRegistry);
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("orchestrator.downstream.in_flight").gauge().value();
+    }
+}
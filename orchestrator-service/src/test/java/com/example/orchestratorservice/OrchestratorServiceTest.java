@@ -0,0 +1,116 @@
+package com.example.orchestratorservice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.orchestratorservice.ChannelType.EMAIL;
+import static com.example.orchestratorservice.ChannelType.PUSH;
+import static com.example.orchestratorservice.ChannelType.SMS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OrchestratorServiceTest {
+
+    private final TemplateClient templateClient = mock(TemplateClient.class);
+    private final PreferenceBatchLoader preferenceBatchLoader = mock(PreferenceBatchLoader.class);
+    private final DispatcherClient dispatcherClient = mock(DispatcherClient.class);
+    private final List<ChannelType> dispatched = new ArrayList<>();
+    private final Map<ChannelType, RuntimeException> failing = new HashMap<>();
+    private OrchestratorService service;
+
+    @BeforeEach
+    void setUp() {
+        TemplateResponse template = new TemplateResponse();
+        template.setSubject("Order placed");
+        template.setBody("Thanks");
+        when(templateClient.getTemplate(any())).thenReturn(Mono.just(template));
+        when(preferenceBatchLoader.load(anyString(), anyString()))
+                .thenReturn(Mono.just(List.of(enabled(EMAIL), enabled(SMS), enabled(PUSH))));
+        when(dispatcherClient.dispatch(any())).thenAnswer(invocation -> {
+            ChannelType channel = invocation.<NotificationRequest>getArgument(0).getChannel();
+            dispatched.add(channel);
+            return failing.containsKey(channel) ? Mono.error(failing.get(channel)) : Mono.empty();
+        });
+        service = new OrchestratorService(new TemplateRenderer(), templateClient, preferenceBatchLoader,
+                dispatcherClient, new StageLatency(new SimpleMeterRegistry()),
+                new NotificationObservations(ObservationRegistry.NOOP));
+    }
+
+    @Test
+    void reportsOnlyTheChannelsThatWereNotDispatchedForRetry() {
+        failing.put(SMS, unavailable());
+
+        TriggerBatchResult result = service.processEvents(List.of(event())).block();
+
+        assertThat(dispatched).containsExactlyInAnyOrder(EMAIL, SMS, PUSH);
+        assertThat(result.getRetry()).containsExactly(0);
+        assertThat(result.getUnsentChannels()).containsExactly(Map.entry(0, List.of(SMS)));
+
+        dispatched.clear();
+        failing.clear();
+        EventData again = event();
+        again.setChannels(result.getUnsentChannels().get(0));
+        TriggerBatchResult retried = service.processEvents(List.of(again)).block();
+
+        assertThat(dispatched).containsExactly(SMS);
+        assertThat(retried.getProcessed()).isEqualTo(1);
+        assertThat(retried.getRetry()).isEmpty();
+    }
+
+    @Test
+    void dropsAChannelThatFailedForGoodAndRetriesTheRest() {
+        failing.put(SMS, unavailable());
+        failing.put(PUSH, WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request",
+                null, null, null));
+
+        TriggerBatchResult result = service.processEvents(List.of(event())).block();
+
+        assertThat(result.getRetry()).containsExactly(0);
+        assertThat(result.getUnsentChannels()).containsExactly(Map.entry(0, List.of(SMS)));
+    }
+
+    @Test
+    void failsAnEventWhoseEveryUnsentChannelFailedForGood() {
+        failing.put(PUSH, WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request",
+                null, null, null));
+
+        TriggerBatchResult result = service.processEvents(List.of(event())).block();
+
+        assertThat(result.getFailed()).containsExactly(0);
+        assertThat(result.getRetry()).isEmpty();
+        assertThat(result.getUnsentChannels()).isEmpty();
+    }
+
+    private static WebClientResponseException unavailable() {
+        return WebClientResponseException.create(HttpStatus.SERVICE_UNAVAILABLE.value(), "Service Unavailable",
+                null, null, null);
+    }
+
+    private static EventData event() {
+        EventData event = new EventData();
+        event.setEventType("ORDER_PLACED");
+        event.setUserId("user1");
+        event.setData(Map.of());
+        return event;
+    }
+
+    private static UserPreferenceResponse enabled(ChannelType channel) {
+        UserPreferenceResponse preference = new UserPreferenceResponse();
+        preference.setChannel(channel);
+        preference.setEnabled(true);
+        return preference;
+    }
+}
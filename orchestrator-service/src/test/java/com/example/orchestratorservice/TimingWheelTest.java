@@ -0,0 +1,121 @@
+package com.example.orchestratorservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    @Test
+    void releasesAnItemInTheTickAfterItFallsDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 1_000);
+        List<String> released = new ArrayList<>();
+        wheel.add(1_025, "a");
+
+        wheel.advance(1_029, entry -> released.add(entry.item()));
+        assertThat(released).isEmpty();
+
+        wheel.advance(1_030, entry -> released.add(entry.item()));
+        assertThat(released).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void alignsAnUnalignedStartToTheTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 1_005);
+        List<String> released = new ArrayList<>();
+
+        assertThat(wheel.currentTime()).isEqualTo(1_000);
+        assertThat(wheel.add(1_003, "a")).isTrue();
+        wheel.advance(1_010, entry -> released.add(entry.item()));
+        assertThat(released).containsExactly("a");
+    }
+
+    @Test
+    void refusesItemsAlreadyDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 1_000);
+
+        assertThat(wheel.add(999, "late")).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void cascadesFarItemsDownThroughEveryLevel() {
+        // Four slots a level, so a due time 10^5 ticks out needs nine levels
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 4, 0);
+        long[] dueTimes = {0, 39, 40, 159, 160, 641, 10_239, 10_240, 999_999};
+        for (long dueAt : dueTimes) {
+            wheel.add(dueAt, dueAt);
+        }
+        assertThat(wheel.size()).isEqualTo(dueTimes.length);
+
+        Map<Long, Long> releasedAt = new HashMap<>();
+        for (long now = TICK; now <= 1_000_000; now += TICK) {
+            long tickEnd = now;
+            wheel.advance(now, entry -> releasedAt.put(entry.item(), tickEnd));
+        }
+
+        assertThat(wheel.size()).isZero();
+        for (long dueAt : dueTimes) {
+            assertThat(releasedAt.get(dueAt)).as("release of %d", dueAt).isEqualTo(dueAt - dueAt % TICK + TICK);
+        }
+    }
+
+    @Test
+    void releasesEverythingDueOnALongJump() {
+        TimingWheel<Long> wheel = new TimingWheel<>(TICK, 4, 0);
+        for (long dueAt = 0; dueAt < 5_000; dueAt += 7) {
+            wheel.add(dueAt, dueAt);
+        }
+        List<Long> released = new ArrayList<>();
+
+        wheel.advance(2_500, entry -> released.add(entry.item()));
+
+        assertThat(released).allMatch(dueAt -> dueAt < 2_500);
+        assertThat(released).hasSize((int) (2_500 / 7) + 1);
+        // Slots expire in order, whatever level their items were held at
+        for (int i = 1; i < released.size(); i++) {
+            assertThat(released.get(i) / TICK).isGreaterThanOrEqualTo(released.get(i - 1) / TICK);
+        }
+    }
+
+    @Test
+    void matchesASortedReferenceWhileAddingAndAdvancing() {
+        Random random = new Random(42);
+        TimingWheel<Integer> wheel = new TimingWheel<>(TICK, 8, 0);
+        Map<Integer, Long> pending = new HashMap<>();
+        int next = 0;
+        long now = 0;
+        for (int step = 0; step < 2_000; step++) {
+            // Items go in at every offset from the current tick, so they land on every level mid-rotation
+            for (int i = random.nextInt(5); i > 0; i--) {
+                long dueAt = wheel.currentTime() + (long) (Math.pow(random.nextDouble(), 3) * 200_000);
+                assertThat(wheel.add(dueAt, next)).isTrue();
+                pending.put(next++, dueAt);
+            }
+            now += random.nextInt(3) == 0 ? random.nextInt(5_000) : random.nextInt(30);
+            long current = now;
+            List<Integer> released = new ArrayList<>();
+            wheel.advance(now, entry -> {
+                assertThat(entry.dueAt()).isLessThan(current);
+                released.add(entry.item());
+            });
+
+            List<Integer> expected = pending.entrySet().stream()
+                    .filter(item -> item.getValue() - item.getValue() % TICK + TICK <= current)
+                    .map(Map.Entry::getKey)
+                    .toList();
+            assertThat(released).containsExactlyInAnyOrderElementsOf(expected);
+            released.forEach(pending::remove);
+            assertThat(wheel.size()).isEqualTo(pending.size());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.shared;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Puts the connection pool behind a {@link BoundedDataSource} of the same size, so the pool size is
+ * the explicit limit on concurrent database work however many request threads there are. Callers
+ * waiting for a connection are published as jdbc.connections.waiting.
+ */
+@Component
+public class DatabaseConcurrencyLimit implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public DatabaseConcurrencyLimit(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource pool)) {
+            return bean;
+        }
+        BoundedDataSource bounded = new BoundedDataSource(pool, pool.getMaximumPoolSize(), pool.getConnectionTimeout());
+        meterRegistry.ifAvailable(registry -> Gauge.builder("jdbc.connections.waiting", bounded, BoundedDataSource::waiting)
+                .description("Callers queued for a database connection")
+                .tag("name", beanName)
+                .register(registry));
+        return bounded;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.shared;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tracing.tail")
+public class TailSamplingProperties {
+    private boolean enabled = true;
+    // Segments at least this slow are always kept, counted from the notification's ingestion where known
+    private Duration slowThreshold = Duration.ofMillis(500);
+    // Share of the remaining traces kept; picked by trace id, so every service keeps the same ones
+    private double sampleRate = 0.001;
+    // Segments whose local root has not finished yet; past this, new ones are not traced
+    private int maxPendingSegments = 10_000;
+    // A segment whose local root has not finished after this long is given up on
+    private Duration pendingTimeout = Duration.ofSeconds(30);
+    // Kept spans are appended here as Zipkin v2 JSON, one span per line; unset writes no file
+    private String exportFile;
+    // Kept spans waiting to be written; past this, they are dropped
+    private int exportQueueCapacity = 10_000;
+}
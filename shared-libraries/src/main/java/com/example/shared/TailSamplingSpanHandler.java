@@ -0,0 +1,257 @@
+package com.example.shared;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail-based sampling in front of the other span handlers. Every span is recorded, but finished
+ * spans are held back per local root, the part of a trace this service ran, until the local root
+ * finishes. Then the whole segment is passed on if it errored or was slow, or if its trace id falls
+ * in the sampled fraction, and dropped otherwise. Slow is measured from the notification's ingestion
+ * when a span carries {@link #INGESTED_AT}, so time spent queued upstream counts, or else by the local
+ * root's own duration. The fraction is picked from the trace id, so services keep the same traces.
+ * <p>
+ * Only sampled traces are kept whole. A segment is decided as soon as it finishes, knowing nothing of
+ * the segments other services finish later, so an error or slowness keeps only the segments that saw
+ * it: the event-processor's segment, which ends once the orchestrator accepted the batch, is dropped
+ * if it was fast even when the notification's delivery turns out slow. No flag passed downstream can
+ * undo that, so traces kept for errors or slowness are partial. The local root of each kept segment
+ * is tagged with {@link #DECISION}, the reason it was kept.
+ * <p>
+ * Segments whose local root has not finished after the pending timeout are passed on, being slow by
+ * definition. Past the pending limit, spans of new segments are dropped and counted.
+ */
+@Component
+@Slf4j
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@ConditionalOnProperty(prefix = "tracing.tail", name = "enabled", matchIfMissing = true)
+public class TailSamplingSpanHandler extends SpanHandler {
+
+    /**
+     * Span tag holding the epoch millis the notification was ingested.
+     */
+    public static final String INGESTED_AT = "notification.ingested_at";
+
+    /**
+     * Span tag on a kept segment's local root: {@code error}, {@code slow} or {@code sampled}.
+     */
+    public static final String DECISION = "tracing.tail.decision";
+
+    private static final long SAMPLE_SCALE = 1_000_000;
+
+    private final TailSamplingProperties properties;
+    private final ObjectProvider<SpanHandler> spanHandlers;
+    private final long slowThresholdMillis;
+    private final long sampleBelow;
+    private final Map<Long, Segment> pending = new ConcurrentHashMap<>();
+    // Decisions on recently finished segments, for spans that end after their local root
+    private final Map<Long, Decided> decided = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService sweeper;
+    private final MeterRegistry meterRegistry;
+    private final Counter overflow;
+    private volatile List<SpanHandler> downstream;
+
+    public TailSamplingSpanHandler(TailSamplingProperties properties, ObjectProvider<SpanHandler> spanHandlers,
+                                   MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.spanHandlers = spanHandlers;
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMillis = properties.getSlowThreshold().toMillis();
+        this.sampleBelow = Math.round(properties.getSampleRate() * SAMPLE_SCALE);
+        this.overflow = Counter.builder("tracing.tail.overflow")
+                .description("Spans dropped undecided because too many segments were pending")
+                .register(meterRegistry);
+        Gauge.builder("tracing.tail.pending", pending, Map::size)
+                .description("Segments held until their local root finishes")
+                .register(meterRegistry);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("tracing-tail-");
+        threadFactory.setDaemon(true);
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long sweepMillis = Math.max(1, properties.getPendingTimeout().toMillis() / 2);
+        sweeper.scheduleWithFixedDelay(this::sweep, sweepMillis, sweepMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause == Cause.ABANDONED) {
+            return false;
+        }
+        long localRootId = context.localRootId();
+        Decided decision = decided.get(localRootId);
+        if (decision != null) {
+            if (decision.keep()) {
+                export(List.of(new Finished(context, span)));
+            }
+        } else if (context.isLocalRoot()) {
+            Segment segment = pending.remove(localRootId);
+            List<Finished> spans = segment != null ? segment.drain() : new ArrayList<>(1);
+            spans.add(new Finished(context, span));
+            decide(localRootId, context.traceId(), spans);
+        } else {
+            Segment segment = pending.computeIfAbsent(localRootId,
+                    id -> pending.size() < properties.getMaxPendingSegments() ? new Segment() : null);
+            if (segment != null) {
+                segment.add(new Finished(context, span));
+            } else {
+                overflow.increment();
+            }
+        }
+        // Kept spans are passed on from here, so the handlers after this one never see the rest
+        return false;
+    }
+
+    private void decide(long localRootId, long traceId, List<Finished> spans) {
+        String reason = reason(traceId, spans);
+        boolean keep = reason != null;
+        decided.put(localRootId, new Decided(keep, System.currentTimeMillis()));
+        count(keep ? reason : "dropped");
+        if (keep) {
+            spans.get(spans.size() - 1).span().tag(DECISION, reason);
+            export(spans);
+        }
+    }
+
+    private String reason(long traceId, List<Finished> spans) {
+        long rootMillis = 0;
+        for (Finished finished : spans) {
+            MutableSpan span = finished.span();
+            if (isError(span)) {
+                return "error";
+            }
+            if (finished.context().isLocalRoot()) {
+                rootMillis = (span.finishTimestamp() - span.startTimestamp()) / 1000;
+            }
+            Long ingestedAt = ingestedAt(span);
+            if (ingestedAt != null && span.finishTimestamp() / 1000 - ingestedAt >= slowThresholdMillis) {
+                return "slow";
+            }
+        }
+        if (rootMillis >= slowThresholdMillis) {
+            return "slow";
+        }
+        if (Long.remainderUnsigned(traceId, SAMPLE_SCALE) < sampleBelow) {
+            return "sampled";
+        }
+        return null;
+    }
+
+    private static boolean isError(MutableSpan span) {
+        if (span.error() != null || span.tag("error") != null) {
+            return true;
+        }
+        String status = span.tag("http.status_code");
+        if (status == null) {
+            status = span.tag("status");
+        }
+        return status != null && status.length() == 3 && status.charAt(0) == '5';
+    }
+
+    private static Long ingestedAt(MutableSpan span) {
+        String value = span.tag(INGESTED_AT);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void export(List<Finished> spans) {
+        for (SpanHandler handler : downstream()) {
+            for (Finished finished : spans) {
+                try {
+                    handler.end(finished.context(), finished.span(), Cause.FINISHED);
+                } catch (RuntimeException e) {
+                    log.warn("Span handler {} failed: {}", handler, e.toString());
+                }
+            }
+        }
+    }
+
+    private List<SpanHandler> downstream() {
+        List<SpanHandler> handlers = downstream;
+        if (handlers == null) {
+            // Looked up on first use: the other handlers are built alongside the tracer that calls this one
+            handlers = spanHandlers.orderedStream().filter(handler -> handler != this).toList();
+            downstream = handlers;
+        }
+        return handlers;
+    }
+
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            long cutoff = now - properties.getPendingTimeout().toMillis();
+            pending.forEach((localRootId, segment) -> {
+                if (segment.createdAt < cutoff && pending.remove(localRootId, segment)) {
+                    Decided decision = decided.get(localRootId);
+                    // Spans that raced past their local root follow its decision; the rest timed out
+                    if (decision == null) {
+                        count("timed_out");
+                        export(segment.drain());
+                    } else if (decision.keep()) {
+                        export(segment.drain());
+                    }
+                }
+            });
+            decided.values().removeIf(decision -> decision.at() < cutoff);
+        } catch (RuntimeException e) {
+            // An exception would cancel the schedule and leave pending segments to pile up
+            log.error("Sweeping pending trace segments failed", e);
+        }
+    }
+
+    private void count(String decision) {
+        Counter.builder("tracing.tail.segments")
+                .description("Trace segments decided, by decision")
+                .tag("decision", decision)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sweeper.shutdownNow();
+    }
+
+    private static final class Segment {
+        private final long createdAt = System.currentTimeMillis();
+        private final List<Finished> spans = new ArrayList<>();
+
+        synchronized void add(Finished finished) {
+            spans.add(finished);
+        }
+
+        synchronized List<Finished> drain() {
+            return new ArrayList<>(spans);
+        }
+    }
+
+    private record Finished(TraceContext context, MutableSpan span) {
+    }
+
+    private record Decided(boolean keep, long at) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.shared;
+
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Appends finished spans to a file as Zipkin v2 JSON, one span per line, for looking at traces
+ * locally without a collector. Spans are written by a background thread; when it falls behind by
+ * more than the export queue holds, further spans are dropped and counted.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(prefix = "tracing.tail", name = "export-file")
+public class TraceFileWriter extends SpanHandler {
+
+    private final Path file;
+    private final BlockingQueue<String> queue;
+    private final Counter dropped;
+    private final Thread writer;
+
+    public TraceFileWriter(TailSamplingProperties properties, MeterRegistry meterRegistry) {
+        this.file = Path.of(properties.getExportFile());
+        this.queue = new ArrayBlockingQueue<>(properties.getExportQueueCapacity());
+        this.dropped = Counter.builder("tracing.export.dropped")
+                .description("Spans not written because the export queue was full")
+                .register(meterRegistry);
+        this.writer = new Thread(this::write, "trace-file-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("Writing kept spans to {}", file.toAbsolutePath());
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause != Cause.ABANDONED && !queue.offer(span.toString())) {
+            dropped.increment();
+        }
+        return true;
+    }
+
+    private void write() {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            while (!Thread.currentThread().isInterrupted()) {
+                String line = queue.take();
+                do {
+                    out.write(line);
+                    out.newLine();
+                } while ((line = queue.poll()) != null);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Writing spans to {} failed, no more will be written", file, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.interrupt();
+    }
+}
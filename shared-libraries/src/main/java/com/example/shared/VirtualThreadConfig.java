@@ -0,0 +1,54 @@
+package com.example.shared;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual-thread mode, switched on by spring.threads.virtual.enabled (the property Spring Boot 3.2
+ * reads for the same purpose). Tomcat then runs each request on a virtual thread of its own rather
+ * than on its fixed pool, so requests blocked on I/O no longer queue for a worker.
+ * <p>
+ * What the requests wait on stays bounded by the service: the connection pool, with
+ * {@link DatabaseConcurrencyLimit} queueing callers in front of it, or its own worker pools.
+ * Needs Java 21; on older JVMs the service keeps Tomcat's platform thread pool.
+ * <p>
+ * Off by default. On one CPU it measured eight times slower than the platform pool for a
+ * database-bound endpoint, and it has not yet been measured on more; see the README before turning
+ * it on.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.threads.virtual", name = "enabled", havingValue = "true")
+@Slf4j
+public class VirtualThreadConfig {
+
+    private volatile ExecutorService requestExecutor;
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequests() {
+        return protocolHandler -> VirtualThreads.perTaskExecutor("http-vt-").ifPresentOrElse(executor -> {
+            requestExecutor = executor;
+            protocolHandler.setExecutor(executor);
+            log.info("Handling requests on virtual threads");
+            if (Runtime.getRuntime().availableProcessors() == 1) {
+                // One CPU means one carrier thread: a connection holder waits behind every runnable request
+                log.warn("Virtual threads on a single CPU share one carrier thread; requests waiting on the "
+                        + "connection pool were measured far slower than on platform threads");
+            }
+        }, () -> log.warn("Virtual threads are not available on Java {}, handling requests on platform threads",
+                Runtime.version().feature()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (requestExecutor != null) {
+            requestExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.shared;
+
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual thread factories and executors, when the running JVM has them. The services are compiled
+ * for Java 17, so the Java 21 API is looked up reflectively.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * A factory for virtual threads named with the prefix and a counter, or empty before Java 21.
+     */
+    public static Optional<ThreadFactory> factory(String namePrefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * An executor starting a new virtual thread per task, or empty before Java 21.
+     */
+    public static Optional<ExecutorService> perTaskExecutor(String namePrefix) {
+        return factory(namePrefix).flatMap(factory -> {
+            try {
+                return Optional.of((ExecutorService) Executors.class
+                        .getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory));
+            } catch (ReflectiveOperationException e) {
+                return Optional.empty();
+            }
+        });
+    }
+}
@@ -31,7 +31,13 @@ public class NotificationTemplateController {
             @RequestParam ChannelType channel,
             @RequestParam String language) {
         Optional<NotificationTemplate> template = templateService.findTemplate(name, channel, language);
-        return template.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+        return template.map(found -> ResponseEntity.ok().eTag(versionOf(found)).body(found))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/changes")
+    public TemplateChangeFeed getChanges(@RequestParam(required = false) Long after) {
+        return templateService.getChanges(after);
     }
 
     @PutMapping("/{id}")
@@ -49,4 +55,8 @@ public class NotificationTemplateController {
         templateService.deleteTemplate(id);
         return ResponseEntity.noContent().build();
     }
+
+    private String versionOf(NotificationTemplate template) {
+        return template.getId() + "-" + template.getUpdatedAt();
+    }
 }
@@ -1,8 +1,15 @@
 package com.example.templateservice;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,24 +17,38 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class NotificationTemplateService {
 
+    private static final int MAX_CHANGES_PER_POLL = 500;
+    private static final Duration GAP_GRACE = Duration.ofMinutes(1);
+
     private final NotificationTemplateRepository templateRepository;
+    private final TemplateChangeRepository changeRepository;
 
+    @Transactional
     public NotificationTemplate createTemplate(NotificationTemplate template) {
-        return templateRepository.save(template);
+        NotificationTemplate saved = templateRepository.save(template);
+        changeRepository.save(new TemplateChange(saved));
+        return saved;
     }
 
+    // The body is a @Lob, which PostgreSQL only streams inside a transaction
+    @Transactional(readOnly = true)
     public Optional<NotificationTemplate> getTemplateById(UUID id) {
         return templateRepository.findById(id);
     }
 
+    @Transactional(readOnly = true)
     public Optional<NotificationTemplate> findTemplate(String name, ChannelType channel, String language) {
         return templateRepository.findByNameAndChannelAndLanguage(name, channel, language);
     }
 
+    @Transactional
     public NotificationTemplate updateTemplate(UUID id, NotificationTemplate templateDetails) {
         NotificationTemplate template = templateRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Template not found"));
 
+        // Caches are keyed by (name, channel, language), so a re-keyed template invalidates both keys
+        TemplateChange previousKey = new TemplateChange(template);
+
         template.setName(templateDetails.getName());
         template.setChannel(templateDetails.getChannel());
         template.setLanguage(templateDetails.getLanguage());
@@ -35,10 +56,46 @@ public class NotificationTemplateService {
         template.setBody(templateDetails.getBody());
         template.setActive(templateDetails.isActive());
 
-        return templateRepository.save(template);
+        NotificationTemplate saved = templateRepository.save(template);
+        TemplateChange change = new TemplateChange(saved);
+        if (!sameKey(previousKey, change)) {
+            changeRepository.save(previousKey);
+        }
+        changeRepository.save(change);
+        return saved;
     }
 
+    @Transactional
     public void deleteTemplate(UUID id) {
-        templateRepository.deleteById(id);
+        templateRepository.findById(id).ifPresent(template -> {
+            templateRepository.delete(template);
+            changeRepository.save(new TemplateChange(template));
+        });
+    }
+
+    public TemplateChangeFeed getChanges(Long after) {
+        if (after == null) {
+            return new TemplateChangeFeed(changeRepository.findLatestId(), Collections.emptyList());
+        }
+        List<TemplateChange> changes = changeRepository.findByIdGreaterThanOrderByIdAsc(
+                after, PageRequest.of(0, MAX_CHANGES_PER_POLL));
+        // Ids are taken before commit, so a missing id may be a change still to commit. The cursor stops
+        // before such a gap, and the changes past it are sent again, until the gap is older than
+        // GAP_GRACE and taken to be a rolled back insert. Invalidating a template twice is harmless.
+        LocalDateTime settled = LocalDateTime.now().minus(GAP_GRACE);
+        long cursor = after;
+        for (TemplateChange change : changes) {
+            if (change.getId() != cursor + 1 && change.getChangedAt().isAfter(settled)) {
+                break;
+            }
+            cursor = change.getId();
+        }
+        return new TemplateChangeFeed(cursor, changes);
+    }
+
+    private boolean sameKey(TemplateChange a, TemplateChange b) {
+        return Objects.equals(a.getName(), b.getName())
+                && a.getChannel() == b.getChannel()
+                && Objects.equals(a.getLanguage(), b.getLanguage());
     }
 }
@@ -0,0 +1,44 @@
+package com.example.templateservice;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Data
+@NoArgsConstructor
+@Table(name = "template_changes")
+public class TemplateChange {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "template_id", nullable = false)
+    private UUID templateId;
+
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    private ChannelType channel;
+
+    private String language;
+
+    @Column(name = "changed_at", nullable = false)
+    private LocalDateTime changedAt;
+
+    public TemplateChange(NotificationTemplate template) {
+        this.templateId = template.getId();
+        this.name = template.getName();
+        this.channel = template.getChannel();
+        this.language = template.getLanguage();
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        changedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.templateservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class TemplateChangeFeed {
+    // Pass back as 'after' on the next poll
+    private long cursor;
+    private List<TemplateChange> changes;
+}
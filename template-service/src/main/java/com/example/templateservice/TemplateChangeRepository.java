@@ -0,0 +1,17 @@
+package com.example.templateservice;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TemplateChangeRepository extends JpaRepository<TemplateChange, Long> {
+
+    List<TemplateChange> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    @Query("select coalesce(max(c.id), 0) from TemplateChange c")
+    long findLatestId();
+}
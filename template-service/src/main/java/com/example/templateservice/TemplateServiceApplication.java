@@ -1,9 +1,13 @@
 package com.example.templateservice;
 
+import com.example.shared.DatabaseConcurrencyLimit;
+import com.example.shared.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
+@Import({VirtualThreadConfig.class, DatabaseConcurrencyLimit.class})
 public class TemplateServiceApplication {
 
     public static void main(String[] args) {
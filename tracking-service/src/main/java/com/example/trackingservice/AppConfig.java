@@ -0,0 +1,36 @@
+package com.example.trackingservice;
+
+import com.example.shared.DatabaseConcurrencyLimit;
+import com.example.shared.TailSamplingProperties;
+import com.example.shared.TailSamplingSpanHandler;
+import com.example.shared.TraceFileWriter;
+import com.example.shared.VirtualThreadConfig;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@Import({TailSamplingSpanHandler.class, TraceFileWriter.class, VirtualThreadConfig.class, DatabaseConcurrencyLimit.class})
+@EnableConfigurationProperties({
+        IngestProperties.class,
+        StatusCacheProperties.class,
+        RetentionProperties.class,
+        TailSamplingProperties.class
+})
+public class AppConfig {
+
+    /**
+     * Hibernate's schema update cannot manage a partitioned table, so {@link EventPartitions} sets up
+     * notification_events before Hibernate starts.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class EventPartitionsJpaDependency extends EntityManagerFactoryDependsOnPostProcessor {
+
+        EventPartitionsJpaDependency() {
+            super(EventPartitions.class);
+        }
+    }
+}
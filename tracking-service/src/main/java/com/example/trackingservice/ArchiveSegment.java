@@ -0,0 +1,175 @@
+package com.example.trackingservice;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A finished archive segment written by {@link ArchiveSegmentWriter}. The sparse index is held in
+ * memory, so a lookup by notification id is a binary search plus one block read and inflate.
+ */
+final class ArchiveSegment implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long rowCount;
+    // Per block: first and last notification id as msb/lsb pairs, file offset and compressed length
+    private final long[] firstIds;
+    private final long[] lastIds;
+    private final long[] offsets;
+    private final int[] lengths;
+
+    private ArchiveSegment(Path file, FileChannel channel, long rowCount, long[] firstIds, long[] lastIds,
+                           long[] offsets, int[] lengths) {
+        this.file = file;
+        this.channel = channel;
+        this.rowCount = rowCount;
+        this.firstIds = firstIds;
+        this.lastIds = lastIds;
+        this.offsets = offsets;
+        this.lengths = lengths;
+    }
+
+    static ArchiveSegment open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer footer = read(channel, channel.size() - ArchiveSegmentWriter.FOOTER_BYTES,
+                    ArchiveSegmentWriter.FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int blockCount = footer.getInt();
+            long rowCount = footer.getLong();
+            if (footer.getInt() != ArchiveSegmentWriter.MAGIC) {
+                throw new IOException("Not an archive segment: " + file);
+            }
+            ByteBuffer index = read(channel, indexOffset, blockCount * ArchiveSegmentWriter.INDEX_ENTRY_BYTES);
+            long[] firstIds = new long[2 * blockCount];
+            long[] lastIds = new long[2 * blockCount];
+            long[] offsets = new long[blockCount];
+            int[] lengths = new int[blockCount];
+            for (int i = 0; i < blockCount; i++) {
+                firstIds[2 * i] = index.getLong();
+                firstIds[2 * i + 1] = index.getLong();
+                lastIds[2 * i] = index.getLong();
+                lastIds[2 * i + 1] = index.getLong();
+                offsets[i] = index.getLong();
+                lengths[i] = index.getInt();
+            }
+            return new ArchiveSegment(file, channel, rowCount, firstIds, lastIds, offsets, lengths);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Orders UUIDs as unsigned 128-bit values, which is how PostgreSQL sorts them.
+     */
+    static int compare(UUID a, UUID b) {
+        int msb = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return msb != 0 ? msb : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    List<NotificationEvent> find(UUID notificationId) throws IOException {
+        long msb = notificationId.getMostSignificantBits();
+        long lsb = notificationId.getLeastSignificantBits();
+        // Last block starting at or before the id
+        int low = 0;
+        int high = offsets.length - 1;
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(firstIds, mid, msb, lsb) <= 0) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0 || compare(lastIds, block, msb, lsb) < 0) {
+            return List.of();
+        }
+        List<NotificationEvent> events = new ArrayList<>();
+        ByteBuffer compressed = read(channel, offsets[block], lengths[block]);
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(
+                new ByteArrayInputStream(compressed.array(), 0, compressed.limit())))) {
+            while (true) {
+                long eventMsb;
+                try {
+                    eventMsb = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID eventId = new UUID(eventMsb, in.readLong());
+                long rowMsb = in.readLong();
+                long rowLsb = in.readLong();
+                String eventType = readString(in);
+                String channelName = readString(in);
+                long micros = in.readLong();
+                String metadata = readString(in);
+                if (rowMsb != msb || rowLsb != lsb) {
+                    continue;
+                }
+                NotificationEvent event = new NotificationEvent();
+                event.setEventId(eventId);
+                event.setNotificationId(notificationId);
+                event.setEventType(eventType);
+                event.setChannel(channelName);
+                event.setTimestamp(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                        (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC));
+                event.setMetadata(metadata);
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static int compare(long[] ids, int block, long msb, long lsb) {
+        int result = Long.compareUnsigned(ids[2 * block], msb);
+        return result != 0 ? result : Long.compareUnsigned(ids[2 * block + 1], lsb);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Archive segment truncated at " + (position + buffer.position()));
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.trackingservice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes one archive segment: events sorted by notification id, in deflate-compressed blocks of
+ * roughly {@code blockSize} uncompressed bytes, followed by a sparse index holding the first and last
+ * notification id and the file range of every block, and a fixed-size footer.
+ * <p>
+ * A block only ends between notifications, so all of one notification's events are in one block.
+ * The segment is written to a temporary file and moved into place by {@link #finish}, so a segment
+ * file that exists is complete.
+ */
+final class ArchiveSegmentWriter implements Closeable {
+
+    static final int MAGIC = 0x4e455631;
+    static final int INDEX_ENTRY_BYTES = 5 * Long.BYTES + Integer.BYTES;
+    static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final int blockSize;
+
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final DataOutputStream rows = new DataOutputStream(block);
+    private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+    private final DataOutputStream indexEntries = new DataOutputStream(index);
+    private final Deflater deflater = new Deflater();
+    private UUID blockFirst;
+    private UUID last;
+    private long position;
+    private int blockCount;
+    private long rowCount;
+    private boolean finished;
+
+    ArchiveSegmentWriter(Path target, int blockSize) throws IOException {
+        this.target = target;
+        this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+        this.channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Appends an event; events must come in ascending {@link ArchiveSegment#compare notification id order}.
+     */
+    void append(NotificationEvent event) {
+        UUID notificationId = event.getNotificationId();
+        try {
+            if (last != null && !notificationId.equals(last)) {
+                if (ArchiveSegment.compare(notificationId, last) < 0) {
+                    throw new IllegalArgumentException("Events out of notification id order: " + notificationId + " after " + last);
+                }
+                if (block.size() >= blockSize) {
+                    flushBlock();
+                }
+            }
+            if (blockFirst == null) {
+                blockFirst = notificationId;
+            }
+            last = notificationId;
+            writeUuid(rows, event.getEventId());
+            writeUuid(rows, notificationId);
+            writeString(rows, event.getEventType());
+            writeString(rows, event.getChannel());
+            LocalDateTime timestamp = event.getTimestamp();
+            rows.writeLong(timestamp.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + timestamp.getNano() / 1_000);
+            writeString(rows, event.getMetadata());
+            rowCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive segment " + target, e);
+        }
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    void finish() throws IOException {
+        flushBlock();
+        long indexOffset = position;
+        write(index.toByteArray());
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES)
+                .putLong(indexOffset)
+                .putInt(blockCount)
+                .putLong(rowCount)
+                .putInt(MAGIC)
+                .flip();
+        write(footer);
+        channel.force(true);
+        channel.close();
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        if (!finished) {
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (blockFirst == null) {
+            return;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(block.size() / 4);
+        deflater.reset();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            block.writeTo(out);
+        }
+        writeUuid(indexEntries, blockFirst);
+        writeUuid(indexEntries, last);
+        indexEntries.writeLong(position);
+        indexEntries.writeInt(compressed.size());
+        write(compressed.toByteArray());
+        blockCount++;
+        block.reset();
+        blockFirst = null;
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        write(ByteBuffer.wrap(bytes));
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer);
+        }
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.trackingservice;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Expired event partitions, kept as one immutable {@link ArchiveSegment} each and still searchable by
+ * notification id. Segments are stored in PostgreSQL, shared by every instance, and an expired
+ * partition is only dropped in the transaction that stores its segment. Each instance reads them
+ * from a copy in its local archive directory. Segments stored by other instances are looked for and
+ * fetched in the background, at startup and every refresh interval, so a lookup never waits on the
+ * database or on a download; until a segment has been fetched, lookups here do not see its events.
+ * Nothing here deletes them.
+ */
+@Component
+@Slf4j
+public class EventArchive {
+
+    private static final String SUFFIX = ".seg";
+    private static final String TABLE = "event_archive_segments";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskScheduler taskScheduler;
+    private final Path directory;
+    private final int blockSize;
+    private final Duration refreshInterval;
+    private final Map<String, ArchiveSegment> segments = new ConcurrentSkipListMap<>();
+
+    public EventArchive(JdbcTemplate jdbcTemplate, RetentionProperties properties, TaskScheduler taskScheduler,
+                        MeterRegistry meterRegistry) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.taskScheduler = taskScheduler;
+        this.directory = properties.getArchiveDir();
+        this.blockSize = properties.getArchiveBlockSize();
+        this.refreshInterval = properties.getArchiveRefreshInterval();
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String fileName = file.getFileName().toString();
+                if (fileName.endsWith(SUFFIX + ".tmp")) {
+                    // Export or fetch interrupted by a crash; done again when next needed
+                    Files.delete(file);
+                } else if (fileName.endsWith(SUFFIX)) {
+                    segments.put(fileName.substring(0, fileName.length() - SUFFIX.length()), ArchiveSegment.open(file));
+                }
+            }
+        }
+        Gauge.builder("tracking.archive.segments", segments, Map::size)
+                .description("Archived partitions held in the local archive directory")
+                .register(meterRegistry);
+        Gauge.builder("tracking.archive.rows", this, EventArchive::rowCount)
+                .description("Events held in archive segments")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void prepare() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (tableExists()) {
+                return;
+            }
+            // Instances starting together take turns; the first creates the table, the rest find it
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {
+            }, TABLE);
+            if (tableExists()) {
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + TABLE + " (" +
+                    "name text PRIMARY KEY, " +
+                    "row_count bigint NOT NULL, " +
+                    "segment bytea NOT NULL, " +
+                    "archived_at timestamptz NOT NULL DEFAULT now())");
+            log.info("Created table {}", TABLE);
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::fetchMissing, refreshInterval);
+    }
+
+    private boolean tableExists() {
+        // Each statement takes a fresh snapshot, so this sees a table another instance just committed
+        return jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, TABLE);
+    }
+
+    /**
+     * Whether a segment of that name has been written locally, stored or not.
+     */
+    public boolean contains(String name) {
+        return segments.containsKey(name);
+    }
+
+    /**
+     * Writes a segment to the local archive directory from the events {@code export} appends, which
+     * must come in notification id order, and returns how many there were. It is shared once
+     * {@link #store stored}.
+     */
+    public long archive(String name, Consumer<ArchiveSegmentWriter> export) throws IOException {
+        Path file = directory.resolve(name + SUFFIX);
+        long rows;
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, blockSize)) {
+            export.accept(writer);
+            writer.finish();
+            rows = writer.rowCount();
+        }
+        segments.put(name, ArchiveSegment.open(file));
+        return rows;
+    }
+
+    /**
+     * Stores a locally written segment in PostgreSQL, where every instance finds it. Run in the
+     * transaction that drops the partition it came from, so neither happens without the other. A
+     * segment stored before, by an attempt whose drop failed, is left as it is.
+     */
+    public void store(String name) throws IOException {
+        ArchiveSegment segment = segments.get(name);
+        if (segment == null) {
+            throw new IllegalStateException("No archive segment " + name + " to store");
+        }
+        Path file = segment.file();
+        long size = Files.size(file);
+        try (InputStream in = Files.newInputStream(file)) {
+            jdbcTemplate.update("INSERT INTO " + TABLE + " (name, row_count, segment) VALUES (?, ?, ?) " +
+                    "ON CONFLICT (name) DO NOTHING", ps -> {
+                ps.setString(1, name);
+                ps.setLong(2, segment.rowCount());
+                ps.setBinaryStream(3, in, size);
+            });
+        }
+    }
+
+    public List<NotificationEvent> find(UUID notificationId) {
+        List<NotificationEvent> events = new ArrayList<>();
+        for (ArchiveSegment segment : segments.values()) {
+            try {
+                events.addAll(segment.find(notificationId));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read archive segment " + segment.file(), e);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Copies to the local archive directory the segments other instances have stored since. Runs on
+     * the scheduler only, one run at a time; a segment that could not be fetched is tried again next run.
+     */
+    void fetchMissing() {
+        List<String> names;
+        try {
+            names = jdbcTemplate.queryForList("SELECT name FROM " + TABLE, String.class);
+        } catch (DataAccessException e) {
+            log.warn("Could not look for new archive segments: {}", e.getMessage());
+            return;
+        }
+        for (String name : names) {
+            if (segments.containsKey(name)) {
+                continue;
+            }
+            try {
+                fetch(name);
+                log.info("Fetched archive segment {}", name);
+            } catch (DataAccessException | IOException | UncheckedIOException e) {
+                log.warn("Could not fetch archive segment {}", name, e);
+            }
+        }
+    }
+
+    private void fetch(String name) throws IOException {
+        Path file = directory.resolve(name + SUFFIX);
+        Path partial = directory.resolve(name + SUFFIX + ".tmp");
+        jdbcTemplate.query("SELECT segment FROM " + TABLE + " WHERE name = ?", rs -> {
+            try (InputStream in = rs.getBinaryStream(1)) {
+                Files.copy(in, partial, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, name);
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        segments.put(name, ArchiveSegment.open(file));
+    }
+
+    private double rowCount() {
+        return segments.values().stream().mapToLong(ArchiveSegment::rowCount).sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        segments.values().forEach(segment -> {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Could not close archive segment {}", segment.file(), e);
+            }
+        });
+    }
+}
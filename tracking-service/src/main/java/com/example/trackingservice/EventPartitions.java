@@ -0,0 +1,267 @@
+package com.example.trackingservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Owns the layout of notification_events: a table range-partitioned by day on {@code timestamp}.
+ * Partitions are created a few days ahead. Once a whole partition is older than the retention
+ * period, it is exported to the {@link EventArchive} and dropped, which frees its space at once
+ * without the row-by-row deletes and bloat that trimming a single table would cost.
+ * <p>
+ * Maintenance runs on one instance at a time, whichever holds a session advisory lock; the others
+ * skip that run. Set-up at start takes a transaction-scoped one, so instances starting together do
+ * not convert or create the table twice.
+ * <p>
+ * A pre-existing unpartitioned table is kept as the first partition, holding everything up to the
+ * day after its newest event, and is archived like any other once that day has expired.
+ */
+@Component
+@Slf4j
+public class EventPartitions {
+
+    private static final String TABLE = "notification_events";
+    private static final String LEGACY_PARTITION = TABLE + "_legacy";
+    // Not the key set-up takes, so an instance starting mid-export does not wait for it
+    private static final String MAINTENANCE_LOCK = TABLE + "_maintenance";
+    private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final int EXPORT_FETCH_SIZE = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate exportTemplate;
+    // Partition DDL runs before the JPA transaction manager exists, so it has one of its own
+    private final TransactionTemplate transactionTemplate;
+    private final EventArchive archive;
+    private final RetentionProperties properties;
+    private final TaskScheduler taskScheduler;
+
+    private final AtomicInteger partitionCount = new AtomicInteger();
+    private final Counter archivedRows;
+
+    public EventPartitions(JdbcTemplate jdbcTemplate, EventArchive archive, RetentionProperties properties,
+                           TaskScheduler taskScheduler, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.exportTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.exportTemplate.setFetchSize(EXPORT_FETCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(jdbcTemplate.getDataSource()));
+        this.archive = archive;
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+
+        Gauge.builder("tracking.retention.partitions", partitionCount, AtomicInteger::get)
+                .description("Partitions of notification_events in PostgreSQL")
+                .register(meterRegistry);
+        this.archivedRows = Counter.builder("tracking.retention.archived")
+                .description("Events moved from PostgreSQL to archive segments")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void prepare() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // Instances starting together take turns; the rest find the table as the first left it
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {
+            }, TABLE);
+            String kind = jdbcTemplate.query("SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)",
+                    rs -> rs.next() ? rs.getString(1) : null, TABLE);
+            if (kind == null) {
+                jdbcTemplate.execute("CREATE TABLE " + TABLE + " (" +
+                        "event_id uuid NOT NULL, " +
+                        "notification_id uuid NOT NULL, " +
+                        "event_type varchar(255) NOT NULL, " +
+                        "channel varchar(255), " +
+                        "timestamp timestamp(6) NOT NULL, " +
+                        "metadata text, " +
+                        "CONSTRAINT " + TABLE + "_pk PRIMARY KEY (event_id, timestamp)" +
+                        ") PARTITION BY RANGE (timestamp)");
+            } else if (kind.equals("r")) {
+                convertLegacyTable();
+            } else {
+                jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD COLUMN IF NOT EXISTS channel varchar(255)");
+            }
+            if (kind != null) {
+                convertLegacyMetadata();
+            }
+            // Created on every partition, for history lookups by notification
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + TABLE + "_notification_id_idx ON " + TABLE + " (notification_id)");
+            createAhead();
+        });
+    }
+
+    private void convertLegacyTable() {
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD COLUMN IF NOT EXISTS channel varchar(255)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ALTER COLUMN timestamp SET NOT NULL");
+        LocalDateTime newest = jdbcTemplate.queryForObject("SELECT max(timestamp) FROM " + TABLE, LocalDateTime.class);
+        LocalDate today = LocalDate.now();
+        LocalDate until = newest != null && !newest.toLocalDate().isBefore(today) ? newest.toLocalDate().plusDays(1) : today;
+        // Partitions need the partition key in their primary key; attaching adds the new one
+        String primaryKey = jdbcTemplate.queryForObject("SELECT conname FROM pg_constraint " +
+                "WHERE conrelid = to_regclass(?) AND contype = 'p'", String.class, TABLE);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP CONSTRAINT " + primaryKey);
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME TO " + LEGACY_PARTITION);
+        jdbcTemplate.execute("CREATE TABLE " + TABLE + " (LIKE " + LEGACY_PARTITION + " INCLUDING DEFAULTS, " +
+                "CONSTRAINT " + TABLE + "_pk PRIMARY KEY (event_id, timestamp)) PARTITION BY RANGE (timestamp)");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + LEGACY_PARTITION +
+                " FOR VALUES FROM (MINVALUE) TO ('" + until + "')");
+        log.info("Converted {} to a partitioned table; existing events are kept in partition {} until {}",
+                TABLE, LEGACY_PARTITION, until);
+    }
+
+    /**
+     * Metadata was once mapped with @Lob, which left it a large-object oid. Each object's contents are
+     * copied into a text column that takes its place, and the object is unlinked. An oid whose object
+     * is already gone becomes null.
+     */
+    private void convertLegacyMetadata() {
+        String type = jdbcTemplate.query("SELECT data_type FROM information_schema.columns " +
+                        "WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'metadata'",
+                rs -> rs.next() ? rs.getString(1) : null, TABLE);
+        if (!"oid".equals(type)) {
+            return;
+        }
+        String stored = "metadata IS NOT NULL AND EXISTS (SELECT 1 FROM pg_largeobject_metadata lo WHERE lo.oid = metadata)";
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " ADD COLUMN metadata_text text");
+        int converted = jdbcTemplate.update("UPDATE " + TABLE + " SET metadata_text = convert_from(lo_get(metadata), 'UTF8') " +
+                "WHERE " + stored);
+        jdbcTemplate.query("SELECT lo_unlink(metadata) FROM " + TABLE + " WHERE " + stored, rs -> {
+        });
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP COLUMN metadata");
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " RENAME COLUMN metadata_text TO metadata");
+        log.info("Converted {}.metadata from large objects to text ({} values)", TABLE, converted);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        taskScheduler.scheduleWithFixedDelay(this::maintain, properties.getMaintenanceInterval());
+    }
+
+    void maintain() {
+        // A session lock, held on a connection of its own while the work runs on others
+        try (Connection connection = jdbcTemplate.getDataSource().getConnection()) {
+            if (!advisoryLock(connection, "pg_try_advisory_lock")) {
+                log.debug("Event partition maintenance is running on another instance");
+                return;
+            }
+            try {
+                createAhead();
+                archiveExpired();
+            } finally {
+                advisoryLock(connection, "pg_advisory_unlock");
+            }
+        } catch (Exception e) {
+            // Nothing is dropped unless its archive segment was stored, so the next run simply retries
+            log.error("Event partition maintenance failed", e);
+        }
+    }
+
+    private static boolean advisoryLock(Connection connection, String function) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + function + "(hashtext(?))")) {
+            statement.setString(1, MAINTENANCE_LOCK);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void createAhead() {
+        List<Partition> partitions = partitions();
+        LocalDate today = LocalDate.now();
+        LocalDate from = partitions.isEmpty() ? today : partitions.get(partitions.size() - 1).until().toLocalDate();
+        for (LocalDate day = from.isAfter(today) ? from : today;
+             !day.isAfter(today.plusDays(properties.getPartitionsAhead())); day = day.plusDays(1)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + TABLE + "_p" + day.format(DAY_SUFFIX) +
+                    " PARTITION OF " + TABLE + " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+        }
+        partitionCount.set(partitions().size());
+    }
+
+    private void archiveExpired() throws IOException {
+        LocalDateTime cutoff = LocalDate.now().minusDays(properties.getRetention().toDays()).atStartOfDay();
+        for (Partition partition : partitions()) {
+            if (partition.until().isAfter(cutoff)) {
+                break;
+            }
+            if (!archive.contains(partition.name())) {
+                long rows = archive.archive(partition.name(), writer -> export(partition.name(), writer));
+                archivedRows.increment(rows);
+                log.info("Archived {} events from expired partition {}", rows, partition.name());
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                try {
+                    archive.store(partition.name());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                // Dropping a partition briefly locks the parent; give up rather than hold up ingest
+                jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+                jdbcTemplate.execute("DROP TABLE " + partition.name());
+            });
+            log.info("Dropped expired partition {}", partition.name());
+        }
+        partitionCount.set(partitions().size());
+    }
+
+    private void export(String partition, ArchiveSegmentWriter writer) {
+        // Streams through a cursor, which PostgreSQL only keeps open inside a transaction
+        transactionTemplate.executeWithoutResult(status -> exportTemplate.query(
+                "SELECT event_id, notification_id, event_type, channel, timestamp, metadata FROM " + partition +
+                        " ORDER BY notification_id, timestamp",
+                rs -> {
+                    NotificationEvent event = new NotificationEvent();
+                    event.setEventId(rs.getObject("event_id", UUID.class));
+                    event.setNotificationId(rs.getObject("notification_id", UUID.class));
+                    event.setEventType(rs.getString("event_type"));
+                    event.setChannel(rs.getString("channel"));
+                    event.setTimestamp(rs.getTimestamp("timestamp").toLocalDateTime());
+                    event.setMetadata(rs.getString("metadata"));
+                    writer.append(event);
+                }));
+    }
+
+    private List<Partition> partitions() {
+        return jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                        "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)",
+                        (rs, rowNum) -> new Partition(rs.getString(1), upperBound(rs.getString(2))), TABLE)
+                .stream()
+                .sorted(Comparator.comparing(Partition::until))
+                .toList();
+    }
+
+    private static LocalDateTime upperBound(String bound) {
+        Matcher matcher = UPPER_BOUND.matcher(bound);
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected partition bound: " + bound);
+        }
+        return LocalDateTime.parse(matcher.group(1).replace(' ', 'T'));
+    }
+
+    private record Partition(String name, LocalDateTime until) {
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.trackingservice;
+
+public class IngestBackpressureException extends RuntimeException {
+
+    public IngestBackpressureException(int requested, int available) {
+        super("Tracking buffer full: " + requested + " event(s) offered, " + available + " slot(s) free");
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.trackingservice;
+
+public class IngestBatchTooLargeException extends RuntimeException {
+
+    public IngestBatchTooLargeException(int requested, int capacity) {
+        super(requested + " events in one batch; send at most " + capacity);
+    }
+}
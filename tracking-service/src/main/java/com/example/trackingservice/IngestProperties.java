@@ -0,0 +1,18 @@
+package com.example.trackingservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tracking.ingest")
+public class IngestProperties {
+    // Events accepted but not yet written; callers get 503 once this is exhausted, and 413 for a larger batch
+    private int bufferCapacity = 50_000;
+    private int batchSize = 1_000;
+    private Duration flushInterval = Duration.ofMillis(200);
+    // How long a caller may wait for buffer space before being rejected
+    private Duration offerTimeout = Duration.ofMillis(50);
+    private Duration retryAfter = Duration.ofSeconds(1);
+}
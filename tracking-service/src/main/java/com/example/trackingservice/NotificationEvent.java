@@ -1,5 +1,6 @@
 package com.example.trackingservice;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
 
@@ -20,12 +21,23 @@ public class NotificationEvent {
     @Column(nullable = false)
     private String eventType;
 
+    private String channel;
+
     @Column(updatable = false)
     private LocalDateTime timestamp;
 
-    @Lob
+    // Plain text rather than @Lob, which PostgreSQL maps to a large-object oid that batch inserts cannot write
+    @Column(columnDefinition = "text")
     private String metadata;
 
+    /**
+     * Epoch millis the notification's triggering event was ingested, if the reporter passes it on.
+     * Only used for latency metrics, never stored.
+     */
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
+    private Long ingestedAt;
+
     @PrePersist
     protected void onCreate() {
         eventId = UUID.randomUUID();
@@ -0,0 +1,245 @@
+package com.example.trackingservice;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind buffer for notification events. Accepted events are queued in memory and written
+ * by a single flusher thread in JDBC batches of up to {@code batchSize} rows, or whatever has
+ * accumulated when {@code flushInterval} elapses. Buffer slots are only released once their rows
+ * are committed, so a slow or unavailable database pushes back on callers instead of losing events.
+ * Each batch updates the {@link StatusProjection} in the same transaction.
+ */
+@Component
+@Slf4j
+public class NotificationEventBuffer {
+
+    private static final String INSERT_SQL = "INSERT INTO notification_events " +
+            "(event_id, notification_id, event_type, channel, timestamp, metadata) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final long MAX_RETRY_BACKOFF_MS = 5_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final StatusProjection statusProjection;
+    private final IngestProperties properties;
+
+    private final LinkedBlockingQueue<NotificationEvent> queue = new LinkedBlockingQueue<>();
+    private final Semaphore capacity;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    private final Timer flushTimer;
+    private final Counter rowsWritten;
+    private final Counter rowsRejected;
+    private final Counter offersRejected;
+    private final DistributionSummary batchSizes;
+
+    public NotificationEventBuffer(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   StatusProjection statusProjection, IngestProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.statusProjection = statusProjection;
+        this.properties = properties;
+        this.capacity = new Semaphore(properties.getBufferCapacity());
+
+        Gauge.builder("tracking.ingest.buffer.depth", this, NotificationEventBuffer::depth)
+                .description("Events accepted but not yet committed")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("tracking.ingest.flush")
+                .description("Time to write one batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.rowsWritten = Counter.builder("tracking.ingest.rows")
+                .description("Rows committed to notification_events")
+                .register(meterRegistry);
+        this.rowsRejected = Counter.builder("tracking.ingest.rows.rejected")
+                .description("Rows the database refused even when written one at a time")
+                .register(meterRegistry);
+        this.offersRejected = Counter.builder("tracking.ingest.backpressure")
+                .description("Events refused because the buffer was full")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("tracking.ingest.batch.size")
+                .register(meterRegistry);
+
+        this.flusher = new Thread(this::runFlusher, "tracking-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public void offer(NotificationEvent event) {
+        offerAll(List.of(event));
+    }
+
+    public void offerAll(List<NotificationEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (!running) {
+            throw new IllegalStateException("Tracking buffer is shutting down");
+        }
+        if (events.size() > properties.getBufferCapacity()) {
+            // It would never fit, so a 503 would only have the caller retry it forever
+            throw new IngestBatchTooLargeException(events.size(), properties.getBufferCapacity());
+        }
+        boolean acquired;
+        try {
+            acquired = capacity.tryAcquire(events.size(), properties.getOfferTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            offersRejected.increment(events.size());
+            throw new IngestBackpressureException(events.size(), capacity.availablePermits());
+        }
+        // PostgreSQL keeps microseconds; truncating here keeps cached statuses identical to stored ones
+        LocalDateTime acceptedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        for (NotificationEvent event : events) {
+            event.setEventId(UUID.randomUUID());
+            event.setTimestamp(acceptedAt);
+            queue.add(event);
+        }
+    }
+
+    public int depth() {
+        return properties.getBufferCapacity() - capacity.availablePermits();
+    }
+
+    private void runFlusher() {
+        List<NotificationEvent> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            collect(batch);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                write(batch);
+            } finally {
+                capacity.release(batch.size());
+                batch.clear();
+            }
+        }
+    }
+
+    private void collect(List<NotificationEvent> batch) {
+        int batchSize = properties.getBatchSize();
+        long intervalNanos = properties.getFlushInterval().toNanos();
+        try {
+            NotificationEvent first = queue.poll(intervalNanos, TimeUnit.NANOSECONDS);
+            if (first == null) {
+                return;
+            }
+            batch.add(first);
+            long deadline = System.nanoTime() + intervalNanos;
+            while (batch.size() < batchSize) {
+                queue.drainTo(batch, batchSize - batch.size());
+                long remaining = deadline - System.nanoTime();
+                if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                    return;
+                }
+                NotificationEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+            }
+        } catch (InterruptedException e) {
+            // Nothing interrupts the flusher on purpose; write what was collected and carry on
+            log.warn("Tracking flusher interrupted with {} events collected", batch.size());
+        }
+    }
+
+    private void write(List<NotificationEvent> batch) {
+        long backoffMs = 100;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Collection<NotificationStatus> changes = flushTimer.record(() -> transactionTemplate.execute(status -> persist(batch)));
+                statusProjection.publish(changes);
+                rowsWritten.increment(batch.size());
+                batchSizes.record(batch.size());
+                return;
+            } catch (TransientDataAccessException | DataAccessResourceFailureException
+                     | CannotCreateTransactionException e) {
+                // The database is unavailable: hold on to the batch and let the full buffer push back on callers
+                log.warn("Batch of {} tracking events failed (attempt {}), retrying in {} ms: {}",
+                        batch.size(), attempt, backoffMs, e.getMessage());
+                pause(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_RETRY_BACKOFF_MS);
+            } catch (RuntimeException e) {
+                log.error("Batch of {} tracking events was refused, writing rows individually", batch.size(), e);
+                writeIndividually(batch);
+                return;
+            }
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            log.warn("Tracking flusher interrupted during retry backoff");
+        }
+    }
+
+    private void writeIndividually(List<NotificationEvent> batch) {
+        for (NotificationEvent event : batch) {
+            try {
+                statusProjection.publish(transactionTemplate.execute(status -> persist(List.of(event))));
+                rowsWritten.increment();
+            } catch (RuntimeException e) {
+                rowsRejected.increment();
+                log.error("Dropping tracking event {} for notification {}: {}",
+                        event.getEventId(), event.getNotificationId(), e.getMessage());
+            }
+        }
+    }
+
+    private Collection<NotificationStatus> persist(List<NotificationEvent> rows) {
+        insert(rows);
+        return statusProjection.update(rows);
+    }
+
+    private void insert(List<NotificationEvent> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(), (statement, event) -> {
+            statement.setObject(1, event.getEventId());
+            statement.setObject(2, event.getNotificationId());
+            statement.setString(3, event.getEventType());
+            statement.setString(4, event.getChannel());
+            statement.setTimestamp(5, Timestamp.valueOf(event.getTimestamp()));
+            statement.setString(6, event.getMetadata());
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // The flusher notices within one flush interval and drains the queue before exiting
+        running = false;
+        flusher.join(properties.getFlushInterval().toMillis() + 10_000);
+        if (!queue.isEmpty()) {
+            log.error("{} tracking events were still buffered at shutdown", queue.size());
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.example.trackingservice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.UUID;
 
 @Repository
 public interface NotificationEventRepository extends JpaRepository<NotificationEvent, UUID> {
+
+    List<NotificationEvent> findByNotificationIdOrderByTimestamp(UUID notificationId);
 }
@@ -0,0 +1,40 @@
+package com.example.trackingservice;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Latest known state of one notification, folded from its events as they are ingested.
+ */
+@Entity
+@Data
+@Table(name = "notification_status")
+public class NotificationStatus {
+
+    @Id
+    private UUID notificationId;
+
+    @Column(nullable = false)
+    private String status;
+
+    // Where the status sits in the delivery lifecycle; a late event never moves it backwards
+    @JsonIgnore
+    @Column(nullable = false)
+    private int statusRank;
+
+    private String channel;
+
+    private LocalDateTime sentAt;
+
+    private LocalDateTime readAt;
+
+    @Column(columnDefinition = "text")
+    private String error;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,10 @@
+package com.example.trackingservice;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface NotificationStatusRepository extends JpaRepository<NotificationStatus, UUID> {
+}
@@ -0,0 +1,23 @@
+package com.example.trackingservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tracking.retention")
+public class RetentionProperties {
+    // Events stay in PostgreSQL this long, rounded up to whole daily partitions, and are then archived
+    private Duration retention = Duration.ofDays(30);
+    // Daily partitions created in advance, so inserts never wait on DDL
+    private int partitionsAhead = 3;
+    private Duration maintenanceInterval = Duration.ofHours(1);
+    // Local copies of the archive segments stored in PostgreSQL, written on export and fetched on lookup
+    private Path archiveDir = Path.of("data", "archive");
+    // How often segments stored by other instances are looked for and fetched; lookups here miss them until then
+    private Duration archiveRefreshInterval = Duration.ofMinutes(1);
+    // Uncompressed bytes per archive block; one block is read per archived lookup
+    private int archiveBlockSize = 64 * 1024;
+}
@@ -0,0 +1,14 @@
+package com.example.trackingservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "tracking.status-cache")
+public class StatusCacheProperties {
+    private long maximumSize = 100_000;
+    // Ingest keeps cached entries current on this instance; this bounds staleness from events ingested elsewhere
+    private Duration timeToLive = Duration.ofSeconds(30);
+}
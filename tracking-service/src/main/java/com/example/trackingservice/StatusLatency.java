@@ -0,0 +1,53 @@
+package com.example.trackingservice;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records, for events that carry the ingestion time of the notification they report on, how long
+ * after ingestion the status reached tracking, as notification.status.latency tagged by channel and
+ * status. This closes the end of the trip the orchestrator and dispatcher measure in stages.
+ * Channel and status are free text here, so past {@link #MAX_TIMERS} combinations the rest are
+ * recorded as "other".
+ */
+@Component
+public class StatusLatency {
+
+    static final int MAX_TIMERS = 100;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<Key, Timer> timers = new ConcurrentHashMap<>();
+
+    public StatusLatency(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(NotificationEvent event) {
+        if (event.getIngestedAt() == null) {
+            return;
+        }
+        long millis = System.currentTimeMillis() - event.getIngestedAt();
+        Key key = new Key(String.valueOf(event.getChannel()).toUpperCase(),
+                String.valueOf(event.getEventType()).toUpperCase());
+        if (!timers.containsKey(key) && timers.size() >= MAX_TIMERS) {
+            key = new Key("other", "other");
+        }
+        timers.computeIfAbsent(key, this::register).record(Math.max(0, millis), TimeUnit.MILLISECONDS);
+    }
+
+    private Timer register(Key key) {
+        return Timer.builder("notification.status.latency")
+                .description("Time from the event's ingestion until tracking received the notification's status")
+                .tag("channel", key.channel())
+                .tag("status", key.status())
+                .register(meterRegistry);
+    }
+
+    private record Key(String channel, String status) {
+    }
+}
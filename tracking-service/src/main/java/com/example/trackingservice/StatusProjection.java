@@ -0,0 +1,167 @@
+package com.example.trackingservice;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keeps {@code notification_status} up to date with the events being written, so a status read is a
+ * primary-key lookup instead of a scan of the notification's events. Each batch is folded per
+ * notification and upserted in the same transaction as its events.
+ * <p>
+ * Reads go through a cache. After a batch commits, its folded changes are merged into the entries
+ * already cached rather than invalidating them, so a heavily polled notification misses only once per
+ * time-to-live, when its entry expires and the row is read again. Merging is idempotent, which makes
+ * it safe against a read that loaded the row after the commit. Cached misses are invalidated instead,
+ * since a batch's changes alone are not the whole row.
+ */
+@Component
+public class StatusProjection {
+
+    private static final Map<String, Integer> RANKS = Map.of(
+            "QUEUED", 1,
+            "FAILED", 2,
+            "SENT", 3,
+            "DELIVERED", 4,
+            "READ", 5);
+
+    // Mirrors merge(): the higher-ranked status wins, with ties going to the later event
+    private static final String UPSERT_SQL = "INSERT INTO notification_status " +
+            "(notification_id, status, status_rank, channel, sent_at, read_at, error, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT (notification_id) DO UPDATE SET " +
+            "status = CASE WHEN EXCLUDED.status_rank >= notification_status.status_rank " +
+            "THEN EXCLUDED.status ELSE notification_status.status END, " +
+            "status_rank = GREATEST(EXCLUDED.status_rank, notification_status.status_rank), " +
+            "channel = COALESCE(EXCLUDED.channel, notification_status.channel), " +
+            "sent_at = LEAST(EXCLUDED.sent_at, notification_status.sent_at), " +
+            "read_at = LEAST(EXCLUDED.read_at, notification_status.read_at), " +
+            "error = COALESCE(EXCLUDED.error, notification_status.error), " +
+            "updated_at = GREATEST(EXCLUDED.updated_at, notification_status.updated_at)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NotificationStatusRepository repository;
+    private final Cache<UUID, Optional<NotificationStatus>> cache;
+
+    public StatusProjection(JdbcTemplate jdbcTemplate, NotificationStatusRepository repository,
+                            StatusCacheProperties properties, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.repository = repository;
+        // Unknown notifications are cached as empty too, so polling one before its first event stays off the database.
+        // Entries expire a time-to-live after they were loaded: merging a batch into one keeps its expiry, so
+        // events ingested by other instances still show within the time-to-live however often this one merges
+        this.cache = CaffeineCacheMetrics.monitor(meterRegistry, Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfter(new Expiry<UUID, Optional<NotificationStatus>>() {
+                    @Override
+                    public long expireAfterCreate(UUID id, Optional<NotificationStatus> status, long currentTime) {
+                        return properties.getTimeToLive().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(UUID id, Optional<NotificationStatus> status, long currentTime,
+                                                  long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(UUID id, Optional<NotificationStatus> status, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(), "notification-status");
+    }
+
+    public Optional<NotificationStatus> find(UUID notificationId) {
+        return cache.get(notificationId, repository::findById);
+    }
+
+    /**
+     * Upserts the status changes carried by {@code events}; call inside the transaction writing them.
+     * Returns the changes to {@link #publish} once that transaction has committed.
+     */
+    Collection<NotificationStatus> update(List<NotificationEvent> events) {
+        Map<UUID, NotificationStatus> changes = new LinkedHashMap<>();
+        for (NotificationEvent event : events) {
+            changes.merge(event.getNotificationId(), toStatus(event), StatusProjection::merge);
+        }
+        jdbcTemplate.batchUpdate(UPSERT_SQL, changes.values(), changes.size(), (statement, status) -> {
+            statement.setObject(1, status.getNotificationId());
+            statement.setString(2, status.getStatus());
+            statement.setInt(3, status.getStatusRank());
+            statement.setString(4, status.getChannel());
+            statement.setTimestamp(5, toTimestamp(status.getSentAt()));
+            statement.setTimestamp(6, toTimestamp(status.getReadAt()));
+            statement.setString(7, status.getError());
+            statement.setTimestamp(8, toTimestamp(status.getUpdatedAt()));
+        });
+        return changes.values();
+    }
+
+    void publish(Collection<NotificationStatus> changes) {
+        for (NotificationStatus change : changes) {
+            // A cached miss is dropped rather than filled from this batch alone: the row may already hold
+            // what other instances wrote, which the next read loads
+            cache.asMap().computeIfPresent(change.getNotificationId(),
+                    (id, cached) -> cached.map(status -> Optional.of(merge(status, change))).orElse(null));
+        }
+    }
+
+    private static NotificationStatus toStatus(NotificationEvent event) {
+        String type = event.getEventType().toUpperCase();
+        NotificationStatus status = new NotificationStatus();
+        status.setNotificationId(event.getNotificationId());
+        status.setStatus(type);
+        status.setStatusRank(RANKS.getOrDefault(type, 0));
+        status.setChannel(event.getChannel());
+        status.setUpdatedAt(event.getTimestamp());
+        switch (type) {
+            case "SENT", "DELIVERED" -> status.setSentAt(event.getTimestamp());
+            case "READ" -> status.setReadAt(event.getTimestamp());
+            case "FAILED" -> status.setError(event.getMetadata());
+            default -> {
+            }
+        }
+        return status;
+    }
+
+    private static NotificationStatus merge(NotificationStatus current, NotificationStatus change) {
+        NotificationStatus merged = new NotificationStatus();
+        merged.setNotificationId(current.getNotificationId());
+        NotificationStatus winner = change.getStatusRank() >= current.getStatusRank() ? change : current;
+        merged.setStatus(winner.getStatus());
+        merged.setStatusRank(winner.getStatusRank());
+        merged.setChannel(change.getChannel() != null ? change.getChannel() : current.getChannel());
+        merged.setSentAt(earliest(current.getSentAt(), change.getSentAt()));
+        merged.setReadAt(earliest(current.getReadAt(), change.getReadAt()));
+        merged.setError(change.getError() != null ? change.getError() : current.getError());
+        merged.setUpdatedAt(current.getUpdatedAt().isAfter(change.getUpdatedAt()) ? current.getUpdatedAt() : change.getUpdatedAt());
+        return merged;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a != null ? a : b;
+        }
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime time) {
+        return time != null ? Timestamp.valueOf(time) : null;
+    }
+}
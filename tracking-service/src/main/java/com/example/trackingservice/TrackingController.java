@@ -1,19 +1,55 @@
 package com.example.trackingservice;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/track")
 @RequiredArgsConstructor
 public class TrackingController {
 
     private final TrackingService trackingService;
+    private final IngestProperties ingestProperties;
 
     @PostMapping
-    @ResponseStatus(HttpStatus.OK)
+    @ResponseStatus(HttpStatus.ACCEPTED)
     public void trackEvent(@RequestBody NotificationEvent event) {
         trackingService.trackEvent(event);
     }
+
+    @PostMapping("/batch")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public void trackEvents(@RequestBody List<NotificationEvent> events) {
+        trackingService.trackEvents(events);
+    }
+
+    @GetMapping("/{notificationId}")
+    public ResponseEntity<NotificationStatus> getStatus(@PathVariable UUID notificationId) {
+        return trackingService.getStatus(notificationId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{notificationId}/events")
+    public List<NotificationEvent> getEvents(@PathVariable UUID notificationId) {
+        return trackingService.getEvents(notificationId);
+    }
+
+    @ExceptionHandler(IngestBackpressureException.class)
+    public ResponseEntity<String> handleBackpressure(IngestBackpressureException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ingestProperties.getRetryAfter().toSeconds())))
+                .body(e.getMessage());
+    }
+
+    @ExceptionHandler(IngestBatchTooLargeException.class)
+    public ResponseEntity<String> handleBatchTooLarge(IngestBatchTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
+    }
 }
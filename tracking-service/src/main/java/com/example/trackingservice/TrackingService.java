@@ -3,13 +3,43 @@ package com.example.trackingservice;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
 @Service
 @RequiredArgsConstructor
 public class TrackingService {
 
+    private final NotificationEventBuffer eventBuffer;
+    private final StatusProjection statusProjection;
     private final NotificationEventRepository eventRepository;
+    private final EventArchive eventArchive;
+    private final StatusLatency statusLatency;
 
     public void trackEvent(NotificationEvent event) {
-        eventRepository.save(event);
+        eventBuffer.offer(event);
+        statusLatency.record(event);
+    }
+
+    public void trackEvents(List<NotificationEvent> events) {
+        eventBuffer.offerAll(events);
+        events.forEach(statusLatency::record);
+    }
+
+    public Optional<NotificationStatus> getStatus(UUID notificationId) {
+        return statusProjection.find(notificationId);
+    }
+
+    /**
+     * Every event of a notification, oldest first, whether still in PostgreSQL or already archived.
+     */
+    public List<NotificationEvent> getEvents(UUID notificationId) {
+        List<NotificationEvent> events = new ArrayList<>(eventArchive.find(notificationId));
+        events.addAll(eventRepository.findByNotificationIdOrderByTimestamp(notificationId));
+        events.sort(Comparator.comparing(NotificationEvent::getTimestamp));
+        return events;
     }
 }
@@ -0,0 +1,203 @@
+package com.example.trackingservice;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+
+class ArchiveSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void ordersIdsTheWayPostgresDoes() {
+        // PostgreSQL compares uuids byte by byte, unsigned; UUID.compareTo compares signed longs
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            UUID a = new UUID(random.nextLong(), random.nextLong());
+            UUID b = random.nextBoolean() ? new UUID(a.getMostSignificantBits(), random.nextLong()) : new UUID(random.nextLong(), random.nextLong());
+
+            assertThat(Integer.signum(ArchiveSegment.compare(a, b))).as("%s vs %s", a, b)
+                    .isEqualTo(Integer.signum(Arrays.compareUnsigned(bytes(a), bytes(b))));
+        }
+        assertThat(ArchiveSegment.compare(UUID.fromString("80000000-0000-0000-0000-000000000000"),
+                UUID.fromString("7fffffff-ffff-ffff-ffff-ffffffffffff"))).isPositive();
+        assertThat(ArchiveSegment.compare(UUID.fromString("00000000-0000-0000-8000-000000000000"),
+                UUID.fromString("00000000-0000-0000-7fff-ffffffffffff"))).isPositive();
+    }
+
+    @Test
+    void findsIdsOnBothSidesOfTheSignBit() throws IOException {
+        List<UUID> ids = List.of(
+                UUID.fromString("00000000-0000-4000-8000-000000000001"),
+                UUID.fromString("7fffffff-ffff-4fff-bfff-ffffffffffff"),
+                UUID.fromString("80000000-0000-4000-8000-000000000000"),
+                UUID.fromString("ffffffff-ffff-4fff-bfff-ffffffffffff"));
+        Path file = directory.resolve("segment.bin");
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 64)) {
+            for (UUID id : ids) {
+                writer.append(event(id, "SENT"));
+            }
+            writer.finish();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(file)) {
+            for (UUID id : ids) {
+                assertThat(segment.find(id)).extracting(NotificationEvent::getNotificationId).containsExactly(id);
+            }
+        }
+    }
+
+    @Test
+    void refusesEventsOutOfOrder() throws IOException {
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(directory.resolve("segment.bin"), 64)) {
+            writer.append(event(UUID.fromString("80000000-0000-4000-8000-000000000000"), "SENT"));
+
+            // Ascending for UUID.compareTo, which treats the first id as negative
+            assertThatIllegalArgumentException().isThrownBy(() ->
+                    writer.append(event(UUID.fromString("00000000-0000-4000-8000-000000000001"), "SENT")));
+        }
+    }
+
+    @Test
+    void findsEveryNotificationAcrossBlockBoundaries() throws IOException {
+        Random random = new Random(11);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            ids.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        ids.sort(ArchiveSegment::compare);
+        Path file = directory.resolve("segment.bin");
+        // Small blocks, so most notifications start or end one, and some notifications outgrow a block
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 512)) {
+            for (int i = 0; i < ids.size(); i++) {
+                for (int e = 0; e < 1 + i % 40; e++) {
+                    writer.append(event(ids.get(i), "EVENT_" + e));
+                }
+            }
+            writer.finish();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(file)) {
+            long rows = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                List<NotificationEvent> events = segment.find(ids.get(i));
+                // All of a notification's events are in the block it starts in
+                assertThat(events).hasSize(1 + i % 40);
+                assertThat(events.get(events.size() - 1).getEventType()).isEqualTo("EVENT_" + (i % 40));
+                rows += events.size();
+            }
+            assertThat(segment.rowCount()).isEqualTo(rows);
+        }
+    }
+
+    @Test
+    void findsNothingForIdsBetweenOrOutsideTheBlocks() throws IOException {
+        UUID first = UUID.fromString("10000000-0000-4000-8000-000000000000");
+        UUID second = UUID.fromString("20000000-0000-4000-8000-000000000000");
+        UUID third = UUID.fromString("c0000000-0000-4000-8000-000000000000");
+        Path file = directory.resolve("segment.bin");
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 1)) {
+            writer.append(event(first, "SENT"));
+            writer.append(event(second, "SENT"));
+            writer.append(event(third, "SENT"));
+            writer.finish();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(file)) {
+            assertThat(segment.find(UUID.fromString("00000000-0000-4000-8000-000000000000"))).isEmpty();
+            assertThat(segment.find(UUID.fromString("18000000-0000-4000-8000-000000000000"))).isEmpty();
+            assertThat(segment.find(UUID.fromString("90000000-0000-4000-8000-000000000000"))).isEmpty();
+            assertThat(segment.find(UUID.fromString("f0000000-0000-4000-8000-000000000000"))).isEmpty();
+            assertThat(segment.find(third)).hasSize(1);
+        }
+    }
+
+    @Test
+    void readsBackEveryField() throws IOException {
+        UUID notificationId = UUID.randomUUID();
+        NotificationEvent full = event(notificationId, "DELIVERED");
+        full.setChannel("EMAIL");
+        full.setTimestamp(LocalDateTime.of(2026, 3, 1, 12, 30, 15, 123_456_000));
+        full.setMetadata("{\"provider\":\"smtp\",\"note\":\"ünïcödé\"}");
+        NotificationEvent sparse = event(notificationId, "FAILED");
+        sparse.setChannel(null);
+        sparse.setMetadata(null);
+        // Before the epoch, where the microsecond count is negative
+        sparse.setTimestamp(LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000));
+        Path file = directory.resolve("segment.bin");
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 1024)) {
+            writer.append(full);
+            writer.append(sparse);
+            writer.finish();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(file)) {
+            assertThat(segment.find(notificationId))
+                    .usingRecursiveFieldByFieldElementComparatorIgnoringFields("ingestedAt")
+                    .containsExactly(full, sparse);
+        }
+    }
+
+    @Test
+    void opensAnEmptySegment() throws IOException {
+        Path file = directory.resolve("segment.bin");
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 1024)) {
+            writer.finish();
+        }
+
+        try (ArchiveSegment segment = ArchiveSegment.open(file)) {
+            assertThat(segment.rowCount()).isZero();
+            assertThat(segment.find(UUID.randomUUID())).isEmpty();
+        }
+    }
+
+    @Test
+    void leavesNoFileWhenNotFinished() throws IOException {
+        Path file = directory.resolve("segment.bin");
+        try (ArchiveSegmentWriter writer = new ArchiveSegmentWriter(file, 1024)) {
+            writer.append(event(UUID.randomUUID(), "SENT"));
+        }
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void rejectsAFileThatIsNotASegment() throws IOException {
+        Path file = directory.resolve("segment.bin");
+        Files.write(file, new byte[64]);
+
+        assertThatIOException().isThrownBy(() -> ArchiveSegment.open(file));
+    }
+
+    private static NotificationEvent event(UUID notificationId, String eventType) {
+        NotificationEvent event = new NotificationEvent();
+        event.setEventId(UUID.randomUUID());
+        event.setNotificationId(notificationId);
+        event.setEventType(eventType);
+        event.setChannel("SMS");
+        event.setTimestamp(LocalDateTime.of(2026, 1, 1, 9, 0));
+        event.setMetadata("{}");
+        return event;
+    }
+
+    private static byte[] bytes(UUID id) {
+        return ByteBuffer.allocate(16).putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+}
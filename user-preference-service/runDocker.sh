@@ -1,6 +1,8 @@
 docker rm -f user-preference-container
 docker rmi user-preference-image
 
-docker build --platform=linux/arm64 -t user-preference-image .
+# The Dockerfile copies shared-libraries too, so it is built from the repository root
+cd "$(dirname "$0")/.."
+docker build --platform=linux/arm64 -f user-preference-service/Dockerfile -t user-preference-image .
 
 docker run -p 8080:8080 --name user-preference-container user-preference-image
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.example.userpreferenceservice;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in checks and audience counts against a snapshot of a million users across ten categories,
+ * each user opted in to about half of the category/channel pairs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreferenceBitmapsBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int CATEGORIES = 10;
+
+    private PreferenceBitmaps bitmaps;
+    private String[] userIds;
+
+    @Setup
+    public void setUp() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        userIds = new String[USERS];
+        for (int user = 0; user < USERS; user++) {
+            userIds[user] = "user-" + user;
+            for (int category = 0; category < CATEGORIES; category++) {
+                for (ChannelType channel : ChannelType.values()) {
+                    if (random.nextBoolean()) {
+                        builder.add(userIds[user], "category-" + category, channel);
+                    }
+                }
+            }
+        }
+        bitmaps = builder.build();
+    }
+
+    @Benchmark
+    public boolean isEnabled() {
+        return bitmaps.isEnabled(userIds[ThreadLocalRandom.current().nextInt(USERS)], "category-3", ChannelType.EMAIL);
+    }
+
+    @Benchmark
+    public List<ChannelType> enabledChannels() {
+        return bitmaps.enabledChannels(userIds[ThreadLocalRandom.current().nextInt(USERS)], "category-3");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long countAudience() {
+        return bitmaps.count("category-3", List.of(ChannelType.EMAIL, ChannelType.PUSH));
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.userpreferenceservice;
+
+import com.example.shared.DatabaseConcurrencyLimit;
+import com.example.shared.VirtualThreadConfig;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+@Import({VirtualThreadConfig.class, DatabaseConcurrencyLimit.class})
+@EnableConfigurationProperties({SnapshotProperties.class, ImportProperties.class, LookupProperties.class})
+public class AppConfig {
+}
@@ -0,0 +1,11 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AudienceEntry implements AudienceMember {
+    private String userId;
+    private String channel;
+}
@@ -0,0 +1,7 @@
+package com.example.userpreferenceservice;
+
+public interface AudienceMember {
+    String getUserId();
+
+    String getChannel();
+}
@@ -0,0 +1,16 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class AudiencePage {
+    private List<AudienceMember> members;
+    // Keyset cursor for the next page: pass back as afterUserId / afterChannel
+    private String nextUserId;
+    private String nextChannel;
+    private boolean last;
+}
@@ -0,0 +1,8 @@
+package com.example.userpreferenceservice;
+
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(int requested, int limit) {
+        super(requested + " lookups in one batch; send at most " + limit);
+    }
+}
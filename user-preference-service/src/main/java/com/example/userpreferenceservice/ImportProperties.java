@@ -0,0 +1,15 @@
+package com.example.userpreferenceservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "preferences.import")
+public class ImportProperties {
+    // Rows per multi-row INSERT statement; 7 parameters each, well inside PostgreSQL's 65535 limit
+    private int batchSize = 1_000;
+    // Rows committed per transaction; the connection is only held while a chunk is written
+    private int chunkSize = 10_000;
+    // Rejected rows listed in the import result; the count covers them all
+    private int maxReportedRejections = 100;
+}
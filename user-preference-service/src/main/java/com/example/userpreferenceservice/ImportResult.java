@@ -0,0 +1,19 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ImportResult {
+    private long received;
+    private long upserted;
+    private long rejected;
+    private List<RejectedRow> rejections;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    // Set when the upload could not be read to the end; chunks before that point stay committed
+    private String error;
+}
@@ -0,0 +1,11 @@
+package com.example.userpreferenceservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties(prefix = "preferences.lookup")
+public class LookupProperties {
+    // Lookups per POST /preferences/batch; larger bodies get 413. The orchestrator coalesces 200 by default
+    private int maxBatchSize = 1_000;
+}
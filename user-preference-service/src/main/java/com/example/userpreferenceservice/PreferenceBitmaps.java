@@ -0,0 +1,306 @@
+package com.example.userpreferenceservice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Opt-ins held as one bitmap per (category, channel) over a dense user index: bit {@code i} of a
+ * bitmap is set when user {@code i} has that pair enabled. A user check is a hash lookup and a bit
+ * test per channel, and an audience count is a popcount over the channels' bitmaps.
+ * <p>
+ * Users present at build time are indexed in user id order, so walking a bitmap visits them in the
+ * same order as the keyset-paged audience query. Users added later are kept in a sorted map and
+ * merged in while paging, until the next rebuild folds them into the sorted range.
+ * <p>
+ * Reads are lock-free and may run concurrently with one writer; callers serialise writes.
+ */
+final class PreferenceBitmaps {
+
+    private static final ChannelType[] CHANNELS = ChannelType.values();
+    // Audience pages order channels by name, as PostgreSQL orders the enum's text
+    private static final ChannelType[] CHANNELS_BY_NAME = Arrays.stream(CHANNELS)
+            .sorted((a, b) -> a.name().compareTo(b.name()))
+            .toArray(ChannelType[]::new);
+
+    private final Map<String, Integer> index;
+    // User ids of the indices assigned at build time, sorted
+    private final String[] sortedUserIds;
+    private final ConcurrentSkipListMap<String, Integer> lateUsers = new ConcurrentSkipListMap<>();
+    private final Map<String, Bitmap[]> categories = new ConcurrentHashMap<>();
+    private int nextIndex;
+
+    private PreferenceBitmaps(String[] sortedUserIds) {
+        this.sortedUserIds = sortedUserIds;
+        this.index = new ConcurrentHashMap<>(sortedUserIds.length * 4 / 3 + 16);
+        for (int i = 0; i < sortedUserIds.length; i++) {
+            index.put(sortedUserIds[i], i);
+        }
+        this.nextIndex = sortedUserIds.length;
+    }
+
+    List<ChannelType> enabledChannels(String userId, String category) {
+        Integer user = index.get(userId);
+        Bitmap[] bitmaps = categories.get(category);
+        if (user == null || bitmaps == null) {
+            return List.of();
+        }
+        List<ChannelType> enabled = new ArrayList<>(CHANNELS.length);
+        for (ChannelType channel : CHANNELS) {
+            if (bitmaps[channel.ordinal()].get(user)) {
+                enabled.add(channel);
+            }
+        }
+        return enabled;
+    }
+
+    boolean isEnabled(String userId, String category, ChannelType channel) {
+        Integer user = index.get(userId);
+        Bitmap[] bitmaps = categories.get(category);
+        return user != null && bitmaps != null && bitmaps[channel.ordinal()].get(user);
+    }
+
+    /**
+     * Number of enabled (user, channel) pairs among {@code channels} for a category.
+     */
+    long count(String category, Collection<ChannelType> channels) {
+        Bitmap[] bitmaps = categories.get(category);
+        if (bitmaps == null) {
+            return 0;
+        }
+        long count = 0;
+        for (ChannelType channel : Set.copyOf(channels)) {
+            count += bitmaps[channel.ordinal()].cardinality();
+        }
+        return count;
+    }
+
+    /**
+     * Up to {@code limit} enabled (user, channel) pairs after the keyset cursor, in user id then
+     * channel name order.
+     */
+    List<AudienceMember> page(String category, Collection<ChannelType> channels, String afterUserId,
+                              String afterChannel, int limit) {
+        Bitmap[] bitmaps = categories.get(category);
+        List<AudienceMember> members = new ArrayList<>(Math.min(limit, 1024));
+        if (bitmaps == null) {
+            return members;
+        }
+        Bitmap[] selected = Arrays.stream(CHANNELS_BY_NAME).filter(channels::contains)
+                .map(channel -> bitmaps[channel.ordinal()]).toArray(Bitmap[]::new);
+        ChannelType[] selectedChannels = Arrays.stream(CHANNELS_BY_NAME).filter(channels::contains)
+                .toArray(ChannelType[]::new);
+
+        int start = Arrays.binarySearch(sortedUserIds, afterUserId);
+        int sorted = nextSorted(selected, start >= 0 ? start : -start - 1);
+        Iterator<Map.Entry<String, Integer>> late = lateUsers.tailMap(afterUserId, true).entrySet().iterator();
+        Map.Entry<String, Integer> nextLate = late.hasNext() ? late.next() : null;
+
+        while (members.size() < limit) {
+            String userId;
+            int user;
+            if (sorted >= 0 && (nextLate == null || sortedUserIds[sorted].compareTo(nextLate.getKey()) < 0)) {
+                userId = sortedUserIds[sorted];
+                user = sorted;
+                sorted = nextSorted(selected, sorted + 1);
+            } else if (nextLate != null) {
+                userId = nextLate.getKey();
+                user = nextLate.getValue();
+                nextLate = late.hasNext() ? late.next() : null;
+            } else {
+                break;
+            }
+            boolean resuming = userId.equals(afterUserId);
+            for (int c = 0; c < selected.length && members.size() < limit; c++) {
+                String channel = selectedChannels[c].name();
+                if (selected[c].get(user) && (!resuming || channel.compareTo(afterChannel) > 0)) {
+                    members.add(new AudienceEntry(userId, channel));
+                }
+            }
+        }
+        return members;
+    }
+
+    int userCount() {
+        return index.size();
+    }
+
+    long sizeInBytes() {
+        long bytes = 0;
+        for (Bitmap[] bitmaps : categories.values()) {
+            for (Bitmap bitmap : bitmaps) {
+                bytes += bitmap.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Sets which channels a user has enabled for a category. Not thread-safe against other writers.
+     */
+    void update(String userId, String category, Set<ChannelType> enabled) {
+        Integer user = index.get(userId);
+        if (user == null) {
+            if (enabled.isEmpty()) {
+                return;
+            }
+            user = nextIndex++;
+            lateUsers.put(userId, user);
+            index.put(userId, user);
+        }
+        Bitmap[] bitmaps = categories.computeIfAbsent(category, key -> newBitmaps());
+        for (ChannelType channel : CHANNELS) {
+            bitmaps[channel.ordinal()].set(user, enabled.contains(channel));
+        }
+    }
+
+    /**
+     * Sets a single (user, category, channel) opt-in. Not thread-safe against other writers.
+     */
+    void set(String userId, String category, ChannelType channel, boolean enabled) {
+        Integer user = index.get(userId);
+        if (user == null) {
+            if (!enabled) {
+                return;
+            }
+            user = nextIndex++;
+            lateUsers.put(userId, user);
+            index.put(userId, user);
+        }
+        categories.computeIfAbsent(category, key -> newBitmaps())[channel.ordinal()].set(user, enabled);
+    }
+
+    /**
+     * Next user from {@code from} in the sorted range with any of the bitmaps set, or -1.
+     */
+    private int nextSorted(Bitmap[] bitmaps, int from) {
+        int next = -1;
+        for (Bitmap bitmap : bitmaps) {
+            int candidate = bitmap.nextSetBit(from);
+            if (candidate >= 0 && (next < 0 || candidate < next)) {
+                next = candidate;
+            }
+        }
+        return next < sortedUserIds.length ? next : -1;
+    }
+
+    private static Bitmap[] newBitmaps() {
+        Bitmap[] bitmaps = new Bitmap[CHANNELS.length];
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new Bitmap();
+        }
+        return bitmaps;
+    }
+
+    /**
+     * Collects enabled pairs under provisional indices in arrival order, then renumbers users in id
+     * order when built.
+     */
+    static final class Builder {
+        private final Map<String, Integer> provisional = new HashMap<>();
+        private final List<String> userIds = new ArrayList<>();
+        private final Map<String, Bitmap[]> categories = new HashMap<>();
+
+        void add(String userId, String category, ChannelType channel) {
+            Integer user = provisional.get(userId);
+            if (user == null) {
+                user = userIds.size();
+                provisional.put(userId, user);
+                userIds.add(userId);
+            }
+            categories.computeIfAbsent(category, key -> newBitmaps())[channel.ordinal()].set(user, true);
+        }
+
+        PreferenceBitmaps build() {
+            String[] sorted = userIds.toArray(String[]::new);
+            Arrays.sort(sorted);
+            PreferenceBitmaps bitmaps = new PreferenceBitmaps(sorted);
+            int[] renumbered = new int[userIds.size()];
+            for (int i = 0; i < renumbered.length; i++) {
+                renumbered[i] = bitmaps.index.get(userIds.get(i));
+            }
+            categories.forEach((category, provisionalBitmaps) -> {
+                Bitmap[] categoryBitmaps = newBitmaps();
+                for (int c = 0; c < CHANNELS.length; c++) {
+                    Bitmap source = provisionalBitmaps[c];
+                    for (int bit = source.nextSetBit(0); bit >= 0; bit = source.nextSetBit(bit + 1)) {
+                        categoryBitmaps[c].set(renumbered[bit], true);
+                    }
+                }
+                bitmaps.categories.put(category, categoryBitmaps);
+            });
+            return bitmaps;
+        }
+    }
+
+    /**
+     * Growable bitmap. Bits are published with volatile semantics, and growing swaps in a copy, so
+     * readers never need a lock; only one thread may write.
+     */
+    static final class Bitmap {
+        private volatile AtomicLongArray words = new AtomicLongArray(1);
+
+        boolean get(int bit) {
+            AtomicLongArray current = words;
+            int word = bit >>> 6;
+            return word < current.length() && (current.get(word) & (1L << bit)) != 0;
+        }
+
+        void set(int bit, boolean value) {
+            int word = bit >>> 6;
+            AtomicLongArray current = words;
+            if (word >= current.length()) {
+                if (!value) {
+                    return;
+                }
+                AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 3 / 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                words = grown;
+                current = grown;
+            }
+            long old = current.get(word);
+            current.set(word, value ? old | (1L << bit) : old & ~(1L << bit));
+        }
+
+        int nextSetBit(int from) {
+            AtomicLongArray current = words;
+            int word = from >>> 6;
+            if (word >= current.length()) {
+                return -1;
+            }
+            long bits = current.get(word) & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return word * 64 + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word == current.length()) {
+                    return -1;
+                }
+                bits = current.get(word);
+            }
+        }
+
+        long cardinality() {
+            AtomicLongArray current = words;
+            long count = 0;
+            for (int i = 0; i < current.length(); i++) {
+                count += Long.bitCount(current.get(i));
+            }
+            return count;
+        }
+
+        long sizeInBytes() {
+            return (long) words.length() * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.userpreferenceservice;
+
+import lombok.Data;
+
+@Data
+public class PreferenceImportRow {
+    private String userId;
+    private String category;
+    private String channel;
+    private Boolean enabled;
+}
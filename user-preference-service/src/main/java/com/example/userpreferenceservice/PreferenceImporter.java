@@ -0,0 +1,194 @@
+package com.example.userpreferenceservice;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams a preference upload, a JSON array or newline-separated objects, into
+ * {@link PreferenceWriter} one chunk at a time. Only the current chunk is held in memory, and each
+ * chunk commits on its own, so a million-row sync neither buffers the upload nor holds a connection
+ * for its whole run. Invalid rows are skipped and reported; the rest of the upload still goes in.
+ * A chunk the database refuses is written again a row at a time, and the rows it still refuses, such
+ * as a userId longer than its column, are reported like invalid ones.
+ */
+@Component
+@Slf4j
+public class PreferenceImporter {
+
+    private final ObjectReader reader;
+    private final PreferenceWriter writer;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectProvider<PreferenceSnapshot> snapshot;
+    private final ImportProperties properties;
+    private final Counter upsertedRows;
+    private final Counter rejectedRows;
+
+    public PreferenceImporter(ObjectMapper objectMapper, PreferenceWriter writer, TransactionTemplate transactionTemplate,
+                              ObjectProvider<PreferenceSnapshot> snapshot, ImportProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.reader = objectMapper.readerFor(PreferenceImportRow.class);
+        this.writer = writer;
+        this.transactionTemplate = transactionTemplate;
+        this.snapshot = snapshot;
+        this.properties = properties;
+        this.upsertedRows = Counter.builder("preferences.import.rows")
+                .description("Imported preference rows")
+                .tag("outcome", "upserted")
+                .register(meterRegistry);
+        this.rejectedRows = Counter.builder("preferences.import.rows")
+                .description("Imported preference rows")
+                .tag("outcome", "rejected")
+                .register(meterRegistry);
+    }
+
+    public ImportResult importPreferences(InputStream body) {
+        long started = System.nanoTime();
+        long received = 0;
+        Tally tally = new Tally();
+        Chunk chunk = new Chunk(properties.getChunkSize());
+        String error = null;
+
+        try (MappingIterator<PreferenceImportRow> rows = reader.readValues(body)) {
+            while (rows.hasNextValue()) {
+                PreferenceImportRow row = rows.nextValue();
+                long index = received++;
+                String reason = validate(row);
+                if (reason != null) {
+                    tally.reject(index, row == null ? null : row.getUserId(), reason);
+                    continue;
+                }
+                chunk.add(index, toPreference(row));
+                if (chunk.size() == properties.getChunkSize()) {
+                    write(chunk, tally);
+                    chunk.clear();
+                }
+            }
+        } catch (IOException | RuntimeJsonMappingException e) {
+            // Malformed JSON leaves the parser nowhere to resume from, so the upload stops here
+            error = "Upload unreadable after row " + received + ": " + e.getMessage();
+            log.warn("Preference import stopped after {} rows", received, e);
+        }
+        if (chunk.size() > 0) {
+            write(chunk, tally);
+        }
+
+        rejectedRows.increment(tally.rejected);
+        long elapsedNanos = System.nanoTime() - started;
+        long rowsPerSecond = elapsedNanos > 0 ? tally.upserted * 1_000_000_000L / elapsedNanos : tally.upserted;
+        log.info("Imported {} preferences ({} received, {} rejected) in {} ms, {} rows/s",
+                tally.upserted, received, tally.rejected, elapsedNanos / 1_000_000, rowsPerSecond);
+        return new ImportResult(received, tally.upserted, tally.rejected, tally.rejections, elapsedNanos / 1_000_000,
+                rowsPerSecond, error);
+    }
+
+    private void write(Chunk chunk, Tally tally) {
+        try {
+            tally.upserted += upsert(chunk.preferences);
+        } catch (DataIntegrityViolationException e) {
+            // One bad row fails the whole statement; find it, and keep the rest
+            log.warn("Database refused a chunk of {} preferences, writing it a row at a time: {}",
+                    chunk.size(), e.getMostSpecificCause().getMessage());
+            for (int i = 0; i < chunk.size(); i++) {
+                UserPreference preference = chunk.preferences.get(i);
+                try {
+                    tally.upserted += upsert(List.of(preference));
+                } catch (DataIntegrityViolationException rowError) {
+                    tally.reject(chunk.indexes.get(i), preference.getUserId(),
+                            "refused by the database: " + rowError.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    private int upsert(List<UserPreference> preferences) {
+        Integer written = transactionTemplate.execute(status -> writer.upsert(preferences));
+        snapshot.ifAvailable(s -> s.record(preferences));
+        upsertedRows.increment(written);
+        return written;
+    }
+
+    private final class Tally {
+        private long upserted;
+        private long rejected;
+        private final List<RejectedRow> rejections = new ArrayList<>();
+
+        private void reject(long index, String userId, String reason) {
+            rejected++;
+            if (rejections.size() < properties.getMaxReportedRejections()) {
+                rejections.add(new RejectedRow(index, userId, reason));
+            }
+        }
+    }
+
+    // Valid rows waiting to be written, with their positions in the upload
+    private static final class Chunk {
+        private final List<UserPreference> preferences;
+        private final List<Long> indexes;
+
+        private Chunk(int capacity) {
+            this.preferences = new ArrayList<>(capacity);
+            this.indexes = new ArrayList<>(capacity);
+        }
+
+        private void add(long index, UserPreference preference) {
+            indexes.add(index);
+            preferences.add(preference);
+        }
+
+        private int size() {
+            return preferences.size();
+        }
+
+        private void clear() {
+            preferences.clear();
+            indexes.clear();
+        }
+    }
+
+    private static String validate(PreferenceImportRow row) {
+        if (row == null) {
+            return "row is null";
+        }
+        if (row.getUserId() == null || row.getUserId().isBlank()) {
+            return "userId is required";
+        }
+        if (row.getCategory() == null || row.getCategory().isBlank()) {
+            return "category is required";
+        }
+        if (row.getChannel() == null) {
+            return "channel is required";
+        }
+        try {
+            ChannelType.valueOf(row.getChannel());
+        } catch (IllegalArgumentException e) {
+            return "unknown channel " + row.getChannel();
+        }
+        if (row.getEnabled() == null) {
+            return "enabled is required";
+        }
+        return null;
+    }
+
+    private static UserPreference toPreference(PreferenceImportRow row) {
+        UserPreference preference = new UserPreference();
+        preference.setUserId(row.getUserId());
+        preference.setCategory(row.getCategory());
+        preference.setChannel(ChannelType.valueOf(row.getChannel()));
+        preference.setEnabled(row.getEnabled());
+        return preference;
+    }
+}
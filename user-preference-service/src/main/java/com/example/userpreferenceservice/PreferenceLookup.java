@@ -0,0 +1,13 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PreferenceLookup {
+    private String userId;
+    private String category;
+}
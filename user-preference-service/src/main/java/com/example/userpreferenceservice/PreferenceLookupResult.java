@@ -0,0 +1,14 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class PreferenceLookupResult {
+    private String userId;
+    private String category;
+    private List<UserPreference> preferences;
+}
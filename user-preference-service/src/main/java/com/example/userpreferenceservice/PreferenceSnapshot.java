@@ -0,0 +1,220 @@
+package com.example.userpreferenceservice;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory copy of every enabled (user, category, channel) opt-in, held as {@link PreferenceBitmaps}.
+ * It is loaded from user_preferences at startup and reloaded periodically. Writes made through this
+ * instance are applied as soon as they are saved: the affected (user, category) pairs are re-read
+ * and their bits replaced. Writes made through other instances are found by polling updated_at, so
+ * they are served here within about the change poll interval. A channel counts as enabled when any
+ * of the user's rows for it is.
+ * <p>
+ * Pairs written while a reload is running are re-read again once it is swapped in, so a reload
+ * never loses a write.
+ */
+@Component
+@ConditionalOnProperty(prefix = "preferences.snapshot", name = "enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class PreferenceSnapshot {
+
+    private static final int REFRESH_CHUNK = 1_000;
+    private static final String LOAD_SQL = "SELECT user_id, category, channel FROM user_preferences WHERE is_enabled = true";
+    private static final String CHANGED_SQL = "SELECT DISTINCT user_id, category FROM user_preferences WHERE updated_at > ?";
+
+    private final JdbcTemplate loadTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final UserPreferenceRepository preferenceRepository;
+    private final SnapshotProperties properties;
+    private final TaskScheduler taskScheduler;
+
+    private volatile PreferenceBitmaps bitmaps;
+    // Non-null while a reload runs; guarded by this
+    private Set<PreferenceLookup> writtenDuringReload;
+    // Start of the last change poll that completed; only touched by the poll
+    private LocalDateTime changesPolledAt;
+
+    public PreferenceSnapshot(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                              UserPreferenceRepository preferenceRepository, SnapshotProperties properties,
+                              TaskScheduler taskScheduler, MeterRegistry meterRegistry) {
+        this.loadTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.loadTemplate.setFetchSize(properties.getFetchSize());
+        this.transactionTemplate = transactionTemplate;
+        this.preferenceRepository = preferenceRepository;
+        this.properties = properties;
+        this.taskScheduler = taskScheduler;
+
+        Gauge.builder("preferences.snapshot.users", this, snapshot -> snapshot.bitmaps.userCount())
+                .description("Users with at least one opt-in in the snapshot")
+                .register(meterRegistry);
+        Gauge.builder("preferences.snapshot.memory", this, snapshot -> snapshot.bitmaps.sizeInBytes())
+                .description("Bytes held by the snapshot's bitmaps")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        changesPolledAt = LocalDateTime.now();
+        bitmaps = load();
+        if (!properties.getRebuildInterval().isZero()) {
+            taskScheduler.scheduleWithFixedDelay(this::reload, Instant.now().plus(properties.getRebuildInterval()),
+                    properties.getRebuildInterval());
+        }
+        if (!properties.getChangePollInterval().isZero()) {
+            taskScheduler.scheduleWithFixedDelay(this::pollChanges, Instant.now().plus(properties.getChangePollInterval()),
+                    properties.getChangePollInterval());
+        }
+    }
+
+    public List<ChannelType> enabledChannels(String userId, String category) {
+        return bitmaps.enabledChannels(userId, category);
+    }
+
+    public long countAudience(String category, Collection<ChannelType> channels) {
+        return bitmaps.count(category, channels);
+    }
+
+    public List<AudienceMember> audiencePage(String category, Collection<ChannelType> channels,
+                                             String afterUserId, String afterChannel, int limit) {
+        return bitmaps.page(category, channels, afterUserId, afterChannel, limit);
+    }
+
+    /**
+     * Re-reads the given (user, category) pairs after they were written. Runs under the lock so that
+     * of two racing writes to a pair, the later reader, which has seen both, is applied last.
+     */
+    public synchronized void refresh(Collection<PreferenceLookup> pairs) {
+        if (pairs.isEmpty()) {
+            return;
+        }
+        if (writtenDuringReload != null) {
+            writtenDuringReload.addAll(pairs);
+        }
+        apply(bitmaps, pairs);
+    }
+
+    /**
+     * Applies rows as written, without reading them back. Meant for bulk imports, where re-reading
+     * would double the database work; a concurrent write to the same row may be overtaken until
+     * the next reload.
+     */
+    public synchronized void record(Collection<UserPreference> written) {
+        for (UserPreference preference : written) {
+            if (writtenDuringReload != null) {
+                writtenDuringReload.add(new PreferenceLookup(preference.getUserId(), preference.getCategory()));
+            }
+            bitmaps.set(preference.getUserId(), preference.getCategory(), preference.getChannel(), preference.isEnabled());
+        }
+    }
+
+    /**
+     * Re-reads the pairs written through any instance since the last poll. Each poll looks back a
+     * further change lag, for writes that committed late or were stamped by a clock behind this one;
+     * re-reading a pair more than once is harmless.
+     */
+    void pollChanges() {
+        LocalDateTime started = LocalDateTime.now();
+        try {
+            List<PreferenceLookup> changed = loadTemplate.query(CHANGED_SQL,
+                    (rs, row) -> new PreferenceLookup(rs.getString("user_id"), rs.getString("category")),
+                    Timestamp.valueOf(changesPolledAt.minus(properties.getChangeLag())));
+            refresh(changed);
+            changesPolledAt = started;
+        } catch (RuntimeException e) {
+            log.warn("Polling preference changes failed, retrying from {}: {}", changesPolledAt, e.getMessage());
+        }
+    }
+
+    void reload() {
+        try {
+            synchronized (this) {
+                writtenDuringReload = new HashSet<>();
+            }
+            PreferenceBitmaps reloaded = load();
+            synchronized (this) {
+                apply(reloaded, writtenDuringReload);
+                bitmaps = reloaded;
+                writtenDuringReload = null;
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                writtenDuringReload = null;
+            }
+            log.error("Reloading the preference snapshot failed, keeping the current one", e);
+        }
+    }
+
+    private PreferenceBitmaps load() {
+        long started = System.nanoTime();
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        // The cursor streams rows in fetchSize chunks, which PostgreSQL only does inside a transaction
+        transactionTemplate.executeWithoutResult(status -> loadTemplate.query(LOAD_SQL, rs -> {
+            ChannelType channel = channelOf(rs.getString("channel"));
+            if (channel != null) {
+                builder.add(rs.getString("user_id"), rs.getString("category"), channel);
+            }
+        }));
+        PreferenceBitmaps loaded = builder.build();
+        log.info("Loaded preference snapshot of {} users in {} ms, {} bytes of bitmaps", loaded.userCount(),
+                (System.nanoTime() - started) / 1_000_000, loaded.sizeInBytes());
+        return loaded;
+    }
+
+    private void apply(PreferenceBitmaps target, Collection<PreferenceLookup> pairs) {
+        List<PreferenceLookup> all = List.copyOf(pairs);
+        // Keeps each IN list well inside PostgreSQL's bind parameter limit
+        for (int from = 0; from < all.size(); from += REFRESH_CHUNK) {
+            applyChunk(target, all.subList(from, Math.min(from + REFRESH_CHUNK, all.size())));
+        }
+    }
+
+    private void applyChunk(PreferenceBitmaps target, List<PreferenceLookup> pairs) {
+        Set<String> userIds = new LinkedHashSet<>();
+        Set<String> categories = new LinkedHashSet<>();
+        for (PreferenceLookup pair : pairs) {
+            userIds.add(pair.getUserId());
+            categories.add(pair.getCategory());
+        }
+        Map<PreferenceLookup, Set<ChannelType>> enabled = new HashMap<>();
+        for (PreferenceLookup pair : pairs) {
+            enabled.put(pair, EnumSet.noneOf(ChannelType.class));
+        }
+        for (UserPreference preference : preferenceRepository.findByUserIdInAndCategoryIn(userIds, categories)) {
+            Set<ChannelType> channels = enabled.get(new PreferenceLookup(preference.getUserId(), preference.getCategory()));
+            if (channels != null && preference.isEnabled()) {
+                channels.add(preference.getChannel());
+            }
+        }
+        enabled.forEach((pair, channels) -> target.update(pair.getUserId(), pair.getCategory(), channels));
+    }
+
+    private static ChannelType channelOf(String name) {
+        try {
+            return ChannelType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring preference for unknown channel {}", name);
+            return null;
+        }
+    }
+}
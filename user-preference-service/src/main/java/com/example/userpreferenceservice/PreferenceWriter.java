@@ -0,0 +1,143 @@
+package com.example.userpreferenceservice;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes preferences as upserts keyed on (user_id, category, channel), so a user has one row per
+ * category and channel however often it is set. Many rows go out as multi-row INSERT statements
+ * rather than one statement per row.
+ */
+@Component
+// The unique index is created on the table Hibernate manages, so the schema must be in place first
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class PreferenceWriter {
+
+    private static final String UNIQUE_INDEX = "user_preferences_user_category_channel_key";
+    private static final String INSERT = "INSERT INTO user_preferences " +
+            "(id, user_id, category, channel, is_enabled, created_at, updated_at) VALUES ";
+    private static final String ROW = "(?, ?, ?, ?, ?, ?, ?)";
+    private static final String ON_CONFLICT = " ON CONFLICT (user_id, category, channel) " +
+            "DO UPDATE SET is_enabled = EXCLUDED.is_enabled, updated_at = EXCLUDED.updated_at";
+    private static final int COLUMNS = 7;
+
+    private static final RowMapper<UserPreference> PREFERENCE = (rs, rowNum) -> {
+        UserPreference preference = new UserPreference();
+        preference.setId(rs.getObject("id", UUID.class));
+        preference.setUserId(rs.getString("user_id"));
+        preference.setCategory(rs.getString("category"));
+        preference.setChannel(ChannelType.valueOf(rs.getString("channel")));
+        preference.setEnabled(rs.getBoolean("is_enabled"));
+        preference.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        preference.setUpdatedAt(rs.getTimestamp("updated_at").toLocalDateTime());
+        return preference;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public PreferenceWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            ImportProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = properties.getBatchSize();
+    }
+
+    @PostConstruct
+    void prepare() {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (indexExists()) {
+                return;
+            }
+            // Instances starting together take turns; the first creates the index, the rest find it
+            jdbcTemplate.query("SELECT pg_advisory_xact_lock(hashtext(?))", rs -> {
+            }, UNIQUE_INDEX);
+            if (indexExists()) {
+                return;
+            }
+            // Saves used to insert a fresh row each time; keep the most recently updated one of each
+            int removed = jdbcTemplate.update("DELETE FROM user_preferences p USING user_preferences newer " +
+                    "WHERE newer.user_id = p.user_id AND newer.category = p.category AND newer.channel = p.channel " +
+                    "AND (coalesce(newer.updated_at, '-infinity'), newer.id) > (coalesce(p.updated_at, '-infinity'), p.id)");
+            jdbcTemplate.execute("CREATE UNIQUE INDEX IF NOT EXISTS " + UNIQUE_INDEX +
+                    " ON user_preferences (user_id, category, channel)");
+            log.info("Created unique index {}, removing {} duplicate preferences", UNIQUE_INDEX, removed);
+        });
+    }
+
+    private boolean indexExists() {
+        // Read from the catalog with the statement's snapshot, which sees an index another instance just committed
+        return jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM pg_indexes " +
+                "WHERE schemaname = current_schema() AND indexname = ?)", Boolean.class, UNIQUE_INDEX);
+    }
+
+    public UserPreference upsert(UserPreference preference) {
+        LocalDateTime now = LocalDateTime.now();
+        Object[] args = new Object[COLUMNS];
+        bind(args, 0, preference, now);
+        return jdbcTemplate.queryForObject(INSERT + ROW + ON_CONFLICT + " RETURNING *", PREFERENCE, args);
+    }
+
+    /**
+     * Upserts the rows in statements of up to {@code batchSize} rows. Where a key appears more than
+     * once the last row wins, since one statement cannot update the same row twice. Returns how many
+     * distinct keys were written.
+     */
+    public int upsert(Collection<UserPreference> preferences) {
+        Map<PreferenceKey, UserPreference> latest = new LinkedHashMap<>();
+        for (UserPreference preference : preferences) {
+            latest.put(new PreferenceKey(preference.getUserId(), preference.getCategory(), preference.getChannel()),
+                    preference);
+        }
+        List<UserPreference> rows = new ArrayList<>(latest.values());
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<UserPreference> batch = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            Object[] args = new Object[batch.size() * COLUMNS];
+            for (int i = 0; i < batch.size(); i++) {
+                bind(args, i * COLUMNS, batch.get(i), now);
+            }
+            jdbcTemplate.update(statement(batch.size()), args);
+        }
+        return rows.size();
+    }
+
+    private String statement(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT.length() + rows * (ROW.length() + 2) + ON_CONFLICT.length());
+        sql.append(INSERT);
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(ROW);
+        }
+        return sql.append(ON_CONFLICT).toString();
+    }
+
+    private static void bind(Object[] args, int offset, UserPreference preference, LocalDateTime now) {
+        Timestamp timestamp = Timestamp.valueOf(now);
+        args[offset] = UUID.randomUUID();
+        args[offset + 1] = preference.getUserId();
+        args[offset + 2] = preference.getCategory();
+        args[offset + 3] = preference.getChannel().name();
+        args[offset + 4] = preference.isEnabled();
+        args[offset + 5] = timestamp;
+        args[offset + 6] = timestamp;
+    }
+
+    private record PreferenceKey(String userId, String category, ChannelType channel) {
+    }
+}
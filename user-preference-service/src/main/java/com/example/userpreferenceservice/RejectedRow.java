@@ -0,0 +1,13 @@
+package com.example.userpreferenceservice;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class RejectedRow {
+    // Position of the row in the uploaded array, from 0
+    private long index;
+    private String userId;
+    private String reason;
+}
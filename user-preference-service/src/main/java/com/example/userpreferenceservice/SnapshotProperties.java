@@ -0,0 +1,20 @@
+package com.example.userpreferenceservice;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "preferences.snapshot")
+public class SnapshotProperties {
+    // Serve opt-in checks and audiences from memory instead of querying user_preferences
+    private boolean enabled = true;
+    // Full reload, a backstop for changes the change poll could miss; zero turns it off
+    private Duration rebuildInterval = Duration.ofMinutes(10);
+    // Picks up changes written through other instances; bounds how stale their opt-outs are served here
+    private Duration changePollInterval = Duration.ofSeconds(2);
+    // Each change poll also re-reads this far back, covering late commits and clock skew between instances
+    private Duration changeLag = Duration.ofSeconds(10);
+    private int fetchSize = 10_000;
+}
@@ -8,7 +8,12 @@ import java.util.UUID;
 
 @Entity
 @Data
-@Table(name = "user_preferences")
+@Table(name = "user_preferences",
+        indexes = {
+                @Index(name = "idx_user_preferences_user_category", columnList = "user_id, category"),
+                @Index(name = "idx_user_preferences_audience", columnList = "category, user_id, channel"),
+                @Index(name = "idx_user_preferences_updated_at", columnList = "updated_at")
+        })
 public class UserPreference {
 
     @Id
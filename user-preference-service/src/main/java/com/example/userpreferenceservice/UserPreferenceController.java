@@ -1,8 +1,11 @@
 package com.example.userpreferenceservice;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.InputStream;
 import java.util.List;
 
 @RestController
@@ -10,6 +13,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class UserPreferenceController {
 
+    private static final int MAX_AUDIENCE_PAGE_SIZE = 5000;
+
     private final UserPreferenceService preferenceService;
 
     @PutMapping
@@ -26,8 +31,40 @@ public class UserPreferenceController {
         }
     }
 
+    @GetMapping("/enabled")
+    public List<ChannelType> getEnabledChannels(@RequestParam String userId, @RequestParam String category) {
+        return preferenceService.getEnabledChannels(userId, category);
+    }
+
+    @PostMapping("/batch")
+    public List<PreferenceLookupResult> getPreferencesBatch(@RequestBody List<PreferenceLookup> lookups) {
+        return preferenceService.getPreferencesBatch(lookups);
+    }
+
+    @GetMapping("/audience")
+    public AudiencePage getAudiencePage(@RequestParam String category,
+                                        @RequestParam List<ChannelType> channels,
+                                        @RequestParam(defaultValue = "") String afterUserId,
+                                        @RequestParam(defaultValue = "") String afterChannel,
+                                        @RequestParam(defaultValue = "500") int limit) {
+        return preferenceService.getAudiencePage(category, channels, afterUserId, afterChannel,
+                Math.min(Math.max(limit, 1), MAX_AUDIENCE_PAGE_SIZE));
+    }
+
+    @GetMapping("/audience/count")
+    public long countAudience(@RequestParam String category, @RequestParam List<ChannelType> channels) {
+        return preferenceService.countAudience(category, channels);
+    }
+
+    // Streams the body instead of binding it, so uploads of any size are read one chunk at a time
     @PostMapping("/bulk")
-    public void bulkSetPreferences(@RequestBody List<UserPreference> preferences) {
-        preferenceService.bulkSetPreferences(preferences);
+    public ResponseEntity<ImportResult> bulkSetPreferences(InputStream body) {
+        ImportResult result = preferenceService.importPreferences(body);
+        return result.getError() == null ? ResponseEntity.ok(result) : ResponseEntity.badRequest().body(result);
+    }
+
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<String> handleBatchTooLarge(BatchTooLargeException e) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(e.getMessage());
     }
 }
@@ -1,8 +1,11 @@
 package com.example.userpreferenceservice;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -12,4 +15,20 @@ public interface UserPreferenceRepository extends JpaRepository<UserPreference,
     List<UserPreference> findByUserIdAndCategory(String userId, String category);
 
     List<UserPreference> findByUserId(String userId);
+
+    List<UserPreference> findByUserIdInAndCategoryIn(Collection<String> userIds, Collection<String> categories);
+
+    @Query(value = "SELECT p.user_id AS userId, p.channel AS channel FROM user_preferences p " +
+            "WHERE p.category = :category AND p.is_enabled = true AND p.channel IN (:channels) " +
+            "AND (p.user_id, p.channel) > (:afterUserId, :afterChannel) " +
+            "ORDER BY p.user_id, p.channel LIMIT :limit", nativeQuery = true)
+    List<AudienceMember> findAudiencePage(@Param("category") String category,
+                                          @Param("channels") Collection<String> channels,
+                                          @Param("afterUserId") String afterUserId,
+                                          @Param("afterChannel") String afterChannel,
+                                          @Param("limit") int limit);
+
+    @Query(value = "SELECT count(*) FROM user_preferences p " +
+            "WHERE p.category = :category AND p.is_enabled = true AND p.channel IN (:channels)", nativeQuery = true)
+    long countAudience(@Param("category") String category, @Param("channels") Collection<String> channels);
 }
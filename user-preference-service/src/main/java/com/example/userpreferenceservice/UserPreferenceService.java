@@ -1,18 +1,33 @@
 package com.example.userpreferenceservice;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import lombok.RequiredArgsConstructor;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class UserPreferenceService {
 
     private final UserPreferenceRepository preferenceRepository;
+    private final PreferenceWriter preferenceWriter;
+    private final PreferenceImporter preferenceImporter;
+    private final ObjectProvider<PreferenceSnapshot> snapshot;
+    private final LookupProperties lookupProperties;
 
     // TODO: set default preference as email
     public UserPreference setPreference(UserPreference preference) {
-        return preferenceRepository.save(preference);
+        UserPreference saved = preferenceWriter.upsert(preference);
+        snapshot.ifAvailable(s -> s.refresh(List.of(new PreferenceLookup(saved.getUserId(), saved.getCategory()))));
+        return saved;
     }
 
     public List<UserPreference> getPreferencesByUserIdAndCategory(String userId, String category) {
@@ -23,7 +38,94 @@ public class UserPreferenceService {
         return preferenceRepository.findByUserId(userId);
     }
 
-    public void bulkSetPreferences(List<UserPreference> preferences) {
-        preferenceRepository.saveAll(preferences);
+    public List<ChannelType> getEnabledChannels(String userId, String category) {
+        PreferenceSnapshot preferences = snapshot.getIfAvailable();
+        if (preferences != null) {
+            return preferences.enabledChannels(userId, category);
+        }
+        return preferenceRepository.findByUserIdAndCategory(userId, category).stream()
+                .filter(UserPreference::isEnabled)
+                .map(UserPreference::getChannel)
+                .distinct()
+                .toList();
+    }
+
+    public List<PreferenceLookupResult> getPreferencesBatch(List<PreferenceLookup> lookups) {
+        if (lookups.size() > lookupProperties.getMaxBatchSize()) {
+            throw new BatchTooLargeException(lookups.size(), lookupProperties.getMaxBatchSize());
+        }
+        PreferenceSnapshot preferences = snapshot.getIfAvailable();
+        if (preferences != null) {
+            return lookups.stream()
+                    .map(lookup -> new PreferenceLookupResult(lookup.getUserId(), lookup.getCategory(),
+                            enabledPreferences(lookup, preferences.enabledChannels(lookup.getUserId(), lookup.getCategory()))))
+                    .toList();
+        }
+        Set<String> userIds = new LinkedHashSet<>();
+        Set<String> categories = new LinkedHashSet<>();
+        for (PreferenceLookup lookup : lookups) {
+            userIds.add(lookup.getUserId());
+            categories.add(lookup.getCategory());
+        }
+        if (userIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // One IN query for the whole batch; the cross product of users and categories is trimmed below
+        Map<PreferenceLookup, List<UserPreference>> byLookup = new HashMap<>();
+        for (UserPreference preference : preferenceRepository.findByUserIdInAndCategoryIn(userIds, categories)) {
+            byLookup.computeIfAbsent(new PreferenceLookup(preference.getUserId(), preference.getCategory()),
+                    key -> new ArrayList<>()).add(preference);
+        }
+
+        List<PreferenceLookupResult> results = new ArrayList<>(lookups.size());
+        for (PreferenceLookup lookup : lookups) {
+            results.add(new PreferenceLookupResult(lookup.getUserId(), lookup.getCategory(),
+                    byLookup.getOrDefault(lookup, Collections.emptyList())));
+        }
+        return results;
+    }
+
+    // The snapshot only knows which channels are enabled, so it answers with one enabled row per channel
+    private List<UserPreference> enabledPreferences(PreferenceLookup lookup, List<ChannelType> channels) {
+        List<UserPreference> preferences = new ArrayList<>(channels.size());
+        for (ChannelType channel : channels) {
+            UserPreference preference = new UserPreference();
+            preference.setUserId(lookup.getUserId());
+            preference.setCategory(lookup.getCategory());
+            preference.setChannel(channel);
+            preference.setEnabled(true);
+            preferences.add(preference);
+        }
+        return preferences;
+    }
+
+    public AudiencePage getAudiencePage(String category, List<ChannelType> channels,
+                                        String afterUserId, String afterChannel, int limit) {
+        PreferenceSnapshot preferences = snapshot.getIfAvailable();
+        List<AudienceMember> members = preferences != null
+                ? preferences.audiencePage(category, channels, afterUserId, afterChannel, limit)
+                : preferenceRepository.findAudiencePage(category, channelNames(channels), afterUserId, afterChannel, limit);
+        if (members.isEmpty()) {
+            return new AudiencePage(members, afterUserId, afterChannel, true);
+        }
+        AudienceMember lastMember = members.get(members.size() - 1);
+        return new AudiencePage(members, lastMember.getUserId(), lastMember.getChannel(), members.size() < limit);
+    }
+
+    public long countAudience(String category, List<ChannelType> channels) {
+        PreferenceSnapshot preferences = snapshot.getIfAvailable();
+        if (preferences != null) {
+            return preferences.countAudience(category, channels);
+        }
+        return preferenceRepository.countAudience(category, channelNames(channels));
+    }
+
+    private List<String> channelNames(List<ChannelType> channels) {
+        return channels.stream().map(ChannelType::name).toList();
+    }
+
+    public ImportResult importPreferences(InputStream body) {
+        return preferenceImporter.importPreferences(body);
     }
 }
@@ -0,0 +1,243 @@
+package com.example.userpreferenceservice;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.example.userpreferenceservice.ChannelType.EMAIL;
+import static com.example.userpreferenceservice.ChannelType.PUSH;
+import static com.example.userpreferenceservice.ChannelType.SMS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PreferenceBitmapsTest {
+
+    private static final Set<ChannelType> ALL = EnumSet.allOf(ChannelType.class);
+
+    @Test
+    void answersUserChecksWhateverOrderUsersWereAddedIn() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        builder.add("user3", "news", SMS);
+        builder.add("user1", "news", EMAIL);
+        builder.add("user3", "news", EMAIL);
+        builder.add("user2", "offers", PUSH);
+        PreferenceBitmaps bitmaps = builder.build();
+
+        assertThat(bitmaps.userCount()).isEqualTo(3);
+        assertThat(bitmaps.enabledChannels("user3", "news")).containsExactly(EMAIL, SMS);
+        assertThat(bitmaps.enabledChannels("user1", "news")).containsExactly(EMAIL);
+        assertThat(bitmaps.enabledChannels("user2", "news")).isEmpty();
+        assertThat(bitmaps.enabledChannels("user4", "news")).isEmpty();
+        assertThat(bitmaps.enabledChannels("user1", "alerts")).isEmpty();
+        assertThat(bitmaps.isEnabled("user2", "offers", PUSH)).isTrue();
+        assertThat(bitmaps.isEnabled("user2", "offers", EMAIL)).isFalse();
+    }
+
+    @Test
+    void countsEachChannelOnce() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        builder.add("user1", "news", EMAIL);
+        builder.add("user1", "news", SMS);
+        builder.add("user2", "news", EMAIL);
+        PreferenceBitmaps bitmaps = builder.build();
+
+        assertThat(bitmaps.count("news", List.of(EMAIL, EMAIL))).isEqualTo(2);
+        assertThat(bitmaps.count("news", ALL)).isEqualTo(3);
+        assertThat(bitmaps.count("alerts", ALL)).isZero();
+    }
+
+    @Test
+    void pagesInUserIdThenChannelNameOrder() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        for (String userId : List.of("b", "a", "c")) {
+            for (ChannelType channel : ChannelType.values()) {
+                builder.add(userId, "news", channel);
+            }
+        }
+        PreferenceBitmaps bitmaps = builder.build();
+
+        // Channel names sort EMAIL, PUSH, SMS, unlike the enum's declaration order
+        assertThat(members(bitmaps.page("news", ALL, "", "", 4)))
+                .containsExactly("a/EMAIL", "a/PUSH", "a/SMS", "b/EMAIL");
+        assertThat(members(bitmaps.page("news", ALL, "b", "EMAIL", 3)))
+                .containsExactly("b/PUSH", "b/SMS", "c/EMAIL");
+        assertThat(members(bitmaps.page("news", EnumSet.of(SMS), "a", "SMS", 10)))
+                .containsExactly("b/SMS", "c/SMS");
+        // A cursor on a user the snapshot does not hold resumes at the next one
+        assertThat(members(bitmaps.page("news", ALL, "bb", "", 2)))
+                .containsExactly("c/EMAIL", "c/PUSH");
+    }
+
+    @Test
+    void mergesLateUsersIntoTheSortedRange() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        builder.add("user2", "news", EMAIL);
+        builder.add("user4", "news", EMAIL);
+        PreferenceBitmaps bitmaps = builder.build();
+
+        bitmaps.update("user5", "news", EnumSet.of(EMAIL));
+        bitmaps.update("user1", "news", EnumSet.of(EMAIL, SMS));
+        bitmaps.update("user3", "news", EnumSet.of(PUSH));
+
+        assertThat(members(bitmaps.page("news", ALL, "", "", 100)))
+                .containsExactly("user1/EMAIL", "user1/SMS", "user2/EMAIL", "user3/PUSH", "user4/EMAIL", "user5/EMAIL");
+        assertThat(members(bitmaps.page("news", ALL, "user1", "EMAIL", 2)))
+                .containsExactly("user1/SMS", "user2/EMAIL");
+        assertThat(members(bitmaps.page("news", ALL, "user3", "PUSH", 100)))
+                .containsExactly("user4/EMAIL", "user5/EMAIL");
+    }
+
+    @Test
+    void indexesNoUserForAnOptOut() {
+        PreferenceBitmaps bitmaps = new PreferenceBitmaps.Builder().build();
+
+        bitmaps.update("user1", "news", EnumSet.noneOf(ChannelType.class));
+        bitmaps.update("user2", "news", EnumSet.noneOf(ChannelType.class));
+
+        assertThat(bitmaps.userCount()).isZero();
+        assertThat(bitmaps.page("news", ALL, "", "", 10)).isEmpty();
+    }
+
+    @Test
+    void setChangesOneChannelAndLeavesTheOthers() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        builder.add("user1", "news", EMAIL);
+        builder.add("user1", "news", SMS);
+        PreferenceBitmaps bitmaps = builder.build();
+
+        bitmaps.set("user1", "news", SMS, false);
+        bitmaps.set("user1", "news", PUSH, true);
+
+        assertThat(bitmaps.enabledChannels("user1", "news")).containsExactlyInAnyOrder(EMAIL, PUSH);
+        assertThat(bitmaps.isEnabled("user1", "news", SMS)).isFalse();
+    }
+
+    @Test
+    void setMergesALateUserIntoTheSortedRange() {
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        builder.add("user2", "news", EMAIL);
+        PreferenceBitmaps bitmaps = builder.build();
+
+        bitmaps.set("user3", "news", PUSH, true);
+        bitmaps.set("user1", "news", EMAIL, true);
+
+        assertThat(members(bitmaps.page("news", ALL, "", "", 100)))
+                .containsExactly("user1/EMAIL", "user2/EMAIL", "user3/PUSH");
+        assertThat(members(bitmaps.page("news", ALL, "user1", "EMAIL", 100)))
+                .containsExactly("user2/EMAIL", "user3/PUSH");
+    }
+
+    @Test
+    void setIndexesNoUserForAnOptOut() {
+        PreferenceBitmaps bitmaps = new PreferenceBitmaps.Builder().build();
+
+        bitmaps.set("user1", "news", EMAIL, false);
+
+        assertThat(bitmaps.userCount()).isZero();
+        assertThat(bitmaps.page("news", ALL, "", "", 10)).isEmpty();
+    }
+
+    @Test
+    void keysetPagingMatchesASortedReferenceAcrossLateUsersAndChanges() {
+        Random random = new Random(3);
+        TreeMap<String, Set<ChannelType>> reference = new TreeMap<>();
+        PreferenceBitmaps.Builder builder = new PreferenceBitmaps.Builder();
+        for (int i = 0; i < 500; i++) {
+            String userId = String.format("user%05d", random.nextInt(100_000));
+            ChannelType channel = ChannelType.values()[random.nextInt(3)];
+            builder.add(userId, "news", channel);
+            reference.computeIfAbsent(userId, id -> EnumSet.noneOf(ChannelType.class)).add(channel);
+        }
+        PreferenceBitmaps bitmaps = builder.build();
+
+        String afterUserId = "";
+        String afterChannel = "";
+        List<String> walked = new ArrayList<>();
+        for (int step = 0; step < 400; step++) {
+            // Opt-ins change between pages: snapshot users, and late users before and after the cursor
+            for (int i = random.nextInt(4); i > 0; i--) {
+                String userId = random.nextInt(3) == 0 && !reference.isEmpty()
+                        ? reference.ceilingKey(String.format("user%05d", random.nextInt(100_000)))
+                        : String.format("user%05d", random.nextInt(100_000));
+                if (userId == null) {
+                    continue;
+                }
+                Set<ChannelType> enabled = EnumSet.noneOf(ChannelType.class);
+                for (ChannelType channel : ChannelType.values()) {
+                    if (random.nextBoolean()) {
+                        enabled.add(channel);
+                    }
+                }
+                bitmaps.update(userId, "news", enabled);
+                reference.put(userId, enabled);
+            }
+
+            int limit = 1 + random.nextInt(20);
+            List<String> page = members(bitmaps.page("news", ALL, afterUserId, afterChannel, limit));
+            List<String> expected = expectedPage(reference, afterUserId, afterChannel, limit);
+            assertThat(page).as("page after %s/%s", afterUserId, afterChannel).isEqualTo(expected);
+            if (page.isEmpty()) {
+                afterUserId = "";
+                afterChannel = "";
+                continue;
+            }
+            walked.addAll(page);
+            String[] last = page.get(page.size() - 1).split("/");
+            afterUserId = last[0];
+            afterChannel = last[1];
+        }
+        assertThat(walked).isNotEmpty();
+    }
+
+    @Test
+    void bitmapGrowsAndScansAcrossWordBoundaries() {
+        PreferenceBitmaps.Bitmap bitmap = new PreferenceBitmaps.Bitmap();
+
+        bitmap.set(1_000, false);
+        assertThat(bitmap.sizeInBytes()).isEqualTo(Long.BYTES);
+
+        for (int bit : new int[]{0, 63, 64, 127, 1_000}) {
+            bitmap.set(bit, true);
+        }
+        assertThat(bitmap.cardinality()).isEqualTo(5);
+        assertThat(bitmap.get(63)).isTrue();
+        assertThat(bitmap.get(62)).isFalse();
+        assertThat(bitmap.get(100_000)).isFalse();
+        assertThat(bitmap.nextSetBit(1)).isEqualTo(63);
+        assertThat(bitmap.nextSetBit(64)).isEqualTo(64);
+        assertThat(bitmap.nextSetBit(65)).isEqualTo(127);
+        assertThat(bitmap.nextSetBit(128)).isEqualTo(1_000);
+        assertThat(bitmap.nextSetBit(1_001)).isEqualTo(-1);
+        assertThat(bitmap.nextSetBit(100_000)).isEqualTo(-1);
+
+        bitmap.set(64, false);
+        assertThat(bitmap.nextSetBit(64)).isEqualTo(127);
+        assertThat(bitmap.cardinality()).isEqualTo(4);
+    }
+
+    private static List<String> expectedPage(TreeMap<String, Set<ChannelType>> reference, String afterUserId,
+                                             String afterChannel, int limit) {
+        List<String> expected = new ArrayList<>();
+        for (Map.Entry<String, Set<ChannelType>> user : reference.tailMap(afterUserId, true).entrySet()) {
+            user.getValue().stream()
+                    .map(ChannelType::name)
+                    .sorted(Comparator.naturalOrder())
+                    .filter(channel -> !user.getKey().equals(afterUserId) || channel.compareTo(afterChannel) > 0)
+                    .forEach(channel -> expected.add(user.getKey() + "/" + channel));
+            if (expected.size() >= limit) {
+                break;
+            }
+        }
+        return expected.subList(0, Math.min(limit, expected.size()));
+    }
+
+    private static List<String> members(List<AudienceMember> members) {
+        return members.stream().map(member -> member.getUserId() + "/" + member.getChannel()).toList();
+    }
+}
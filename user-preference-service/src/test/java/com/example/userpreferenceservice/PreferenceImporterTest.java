@@ -0,0 +1,108 @@
+package com.example.userpreferenceservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class PreferenceImporterTest {
+
+    private static final String UPLOAD = """
+            {"userId":"user1","category":"news","channel":"EMAIL","enabled":true}
+            {"userId":"user2","category":"news","channel":"SMS","enabled":true}
+            {"userId":"too-long","category":"news","channel":"PUSH","enabled":false}
+            {"userId":"user4","category":"news","channel":"EMAIL","enabled":false}
+            """;
+
+    @Test
+    void reportsRowsTheDatabaseRefusesAndKeepsTheRestOfTheChunk() {
+        RefusingWriter writer = new RefusingWriter("too-long");
+
+        ImportResult result = importer(writer, 10).importPreferences(upload());
+
+        assertThat(result.getReceived()).isEqualTo(4);
+        assertThat(result.getUpserted()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(1);
+        assertThat(result.getRejections()).singleElement().satisfies(rejected -> {
+            assertThat(rejected.getIndex()).isEqualTo(2);
+            assertThat(rejected.getUserId()).isEqualTo("too-long");
+            assertThat(rejected.getReason()).startsWith("refused by the database");
+        });
+        assertThat(writer.written).containsExactly("user1", "user2", "user4");
+        assertThat(result.getError()).isNull();
+    }
+
+    @Test
+    void writesChunksTheDatabaseAcceptsInOneGo() {
+        RefusingWriter writer = new RefusingWriter("too-long");
+
+        ImportResult result = importer(writer, 2).importPreferences(upload());
+
+        assertThat(result.getUpserted()).isEqualTo(3);
+        assertThat(result.getRejected()).isEqualTo(1);
+        // The first chunk went in whole; only the second was split
+        assertThat(writer.calls).containsExactly(2, 2, 1, 1);
+    }
+
+    @Test
+    void stillFailsTheImportWhenTheDatabaseIsUnavailable() {
+        PreferenceWriter writer = new PreferenceWriter(null, null, new ImportProperties()) {
+            @Override
+            public int upsert(Collection<UserPreference> preferences) {
+                throw new DataAccessResourceFailureException("connection refused");
+            }
+        };
+
+        assertThatThrownBy(() -> importer(writer, 10).importPreferences(upload()))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+    }
+
+    private static ByteArrayInputStream upload() {
+        return new ByteArrayInputStream(UPLOAD.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PreferenceImporter importer(PreferenceWriter writer, int chunkSize) {
+        ImportProperties properties = new ImportProperties();
+        properties.setChunkSize(chunkSize);
+        return new PreferenceImporter(new ObjectMapper(), writer,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), mock(ObjectProvider.class),
+                properties, new SimpleMeterRegistry());
+    }
+
+    // Refuses, like a too-narrow column would, any statement containing the given user
+    private static final class RefusingWriter extends PreferenceWriter {
+        private final String refusedUserId;
+        private final List<String> written = new ArrayList<>();
+        private final List<Integer> calls = new ArrayList<>();
+
+        private RefusingWriter(String refusedUserId) {
+            super(null, null, new ImportProperties());
+            this.refusedUserId = refusedUserId;
+        }
+
+        @Override
+        public int upsert(Collection<UserPreference> preferences) {
+            calls.add(preferences.size());
+            if (preferences.stream().anyMatch(p -> p.getUserId().equals(refusedUserId))) {
+                throw new DataIntegrityViolationException("value too long for type character varying(5)");
+            }
+            preferences.forEach(p -> written.add(p.getUserId()));
+            return preferences.size();
+        }
+    }
+}